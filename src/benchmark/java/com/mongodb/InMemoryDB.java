@@ -0,0 +1,226 @@
+package com.mongodb;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link InMemoryMongo}中的库
+ */
+public class InMemoryDB extends DB {
+
+	private static final ServerAddress ADDRESS;
+
+	static {
+		try {
+			ADDRESS = new ServerAddress("127.0.0.1", 27017);
+		} catch (java.net.UnknownHostException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final InMemoryMongo mongo;
+	private final ConcurrentMap<String, InMemoryDBCollection> collections = new ConcurrentHashMap<String, InMemoryDBCollection>();
+
+	InMemoryDB(InMemoryMongo mongo, String name) {
+		super(mongo, name);
+		this.mongo = mongo;
+	}
+
+	/**
+	 * 清空所有集合
+	 */
+	public void clear() {
+		for (InMemoryDBCollection collection : collections.values()) {
+			collection.clear();
+		}
+	}
+
+	@Override
+	protected DBCollection doGetCollection(String name) {
+		InMemoryDBCollection collection = collections.get(name);
+		if (collection == null) {
+			InMemoryDBCollection created = new InMemoryDBCollection(this, name);
+			collection = collections.putIfAbsent(name, created);
+			if (collection == null) {
+				collection = created;
+			}
+		}
+		return collection;
+	}
+
+	@Override
+	public Set<String> getCollectionNames() {
+		Set<String> names = new LinkedHashSet<String>();
+		for (Map.Entry<String, InMemoryDBCollection> entry : collections.entrySet()) {
+			if (entry.getValue().size() > 0) {
+				names.add(entry.getKey());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * update写命令:逐条执行更新语句,按服务端的格式返回n、upserted和writeErrors
+	 */
+	private static void update(InMemoryDBCollection collection, DBObject command, CommandResult result) {
+		List<?> statements = (List<?>) command.get("updates");
+		boolean ordered = !Boolean.FALSE.equals(command.get("ordered"));
+		int n = 0;
+		BasicDBList upserted = new BasicDBList();
+		BasicDBList writeErrors = new BasicDBList();
+		for (int i = 0; i < statements.size(); i++) {
+			DBObject statement = (DBObject) statements.get(i);
+			try {
+				WriteResult wr = collection.update((DBObject) statement.get("q"), (DBObject) statement.get("u"),
+						Boolean.TRUE.equals(statement.get("upsert")), Boolean.TRUE.equals(statement.get("multi")));
+				n += wr.getN();
+				Object id = wr.getField("upserted");
+				if (id != null) {
+					upserted.add(new BasicDBObject("index", i).append("_id", id));
+				}
+			} catch (MongoException e) {
+				writeErrors.add(new BasicDBObject("index", i).append("code", e.getCode()).append("errmsg", e.getMessage()));
+				if (ordered) {
+					break;
+				}
+			}
+		}
+		result.put("n", n);
+		result.put("nModified", n - upserted.size());
+		if (!upserted.isEmpty()) {
+			result.put("upserted", upserted);
+		}
+		if (!writeErrors.isEmpty()) {
+			result.put("writeErrors", writeErrors);
+		}
+	}
+
+	/**
+	 * insert写命令:逐个插入文档,按服务端的格式返回n和writeErrors
+	 */
+	private static void insert(InMemoryDBCollection collection, DBObject command, CommandResult result) {
+		List<?> documents = (List<?>) command.get("documents");
+		boolean ordered = !Boolean.FALSE.equals(command.get("ordered"));
+		int n = 0;
+		BasicDBList writeErrors = new BasicDBList();
+		for (int i = 0; i < documents.size(); i++) {
+			try {
+				collection.insert((DBObject) documents.get(i));
+				n++;
+			} catch (MongoException e) {
+				writeErrors.add(new BasicDBObject("index", i).append("code", e.getCode()).append("errmsg", e.getMessage()));
+				if (ordered) {
+					break;
+				}
+			}
+		}
+		result.put("n", n);
+		if (!writeErrors.isEmpty()) {
+			result.put("writeErrors", writeErrors);
+		}
+	}
+
+	@Override
+	public CommandResult command(DBObject cmd, int options, ReadPreference readPrefs, DBEncoder encoder) {
+		simulateLatency();
+		DBObject command = cmd;
+		String name = command.keySet().iterator().next();
+		String lowerName = name.toLowerCase();
+
+		CommandResult result = new CommandResult(command, ADDRESS);
+		result.put("ok", 1.0);
+		if ("count".equals(lowerName)) {
+			InMemoryDBCollection collection = (InMemoryDBCollection) getCollection((String) command.get(name));
+			result.put("n", (double) collection.countMatching((DBObject) command.get("query"),
+					toInt(command.get("skip")), toInt(command.get("limit"))));
+		} else if ("insert".equals(lowerName)) {
+			insert((InMemoryDBCollection) getCollection((String) command.get(name)), command, result);
+		} else if ("update".equals(lowerName)) {
+			update((InMemoryDBCollection) getCollection((String) command.get(name)), command, result);
+		} else if ("findandmodify".equals(lowerName)) {
+			InMemoryDBCollection collection = (InMemoryDBCollection) getCollection((String) command.get(name));
+			result.put("value", collection.findAndModifyMatching((DBObject) command.get("query"),
+					(DBObject) command.get("sort"), (DBObject) command.get("fields"),
+					Boolean.TRUE.equals(command.get("remove")), (DBObject) command.get("update"),
+					Boolean.TRUE.equals(command.get("new")), Boolean.TRUE.equals(command.get("upsert"))));
+		} else if ("distinct".equals(lowerName)) {
+			InMemoryDBCollection collection = (InMemoryDBCollection) getCollection((String) command.get(name));
+			List<Object> values = collection.distinctValues((String) command.get("key"), (DBObject) command.get("query"));
+			BasicDBList list = new BasicDBList();
+			list.addAll(values);
+			result.put("values", list);
+		} else if ("collstats".equals(lowerName)) {
+			InMemoryDBCollection collection = collections.get(command.get(name));
+			if (collection == null) {
+				result.put("ok", 0.0);
+				result.put("errmsg", "ns not found");
+			} else {
+				result.put("count", collection.size());
+			}
+		} else if ("drop".equals(lowerName)) {
+			InMemoryDBCollection collection = collections.remove(command.get(name));
+			if (collection == null) {
+				result.put("ok", 0.0);
+				result.put("errmsg", "ns not found");
+			}
+		} else if ("create".equals(lowerName)) {
+			getCollection((String) command.get(name));
+		} else if ("getlasterror".equals(lowerName)) {
+			result.put("err", null);
+			result.put("n", 0);
+		} else if (!"ping".equals(lowerName)) {
+			result.put("ok", 0.0);
+			result.put("errmsg", "no such cmd: " + name);
+		}
+		return result;
+	}
+
+	@Override
+	public void requestStart() {
+	}
+
+	@Override
+	public void requestDone() {
+	}
+
+	@Override
+	public void requestEnsureConnection() {
+	}
+
+	@Override
+	public void cleanCursors(boolean force) {
+	}
+
+	ServerAddress getAddress() {
+		return ADDRESS;
+	}
+
+	/**
+	 * 按配置的延迟和抖动阻塞当前线程
+	 */
+	void simulateLatency() {
+		long nanos = mongo.getLatencyNanos();
+		long jitter = mongo.getJitterNanos();
+		if (jitter > 0) {
+			nanos += (long) (ThreadLocalRandom.current().nextDouble() * jitter);
+		}
+		if (nanos <= 0) {
+			return;
+		}
+		long deadline = System.nanoTime() + nanos;
+		while (nanos > 0) {
+			LockSupport.parkNanos(nanos);
+			nanos = deadline - System.nanoTime();
+		}
+	}
+
+	private static int toInt(Object value) {
+		return value instanceof Number ? ((Number) value).intValue() : 0;
+	}
+}
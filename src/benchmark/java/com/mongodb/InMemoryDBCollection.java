@@ -0,0 +1,286 @@
+package com.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+
+/**
+ * 保存在内存中的集合. 所有读写都在集合锁内完成,读到的文档是存储文档的拷贝.
+ * 写操作总是按已确认的方式返回结果,重复的_id会抛出{@link MongoException.DuplicateKey}.
+ */
+public class InMemoryDBCollection extends DBCollection {
+
+	private static final String ID_FIELD = "_id";
+
+	private final InMemoryDB db;
+	private final Map<Object, DBObject> documents = new LinkedHashMap<Object, DBObject>();
+
+	InMemoryDBCollection(InMemoryDB db, String name) {
+		super(db, name);
+		this.db = db;
+	}
+
+	@Override
+	public WriteResult insert(List<DBObject> list, WriteConcern concern, DBEncoder encoder) {
+		db.simulateLatency();
+		synchronized (this) {
+			for (DBObject document : list) {
+				apply(document);
+				Object id = document.get(ID_FIELD);
+				checkDuplicate(id);
+				documents.put(id, (DBObject) InMemoryDocuments.copy(document));
+			}
+		}
+		return writeResult(0, null, concern);
+	}
+
+	@Override
+	public WriteResult update(DBObject query, DBObject update, boolean upsert, boolean multi, WriteConcern concern,
+			DBEncoder encoder) {
+		db.simulateLatency();
+		synchronized (this) {
+			int n = 0;
+			for (DBObject document : new ArrayList<DBObject>(candidates(query))) {
+				if (InMemoryDocuments.matches(document, query)) {
+					documents.put(document.get(ID_FIELD), InMemoryDocuments.applyUpdate(document, update));
+					n++;
+					if (!multi) {
+						break;
+					}
+				}
+			}
+			if (n > 0) {
+				return writeResult(n, Boolean.TRUE, concern);
+			}
+			if (!upsert) {
+				return writeResult(0, Boolean.FALSE, concern);
+			}
+			DBObject document = InMemoryDocuments.applyUpdate(InMemoryDocuments.seedFromQuery(query), update);
+			apply(document);
+			checkDuplicate(document.get(ID_FIELD));
+			documents.put(document.get(ID_FIELD), document);
+			WriteResult result = writeResult(1, Boolean.FALSE, concern);
+			result.getCachedLastError().put("upserted", document.get(ID_FIELD));
+			return result;
+		}
+	}
+
+	/**
+	 * 与服务端的_id唯一索引相同,插入和upsert遇到已存在的_id时抛出重复键错误
+	 */
+	private void checkDuplicate(Object id) {
+		if (documents.containsKey(id)) {
+			throw new MongoException.DuplicateKey(11000, "E11000 duplicate key error index: " + getFullName()
+					+ ".$_id_  dup key: { : " + id + " }");
+		}
+	}
+
+	@Override
+	protected void doapply(DBObject o) {
+		if (o.get(ID_FIELD) == null) {
+			o.put(ID_FIELD, ObjectId.get());
+		}
+	}
+
+	@Override
+	public WriteResult remove(DBObject query, WriteConcern concern, DBEncoder encoder) {
+		db.simulateLatency();
+		synchronized (this) {
+			int n = 0;
+			for (DBObject document : new ArrayList<DBObject>(candidates(query))) {
+				if (InMemoryDocuments.matches(document, query)) {
+					documents.remove(document.get(ID_FIELD));
+					n++;
+				}
+			}
+			return writeResult(n, null, concern);
+		}
+	}
+
+	@Override
+	Iterator<DBObject> __find(DBObject ref, DBObject fields, int numToSkip, int batchSize, int limit, int options,
+			ReadPreference readPref, DBDecoder decoder) {
+		db.simulateLatency();
+
+		DBObject query = ref;
+		DBObject sort = null;
+		boolean explain = false;
+		if (isWrapped(ref)) {
+			query = (DBObject) ref.get("query");
+			sort = (DBObject) ref.get("orderby");
+			explain = Boolean.TRUE.equals(ref.get("$explain"));
+		}
+		int max = limit != 0 ? Math.abs(limit) : (batchSize < 0 ? -batchSize : 0);
+
+		List<DBObject> found = findMatching(query, sort, numToSkip, max);
+		if (explain) {
+			DBObject plan = new BasicDBObject("cursor", "BasicCursor");
+			plan.put("n", found.size());
+			plan.put("nscannedObjects", size());
+			plan.put("nscanned", size());
+			plan.put("millis", 0);
+			return Collections.singletonList(plan).iterator();
+		}
+		List<DBObject> result = new ArrayList<DBObject>(found.size());
+		for (DBObject document : found) {
+			result.add(InMemoryDocuments.project(document, fields));
+		}
+		return result.iterator();
+	}
+
+	@Override
+	Iterator<DBObject> __find(DBObject ref, DBObject fields, int numToSkip, int batchSize, int limit, int options,
+			ReadPreference readPref, DBDecoder decoder, DBEncoder encoder) {
+		return __find(ref, fields, numToSkip, batchSize, limit, options, readPref, decoder);
+	}
+
+	/**
+	 * 设置了排序、hint或explain时,驱动把查询条件包装为{query: .., orderby: .., $explain: ..}
+	 */
+	private static boolean isWrapped(DBObject ref) {
+		if (ref == null || !(ref.get("query") instanceof DBObject) || ref.keySet().size() < 2) {
+			return false;
+		}
+		// 驱动包装查询时,query之外只有orderby和$开头的查询选项
+		for (String key : ref.keySet()) {
+			if (!key.equals("query") && !key.equals("orderby") && !key.startsWith("$")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void createIndex(DBObject keys, DBObject options, DBEncoder encoder) {
+		// 内存集合总是全表扫描,索引只需被接受
+	}
+
+	/**
+	 * 文档数
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return documents.size();
+	}
+
+	/**
+	 * 匹配的存储文档(未拷贝),已排序并应用skip和limit
+	 */
+	synchronized List<DBObject> findMatching(DBObject query, DBObject sort, int skip, int limit) {
+		List<DBObject> matched = new ArrayList<DBObject>();
+		for (DBObject document : candidates(query)) {
+			if (InMemoryDocuments.matches(document, query)) {
+				matched.add(document);
+			}
+		}
+		if (sort != null && !sort.keySet().isEmpty()) {
+			Collections.sort(matched, InMemoryDocuments.comparator(sort));
+		}
+		int from = Math.min(Math.max(skip, 0), matched.size());
+		int to = limit > 0 ? Math.min(from + limit, matched.size()) : matched.size();
+		return new ArrayList<DBObject>(matched.subList(from, to));
+	}
+
+	/**
+	 * 按_id等值或$in查询时直接按键取文档,相当于_id索引;其余情况全表扫描
+	 */
+	private Collection<DBObject> candidates(DBObject query) {
+		Object id = query == null ? null : query.get(ID_FIELD);
+		if (id == null || query.keySet().size() != 1) {
+			return documents.values();
+		}
+		List<Object> keys = new ArrayList<Object>();
+		if (!(id instanceof DBObject)) {
+			keys.add(id);
+		} else if (((DBObject) id).keySet().size() == 1 && ((DBObject) id).get("$in") instanceof Collection) {
+			keys.addAll((Collection<?>) ((DBObject) id).get("$in"));
+		} else {
+			return documents.values();
+		}
+		List<DBObject> result = new ArrayList<DBObject>(keys.size());
+		for (Object key : keys) {
+			DBObject document = documents.get(key);
+			if (document != null && !result.contains(document)) {
+				result.add(document);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * count命令
+	 */
+	long countMatching(DBObject query, int skip, int limit) {
+		return findMatching(query, null, skip, limit).size();
+	}
+
+	/**
+	 * findAndModify命令
+	 */
+	synchronized DBObject findAndModifyMatching(DBObject query, DBObject sort, DBObject fields, boolean remove,
+			DBObject update, boolean returnNew, boolean upsert) {
+		List<DBObject> found = findMatching(query, sort, 0, 1);
+		if (found.isEmpty()) {
+			if (!upsert || remove) {
+				return null;
+			}
+			DBObject document = InMemoryDocuments.applyUpdate(InMemoryDocuments.seedFromQuery(query), update);
+			apply(document);
+			checkDuplicate(document.get(ID_FIELD));
+			documents.put(document.get(ID_FIELD), document);
+			return returnNew ? InMemoryDocuments.project(document, fields) : null;
+		}
+		DBObject document = found.get(0);
+		Object id = document.get(ID_FIELD);
+		DBObject before = InMemoryDocuments.project(document, fields);
+		if (remove) {
+			documents.remove(id);
+			return before;
+		}
+		DBObject updated = InMemoryDocuments.applyUpdate(document, update);
+		documents.put(id, updated);
+		return returnNew ? InMemoryDocuments.project(updated, fields) : before;
+	}
+
+	/**
+	 * distinct命令
+	 */
+	synchronized List<Object> distinctValues(String key, DBObject query) {
+		List<Object> values = new ArrayList<Object>();
+		for (DBObject document : findMatching(query, null, 0, 0)) {
+			Object value = InMemoryDocuments.getValue(document, key);
+			if (value instanceof List) {
+				for (Object element : (List<?>) value) {
+					if (!values.contains(element)) {
+						values.add(element);
+					}
+				}
+			} else if (value != null && !values.contains(value)) {
+				values.add(value);
+			}
+		}
+		return values;
+	}
+
+	synchronized void clear() {
+		documents.clear();
+	}
+
+	private WriteResult writeResult(int n, Boolean updatedExisting, WriteConcern concern) {
+		CommandResult lastError = new CommandResult(db.getAddress());
+		lastError.put("ok", 1.0);
+		lastError.put("err", null);
+		lastError.put("n", n);
+		if (updatedExisting != null) {
+			lastError.put("updatedExisting", updatedExisting);
+		}
+		return new WriteResult(lastError, concern == null ? WriteConcern.ACKNOWLEDGED : concern);
+	}
+}
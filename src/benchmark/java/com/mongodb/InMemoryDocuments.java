@@ -0,0 +1,613 @@
+package com.mongodb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.bson.types.ObjectId;
+
+/**
+ * 内存集合使用的文档操作:查询匹配、排序、字段投影和更新操作符.
+ * 只实现WenwoMongoTemplate和DAO层实际用到的操作符.
+ */
+final class InMemoryDocuments {
+
+	/**
+	 * 路径不存在时的占位值,与null区分
+	 */
+	private static final Object MISSING = new Object();
+
+	private InMemoryDocuments() {
+	}
+
+	/**
+	 * 文档是否匹配查询条件
+	 *
+	 * @param document
+	 * @param query
+	 * @return
+	 */
+	static boolean matches(DBObject document, DBObject query) {
+		if (query == null) {
+			return true;
+		}
+		for (String key : query.keySet()) {
+			Object condition = query.get(key);
+			if ("$or".equals(key)) {
+				boolean any = false;
+				for (Object branch : (List<?>) condition) {
+					if (matches(document, (DBObject) branch)) {
+						any = true;
+						break;
+					}
+				}
+				if (!any) {
+					return false;
+				}
+			} else if ("$and".equals(key)) {
+				for (Object branch : (List<?>) condition) {
+					if (!matches(document, (DBObject) branch)) {
+						return false;
+					}
+				}
+			} else if ("$nor".equals(key)) {
+				for (Object branch : (List<?>) condition) {
+					if (matches(document, (DBObject) branch)) {
+						return false;
+					}
+				}
+			} else if (!matchesField(getValues(document, key), condition)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matchesField(List<Object> values, Object condition) {
+		if (isOperatorObject(condition)) {
+			DBObject operators = (DBObject) condition;
+			for (String operator : operators.keySet()) {
+				if (!matchesOperator(values, operator, operators.get(operator))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return matchesAny(values, condition);
+	}
+
+	private static boolean matchesOperator(List<Object> values, String operator, Object argument) {
+		if ("$ne".equals(operator)) {
+			return !matchesAny(values, argument);
+		}
+		if ("$in".equals(operator)) {
+			for (Object element : asCollection(argument)) {
+				if (matchesAny(values, element)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if ("$nin".equals(operator)) {
+			return !matchesOperator(values, "$in", argument);
+		}
+		if ("$all".equals(operator)) {
+			for (Object element : asCollection(argument)) {
+				if (!matchesAny(values, element)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if ("$exists".equals(operator)) {
+			boolean exists = values.size() != 1 || values.get(0) != MISSING;
+			return exists == isTrue(argument);
+		}
+		if ("$size".equals(operator)) {
+			for (Object value : values) {
+				if (value instanceof List && ((List<?>) value).size() == ((Number) argument).intValue()) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if ("$elemMatch".equals(operator)) {
+			for (Object value : values) {
+				if (value instanceof List) {
+					for (Object element : (List<?>) value) {
+						if (element instanceof DBObject && matches((DBObject) element, (DBObject) argument)) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+		if ("$not".equals(operator)) {
+			return !matchesField(values, argument);
+		}
+		if ("$regex".equals(operator)) {
+			Pattern pattern = argument instanceof Pattern ? (Pattern) argument : Pattern.compile(argument.toString());
+			return matchesAny(values, pattern);
+		}
+		if ("$options".equals(operator)) {
+			return true;
+		}
+		int sign;
+		if ("$gt".equals(operator)) {
+			sign = 1;
+		} else if ("$gte".equals(operator)) {
+			sign = 0;
+		} else if ("$lt".equals(operator)) {
+			sign = -1;
+		} else if ("$lte".equals(operator)) {
+			sign = -2;
+		} else {
+			throw new MongoException("Unsupported query operator in memory: " + operator);
+		}
+		for (Object value : values) {
+			if (value == MISSING || typeRank(value) != typeRank(argument)) {
+				continue;
+			}
+			int result = compareValues(value, argument);
+			if ((sign == 1 && result > 0) || (sign == 0 && result >= 0) || (sign == -1 && result < 0)
+					|| (sign == -2 && result <= 0)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesAny(List<Object> values, Object expected) {
+		for (Object value : values) {
+			if (value == MISSING) {
+				if (expected == null) {
+					return true;
+				}
+			} else if (expected instanceof Pattern) {
+				if (value instanceof String && ((Pattern) expected).matcher((String) value).find()) {
+					return true;
+				}
+			} else if (valuesEqual(value, expected)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 按路径取值;路径经过数组时展开数组元素,取到的值是数组时同时包含数组本身及其元素
+	 */
+	private static List<Object> getValues(DBObject document, String path) {
+		List<Object> values = new ArrayList<Object>(2);
+		if (path.indexOf('.') < 0) {
+			if (document.containsField(path)) {
+				collectValues(document.get(path), null, 0, values);
+			}
+		} else {
+			collectValues(document, path.split("\\."), 0, values);
+		}
+		if (values.isEmpty()) {
+			values.add(MISSING);
+		}
+		return values;
+	}
+
+	private static void collectValues(Object current, String[] parts, int index, List<Object> values) {
+		if (parts == null || index == parts.length) {
+			values.add(current);
+			if (current instanceof List) {
+				values.addAll((List<?>) current);
+			}
+			return;
+		}
+		if (current instanceof List) {
+			List<?> list = (List<?>) current;
+			Integer position = toIndex(parts[index]);
+			if (position != null) {
+				if (position < list.size()) {
+					collectValues(list.get(position), parts, index + 1, values);
+				}
+				return;
+			}
+			for (Object element : list) {
+				if (element instanceof DBObject) {
+					collectValues(element, parts, index, values);
+				}
+			}
+			return;
+		}
+		if (current instanceof DBObject && ((DBObject) current).containsField(parts[index])) {
+			collectValues(((DBObject) current).get(parts[index]), parts, index + 1, values);
+		}
+	}
+
+	/**
+	 * 按路径取单个值,不存在时返回null
+	 */
+	static Object getValue(DBObject document, String path) {
+		Object current = document;
+		for (String part : path.split("\\.")) {
+			if (current instanceof List) {
+				Integer position = toIndex(part);
+				List<?> list = (List<?>) current;
+				current = position == null || position >= list.size() ? null : list.get(position);
+			} else if (current instanceof DBObject) {
+				current = ((DBObject) current).get(part);
+			} else {
+				return null;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * 按sort条件比较文档
+	 *
+	 * @param sort
+	 * @return
+	 */
+	static Comparator<DBObject> comparator(final DBObject sort) {
+		return new Comparator<DBObject>() {
+			public int compare(DBObject left, DBObject right) {
+				for (String key : sort.keySet()) {
+					int direction = ((Number) sort.get(key)).intValue() < 0 ? -1 : 1;
+					int result = compareValues(getValue(left, key), getValue(right, key));
+					if (result != 0) {
+						return result * direction;
+					}
+				}
+				return 0;
+			}
+		};
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compareValues(Object left, Object right) {
+		int leftRank = typeRank(left);
+		int rightRank = typeRank(right);
+		if (leftRank != rightRank) {
+			return leftRank < rightRank ? -1 : 1;
+		}
+		if (left == null) {
+			return 0;
+		}
+		if (left instanceof Number) {
+			return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+		}
+		if (left instanceof Comparable) {
+			return ((Comparable) left).compareTo(right);
+		}
+		return 0;
+	}
+
+	/**
+	 * BSON类型的排序顺序
+	 */
+	private static int typeRank(Object value) {
+		if (value == null || value == MISSING) {
+			return 0;
+		}
+		if (value instanceof Number) {
+			return 1;
+		}
+		if (value instanceof String) {
+			return 2;
+		}
+		if (value instanceof List) {
+			return 4;
+		}
+		if (value instanceof DBObject || value instanceof Map) {
+			return 3;
+		}
+		if (value instanceof ObjectId) {
+			return 5;
+		}
+		if (value instanceof Boolean) {
+			return 6;
+		}
+		if (value instanceof Date) {
+			return 7;
+		}
+		return 8;
+	}
+
+	private static boolean valuesEqual(Object left, Object right) {
+		if (left == null || right == null) {
+			return left == right;
+		}
+		if (left instanceof Number && right instanceof Number) {
+			return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+		}
+		return left.equals(right);
+	}
+
+	/**
+	 * 按fields条件投影,返回新的文档
+	 *
+	 * @param document
+	 * @param fields
+	 * @return
+	 */
+	static DBObject project(DBObject document, DBObject fields) {
+		if (fields == null || fields.keySet().isEmpty()) {
+			return (DBObject) copy(document);
+		}
+		boolean inclusion = false;
+		for (String key : fields.keySet()) {
+			if (!"_id".equals(key) && isTrue(fields.get(key))) {
+				inclusion = true;
+			}
+		}
+		if (!inclusion) {
+			DBObject result = (DBObject) copy(document);
+			for (String key : fields.keySet()) {
+				removeValue(result, key);
+			}
+			return result;
+		}
+		DBObject result = new BasicDBObject();
+		if (!fields.containsField("_id") || isTrue(fields.get("_id"))) {
+			if (document.containsField("_id")) {
+				result.put("_id", copy(document.get("_id")));
+			}
+		}
+		for (String key : fields.keySet()) {
+			if (!"_id".equals(key) && isTrue(fields.get(key))) {
+				Object value = getValue(document, key);
+				if (value != null) {
+					setValue(result, key, copy(value));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 对文档执行更新. 不含操作符的更新是整体替换,_id保持不变.
+	 *
+	 * @param document 被修改的文档
+	 * @param update
+	 * @return 更新后的文档(整体替换时为新文档)
+	 */
+	@SuppressWarnings("unchecked")
+	static DBObject applyUpdate(DBObject document, DBObject update) {
+		if (!isOperatorObject(update)) {
+			DBObject replacement = (DBObject) copy(update);
+			if (document.containsField("_id")) {
+				replacement.put("_id", document.get("_id"));
+			}
+			return replacement;
+		}
+		for (String operator : update.keySet()) {
+			DBObject arguments = (DBObject) update.get(operator);
+			for (String path : arguments.keySet()) {
+				Object argument = arguments.get(path);
+				if ("$set".equals(operator)) {
+					setValue(document, path, copy(argument));
+				} else if ("$unset".equals(operator)) {
+					removeValue(document, path);
+				} else if ("$inc".equals(operator)) {
+					setValue(document, path, add((Number) getValue(document, path), (Number) argument));
+				} else if ("$push".equals(operator) || "$pushAll".equals(operator) || "$addToSet".equals(operator)) {
+					List<Object> list = getOrCreateList(document, path);
+					Collection<?> elements;
+					if ("$pushAll".equals(operator)) {
+						elements = asCollection(argument);
+					} else if (argument instanceof DBObject && ((DBObject) argument).containsField("$each")) {
+						elements = asCollection(((DBObject) argument).get("$each"));
+					} else {
+						List<Object> single = new ArrayList<Object>(1);
+						single.add(argument);
+						elements = single;
+					}
+					for (Object element : elements) {
+						if (!"$addToSet".equals(operator) || !containsValue(list, element)) {
+							list.add(copy(element));
+						}
+					}
+				} else if ("$pull".equals(operator) || "$pullAll".equals(operator)) {
+					Object current = getValue(document, path);
+					if (current instanceof List) {
+						Iterator<Object> it = ((List<Object>) current).iterator();
+						while (it.hasNext()) {
+							if (matchesPull(it.next(), argument, "$pullAll".equals(operator))) {
+								it.remove();
+							}
+						}
+					}
+				} else if ("$pop".equals(operator)) {
+					Object current = getValue(document, path);
+					if (current instanceof List && !((List<?>) current).isEmpty()) {
+						List<?> list = (List<?>) current;
+						list.remove(((Number) argument).intValue() < 0 ? 0 : list.size() - 1);
+					}
+				} else {
+					throw new MongoException("Unsupported update operator in memory: " + operator);
+				}
+			}
+		}
+		return document;
+	}
+
+	/**
+	 * upsert时由查询条件中的等值字段生成新文档
+	 *
+	 * @param query
+	 * @return
+	 */
+	static DBObject seedFromQuery(DBObject query) {
+		DBObject seed = new BasicDBObject();
+		if (query == null) {
+			return seed;
+		}
+		for (String key : query.keySet()) {
+			Object value = query.get(key);
+			if (!key.startsWith("$") && !isOperatorObject(value) && !(value instanceof Pattern)) {
+				setValue(seed, key, copy(value));
+			}
+		}
+		return seed;
+	}
+
+	private static boolean matchesPull(Object element, Object argument, boolean all) {
+		if (all) {
+			return containsValue(asCollection(argument), element);
+		}
+		if (argument instanceof DBObject && element instanceof DBObject && !isOperatorObject(argument)) {
+			return matches((DBObject) element, (DBObject) argument);
+		}
+		List<Object> values = new ArrayList<Object>(1);
+		values.add(element);
+		return matchesField(values, argument);
+	}
+
+	private static boolean containsValue(Collection<?> collection, Object value) {
+		for (Object element : collection) {
+			if (valuesEqual(element, value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 数组参数既可能是集合也可能是Java数组
+	 */
+	private static Collection<?> asCollection(Object value) {
+		if (value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		}
+		if (value instanceof Collection) {
+			return (Collection<?>) value;
+		}
+		throw new MongoException("Expected an array but got " + value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> getOrCreateList(DBObject document, String path) {
+		Object current = getValue(document, path);
+		if (current instanceof List) {
+			return (List<Object>) current;
+		}
+		if (current != null) {
+			throw new MongoException("Cannot apply array operator to non-array field " + path);
+		}
+		BasicDBList list = new BasicDBList();
+		setValue(document, path, list);
+		return list;
+	}
+
+	private static Number add(Number current, Number increment) {
+		if (current == null) {
+			return increment;
+		}
+		if (current instanceof Double || increment instanceof Double || current instanceof Float
+				|| increment instanceof Float) {
+			return current.doubleValue() + increment.doubleValue();
+		}
+		if (current instanceof Long || increment instanceof Long) {
+			return current.longValue() + increment.longValue();
+		}
+		return current.intValue() + increment.intValue();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void setValue(DBObject document, String path, Object value) {
+		String[] parts = path.split("\\.");
+		Object current = document;
+		for (int i = 0; i < parts.length - 1; i++) {
+			Object next;
+			if (current instanceof List) {
+				next = ((List<Object>) current).get(toIndex(parts[i]));
+			} else {
+				next = ((DBObject) current).get(parts[i]);
+				if (next == null) {
+					next = new BasicDBObject();
+					((DBObject) current).put(parts[i], next);
+				}
+			}
+			current = next;
+		}
+		String last = parts[parts.length - 1];
+		if (current instanceof List) {
+			List<Object> list = (List<Object>) current;
+			int position = toIndex(last);
+			while (list.size() <= position) {
+				list.add(null);
+			}
+			list.set(position, value);
+		} else {
+			((DBObject) current).put(last, value);
+		}
+	}
+
+	private static void removeValue(DBObject document, String path) {
+		int dot = path.lastIndexOf('.');
+		Object parent = dot < 0 ? document : getValue(document, path.substring(0, dot));
+		if (parent instanceof DBObject) {
+			((DBObject) parent).removeField(path.substring(dot + 1));
+		}
+	}
+
+	/**
+	 * 深拷贝,存储的文档与调用方传入/取出的文档互不影响
+	 *
+	 * @param value
+	 * @return
+	 */
+	static Object copy(Object value) {
+		if (value instanceof List) {
+			BasicDBList list = new BasicDBList();
+			for (Object element : (List<?>) value) {
+				list.add(copy(element));
+			}
+			return list;
+		}
+		if (value instanceof DBObject) {
+			DBObject source = (DBObject) value;
+			BasicDBObject result = new BasicDBObject();
+			for (String key : source.keySet()) {
+				result.put(key, copy(source.get(key)));
+			}
+			return result;
+		}
+		if (value instanceof Date) {
+			return new Date(((Date) value).getTime());
+		}
+		return value;
+	}
+
+	private static boolean isOperatorObject(Object value) {
+		if (!(value instanceof DBObject) || value instanceof List) {
+			return false;
+		}
+		Iterator<String> keys = ((DBObject) value).keySet().iterator();
+		return keys.hasNext() && keys.next().startsWith("$");
+	}
+
+	private static boolean isTrue(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).intValue() != 0;
+		}
+		return value != null;
+	}
+
+	private static Integer toIndex(String part) {
+		for (int i = 0; i < part.length(); i++) {
+			if (!Character.isDigit(part.charAt(i))) {
+				return null;
+			}
+		}
+		return part.length() == 0 ? null : Integer.valueOf(part);
+	}
+}
@@ -0,0 +1,88 @@
+package com.mongodb;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的MongoDB替身,供DAO的压力测试和基准测试使用,不需要MongoDB服务:
+ *
+ * <pre>
+ * InMemoryMongo mongo = new InMemoryMongo();
+ * mongo.setLatency(500, 300, TimeUnit.MICROSECONDS);
+ * WenwoMongoTemplate template = new WenwoMongoTemplate(new SimpleMongoDbFactory(mongo, &quot;wenwo&quot;));
+ * </pre>
+ * <ul>
+ * <li>查询、更新、删除、批量插入在内存中完成,count/findAndModify/distinct/drop命令也在内存中执行;</li>
+ * <li>可以为每次请求注入固定延迟和随机抖动,模拟网络往返;</li>
+ * <li>只支持WenwoMongoTemplate实际使用的操作符,不支持的操作符会抛出MongoException.</li>
+ * </ul>
+ * 这些类位于com.mongodb包中,因为驱动的查询入口DBCollection.__find是包级可见的.
+ */
+public class InMemoryMongo extends Mongo {
+
+	private final ConcurrentMap<String, InMemoryDB> databases = new ConcurrentHashMap<String, InMemoryDB>();
+
+	private volatile long latencyNanos;
+	private volatile long jitterNanos;
+
+	public InMemoryMongo() throws UnknownHostException {
+		// 驱动在第一次发送请求时才建立连接,内存库不会发送任何请求
+		super(new ServerAddress("127.0.0.1", 27017));
+	}
+
+	/**
+	 * 每次请求注入的延迟
+	 *
+	 * @param latency 固定延迟
+	 * @param jitter 在固定延迟上随机增加的最大值
+	 * @param unit
+	 */
+	public void setLatency(long latency, long jitter, TimeUnit unit) {
+		this.latencyNanos = unit.toNanos(latency);
+		this.jitterNanos = unit.toNanos(jitter);
+	}
+
+	/**
+	 * 清空所有库
+	 */
+	public void clear() {
+		for (InMemoryDB db : databases.values()) {
+			db.clear();
+		}
+	}
+
+	@Override
+	public DB getDB(String dbname) {
+		InMemoryDB db = databases.get(dbname);
+		if (db == null) {
+			InMemoryDB created = new InMemoryDB(this, dbname);
+			db = databases.putIfAbsent(dbname, created);
+			if (db == null) {
+				db = created;
+			}
+		}
+		return db;
+	}
+
+	@Override
+	public List<String> getDatabaseNames() {
+		return new ArrayList<String>(databases.keySet());
+	}
+
+	@Override
+	boolean isMongosConnection() {
+		return false;
+	}
+
+	long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	long getJitterNanos() {
+		return jitterNanos;
+	}
+}
@@ -0,0 +1,315 @@
+package org.springframework.data.mongodb.core;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.Mongo;
+import com.mongodb.ServerAddress;
+
+/**
+ * 基准测试使用的实体和固定文档. 所有基准都只在内存中执行,不需要MongoDB服务.
+ */
+public final class BenchmarkFixtures {
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * 创建不连接服务器的模板:驱动在第一次发送请求时才建立连接,批量插入被替换为只分配_id.
+	 *
+	 * @return
+	 */
+	public static WenwoMongoTemplate offlineTemplate() {
+		try {
+			return new OfflineTemplate(new Mongo(new ServerAddress("127.0.0.1", 27017)));
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 只有少量字段的问题
+	 */
+	public static DBObject smallQuestion() {
+		return question(0);
+	}
+
+	/**
+	 * 带作者和10条回答的问题
+	 */
+	public static DBObject mediumQuestion() {
+		return question(10);
+	}
+
+	/**
+	 * 带作者和200条回答的问题
+	 */
+	public static DBObject largeQuestion() {
+		return question(200);
+	}
+
+	public static DBObject question(int answerCount) {
+		BasicDBObject dbo = new BasicDBObject();
+		dbo.put("_id", new ObjectId());
+		dbo.put("_class", Question.class.getName());
+		dbo.put("title", "如何提高MongoDB的查询性能");
+		dbo.put("content", "问题的详细描述,包含一段较长的文字用于模拟真实的问题内容。");
+		dbo.put("userId", "u10001");
+		dbo.put("status", 1);
+		dbo.put("createTime", new Date());
+		BasicDBList tags = new BasicDBList();
+		tags.add("mongodb");
+		tags.add("java");
+		tags.add("performance");
+		dbo.put("tags", tags);
+		if (answerCount > 0) {
+			BasicDBObject author = new BasicDBObject();
+			author.put("userId", "u10001");
+			author.put("nickName", "wenwo");
+			author.put("level", 3);
+			dbo.put("author", author);
+
+			BasicDBList answers = new BasicDBList();
+			for (int i = 0; i < answerCount; i++) {
+				BasicDBObject answer = new BasicDBObject();
+				answer.put("answerId", "a" + i);
+				answer.put("userId", "u" + (20000 + i));
+				answer.put("content", "第" + i + "条回答的内容");
+				answer.put("likes", i);
+				answer.put("createTime", new Date());
+				answers.add(answer);
+			}
+			dbo.put("answers", answers);
+		}
+		return dbo;
+	}
+
+	/**
+	 * 已转换好的问题实体,_id为新生成的ObjectId
+	 *
+	 * @param count
+	 * @return
+	 */
+	public static List<Question> questions(int count, int answerCount) {
+		List<Question> questions = new ArrayList<Question>(count);
+		for (int i = 0; i < count; i++) {
+			Question question = new Question();
+			question.setId(new ObjectId().toString());
+			question.setTitle("问题" + i);
+			question.setContent("问题的详细描述");
+			question.setUserId("u" + i);
+			question.setStatus(i % 3);
+			question.setCreateTime(new Date());
+			List<String> tags = new ArrayList<String>();
+			tags.add("mongodb");
+			question.setTags(tags);
+			List<Answer> answers = new ArrayList<Answer>(answerCount);
+			for (int j = 0; j < answerCount; j++) {
+				Answer answer = new Answer();
+				answer.setAnswerId("a" + j);
+				answer.setUserId("u" + j);
+				answer.setContent("回答" + j);
+				answer.setLikes(j);
+				answer.setCreateTime(new Date());
+				answers.add(answer);
+			}
+			question.setAnswers(answers);
+			questions.add(question);
+		}
+		return questions;
+	}
+
+	static class OfflineTemplate extends WenwoMongoTemplate {
+
+		OfflineTemplate(Mongo mongo) {
+			super(mongo, "benchmark");
+		}
+
+		@Override
+		protected List<ObjectId> insertDBObjectList(String collectionName, List<DBObject> dbDocList) {
+			List<ObjectId> ids = new ArrayList<ObjectId>(dbDocList.size());
+			for (DBObject dbo : dbDocList) {
+				Object id = dbo.get("_id");
+				if (id == null) {
+					id = new ObjectId();
+					dbo.put("_id", id);
+				}
+				ids.add(id instanceof ObjectId ? (ObjectId) id : null);
+			}
+			return ids;
+		}
+	}
+
+	@Document(collection = "question")
+	public static class Question {
+		@Id
+		private String id;
+		private String title;
+		private String content;
+		private String userId;
+		private int status;
+		private Date createTime;
+		private List<String> tags;
+		private Author author;
+		private List<Answer> answers;
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public void setTitle(String title) {
+			this.title = title;
+		}
+
+		public String getContent() {
+			return content;
+		}
+
+		public void setContent(String content) {
+			this.content = content;
+		}
+
+		public String getUserId() {
+			return userId;
+		}
+
+		public void setUserId(String userId) {
+			this.userId = userId;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public void setStatus(int status) {
+			this.status = status;
+		}
+
+		public Date getCreateTime() {
+			return createTime;
+		}
+
+		public void setCreateTime(Date createTime) {
+			this.createTime = createTime;
+		}
+
+		public List<String> getTags() {
+			return tags;
+		}
+
+		public void setTags(List<String> tags) {
+			this.tags = tags;
+		}
+
+		public Author getAuthor() {
+			return author;
+		}
+
+		public void setAuthor(Author author) {
+			this.author = author;
+		}
+
+		public List<Answer> getAnswers() {
+			return answers;
+		}
+
+		public void setAnswers(List<Answer> answers) {
+			this.answers = answers;
+		}
+	}
+
+	public static class Author {
+		private String userId;
+		private String nickName;
+		private int level;
+
+		public String getUserId() {
+			return userId;
+		}
+
+		public void setUserId(String userId) {
+			this.userId = userId;
+		}
+
+		public String getNickName() {
+			return nickName;
+		}
+
+		public void setNickName(String nickName) {
+			this.nickName = nickName;
+		}
+
+		public int getLevel() {
+			return level;
+		}
+
+		public void setLevel(int level) {
+			this.level = level;
+		}
+	}
+
+	public static class Answer {
+		private String answerId;
+		private String userId;
+		private String content;
+		private int likes;
+		private Date createTime;
+
+		public String getAnswerId() {
+			return answerId;
+		}
+
+		public void setAnswerId(String answerId) {
+			this.answerId = answerId;
+		}
+
+		public String getUserId() {
+			return userId;
+		}
+
+		public void setUserId(String userId) {
+			this.userId = userId;
+		}
+
+		public String getContent() {
+			return content;
+		}
+
+		public void setContent(String content) {
+			this.content = content;
+		}
+
+		public int getLikes() {
+			return likes;
+		}
+
+		public void setLikes(int likes) {
+			this.likes = likes;
+		}
+
+		public Date getCreateTime() {
+			return createTime;
+		}
+
+		public void setCreateTime(Date createTime) {
+			this.createTime = createTime;
+		}
+	}
+}
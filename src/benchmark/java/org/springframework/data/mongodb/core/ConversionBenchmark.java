@@ -0,0 +1,87 @@
+package org.springframework.data.mongodb.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import com.mongodb.DBObject;
+
+/**
+ * 文档与实体之间的转换开销:
+ * <ul>
+ * <li>read: 查询结果的读取转换(与ReadDbObjectCallback相同,即converter.read);</li>
+ * <li>subDocument: findSubEntityById对子文档的处理和读取;</li>
+ * <li>insertBatch: doInsertBatch的转换和分块,插入本身被替换为只分配_id.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+
+	@Param({ "small", "medium", "large" })
+	public String size;
+
+	@Param({ "100" })
+	public int batchSize;
+
+	private WenwoMongoTemplate template;
+	private MongoConverter converter;
+	private DBObject document;
+	private List<BenchmarkFixtures.Question> batch;
+
+	@Setup
+	public void setUp() {
+		template = BenchmarkFixtures.offlineTemplate();
+		converter = template.getConverter();
+		int answers;
+		if ("small".equals(size)) {
+			document = BenchmarkFixtures.smallQuestion();
+			answers = 0;
+		} else if ("medium".equals(size)) {
+			document = BenchmarkFixtures.mediumQuestion();
+			answers = 10;
+		} else {
+			document = BenchmarkFixtures.largeQuestion();
+			answers = 200;
+		}
+		batch = BenchmarkFixtures.questions(batchSize, answers);
+	}
+
+	@Benchmark
+	public BenchmarkFixtures.Question read() {
+		return converter.read(BenchmarkFixtures.Question.class, document);
+	}
+
+	@Benchmark
+	public BenchmarkFixtures.Author subDocument() {
+		if (!document.containsField("author")) {
+			return null;
+		}
+		WenwoMongoTemplate.SubDocumentCallbackHandler handler = template.new SubDocumentCallbackHandler(converter,
+				"author");
+		handler.processDocument(document);
+		return converter.read(BenchmarkFixtures.Author.class, handler.getSubObj());
+	}
+
+	@Benchmark
+	public List<BenchmarkFixtures.Question> insertBatch() {
+		template.doInsertBatch("question", batch, converter);
+		return batch;
+	}
+}
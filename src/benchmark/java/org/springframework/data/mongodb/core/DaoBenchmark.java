@@ -0,0 +1,97 @@
+package org.springframework.data.mongodb.core;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.InMemoryMongo;
+import com.wenwo.platform.dao.base.BaseDao;
+import com.wenwo.platform.dao.base.BaseDaoImpl;
+
+/**
+ * BaseDaoImpl在并发下的吞吐,数据库为注入了延迟的内存替身
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class DaoBenchmark {
+
+	private static final int DOCUMENTS = 10000;
+
+	/**
+	 * 每次请求注入的延迟(微秒)
+	 */
+	@Param({ "0", "500" })
+	public long latencyMicros;
+
+	private BaseDao<BenchmarkFixtures.Question, String> dao;
+	private List<String> ids;
+
+	@Setup
+	public void setUp() {
+		InMemoryMongo mongo;
+		try {
+			mongo = new InMemoryMongo();
+		} catch (UnknownHostException e) {
+			throw new IllegalStateException(e);
+		}
+		BaseDaoImpl<BenchmarkFixtures.Question, String> impl = new BaseDaoImpl<BenchmarkFixtures.Question, String>() {
+		};
+		impl.setMongoTemplate(new WenwoMongoTemplate(new SimpleMongoDbFactory(mongo, "benchmark")));
+		dao = impl;
+
+		List<BenchmarkFixtures.Question> questions = BenchmarkFixtures.questions(DOCUMENTS, 3);
+		dao.save(questions);
+		ids = new ArrayList<String>(DOCUMENTS);
+		for (BenchmarkFixtures.Question question : questions) {
+			ids.add(question.getId());
+		}
+		mongo.setLatency(latencyMicros, latencyMicros / 2, TimeUnit.MICROSECONDS);
+	}
+
+	@Benchmark
+	public BenchmarkFixtures.Question findById() {
+		return dao.findById(randomId());
+	}
+
+	@Benchmark
+	public List<BenchmarkFixtures.Question> findListByKeyValue() {
+		return dao.findListByKeyValue("userId", "u" + ThreadLocalRandom.current().nextInt(DOCUMENTS));
+	}
+
+	@Benchmark
+	public int updateById() {
+		return dao.updateById(randomId(), new Update().inc("status", 1));
+	}
+
+	@Benchmark
+	public Long count() {
+		return dao.getCount(Query.query(Criteria.where("status").is(1)));
+	}
+
+	private String randomId() {
+		return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+	}
+}
@@ -0,0 +1,56 @@
+package org.springframework.data.mongodb.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MongoUtilImpl.getEntitysByIds对查询结果按ID顺序重排(sortByIds)的开销,结果集顺序被打乱且缺少10%的ID
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdOrderingBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int count;
+
+	private WenwoMongoTemplate template;
+	private List<String> ids;
+	private List<BenchmarkFixtures.Question> entities;
+
+	@Setup
+	public void setUp() {
+		template = BenchmarkFixtures.offlineTemplate();
+		List<BenchmarkFixtures.Question> questions = BenchmarkFixtures.questions(count, 0);
+		ids = new ArrayList<String>(count);
+		for (BenchmarkFixtures.Question question : questions) {
+			ids.add(question.getId());
+		}
+		entities = new ArrayList<BenchmarkFixtures.Question>(questions.subList(0, count - count / 10));
+		Collections.shuffle(entities, new Random(42));
+	}
+
+	@Benchmark
+	public List<BenchmarkFixtures.Question> sortByIds() {
+		List<String> missingIds = new ArrayList<String>();
+		return template.sortByIds(ids, entities, missingIds);
+	}
+}
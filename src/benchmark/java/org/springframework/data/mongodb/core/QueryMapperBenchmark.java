@@ -0,0 +1,90 @@
+package org.springframework.data.mongodb.core;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.DBObject;
+import com.wenwo.platform.dao.util.WenwoQueryMapper;
+
+/**
+ * WenwoQueryMapper.getMappedObject对几种常见查询形状的映射开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryMapperBenchmark {
+
+	private WenwoQueryMapper mapper;
+	private MongoPersistentEntity<?> entity;
+
+	private DBObject byId;
+	private DBObject byIds;
+	private DBObject equalityAndIn;
+	private DBObject rangeAndNested;
+	private DBObject or;
+
+	@Setup
+	public void setUp() {
+		WenwoMongoTemplate template = BenchmarkFixtures.offlineTemplate();
+		mapper = template.getQueryMapper();
+		entity = template.getConverter().getMappingContext().getPersistentEntity(BenchmarkFixtures.Question.class);
+
+		byId = Query.query(Criteria.where("id").is(new ObjectId().toString())).getQueryObject();
+		String[] ids = new String[50];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = new ObjectId().toString();
+		}
+		byIds = Query.query(Criteria.where("id").in(Arrays.asList(ids))).getQueryObject();
+		equalityAndIn = Query.query(Criteria.where("userId").is("u10001").and("status").in(0, 1, 2)).getQueryObject();
+		rangeAndNested = Query.query(
+				Criteria.where("createTime").gte(new Date(0)).lt(new Date()).and("answers.userId").is("u20001")
+						.and("author.level").gt(2)).getQueryObject();
+		or = Query.query(
+				new Criteria().orOperator(Criteria.where("userId").is("u10001"), Criteria.where("tags").in("java"),
+						Criteria.where("id").is(new ObjectId().toString()))).getQueryObject();
+	}
+
+	@Benchmark
+	public DBObject byId() {
+		return mapper.getMappedObject(byId, entity);
+	}
+
+	@Benchmark
+	public DBObject byIds() {
+		return mapper.getMappedObject(byIds, entity);
+	}
+
+	@Benchmark
+	public DBObject equalityAndIn() {
+		return mapper.getMappedObject(equalityAndIn, entity);
+	}
+
+	@Benchmark
+	public DBObject rangeAndNested() {
+		return mapper.getMappedObject(rangeAndNested, entity);
+	}
+
+	@Benchmark
+	public DBObject or() {
+		return mapper.getMappedObject(or, entity);
+	}
+}
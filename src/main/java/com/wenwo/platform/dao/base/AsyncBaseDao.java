@@ -0,0 +1,117 @@
+package com.wenwo.platform.dao.base;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.wenwo.platform.dao.util.AsyncExecutor;
+
+/**
+ * 数据访问异步门面:把{@link BaseDao}的常用读操作提交到{@link AsyncExecutor}执行,多个互不依赖的查询可以并发进行.
+ * 其它DAO(如{@link IaskBaseDao}、{@link CiDianBaseDao})的调用可通过{@link #submit(Callable)}异步执行.
+ * 提交线程通过{@link com.wenwo.platform.dao.util.ReadYourWritesTracker#bindContext(Object)}绑定的调用方上下文会带到执行线程.
+ * 
+ * @param <T>
+ *            类
+ * @param <PK>
+ *            主键
+ */
+public class AsyncBaseDao<T, PK extends Serializable> {
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    private final BaseDao<T, PK> dao;
+
+    private final AsyncExecutor executor;
+
+    /**
+     * 使用共享线程池,并发上限为8
+     * 
+     * @param dao
+     */
+    public AsyncBaseDao(BaseDao<T, PK> dao) {
+        this(dao, new AsyncExecutor(DEFAULT_MAX_CONCURRENCY));
+    }
+
+    public AsyncBaseDao(BaseDao<T, PK> dao, AsyncExecutor executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    public BaseDao<T, PK> getDao() {
+        return dao;
+    }
+
+    public Future<T> findById(final PK id) {
+        return executor.submit(new Callable<T>() {
+            public T call() {
+                return dao.findById(id);
+            }
+        });
+    }
+
+    public Future<T> findOne(final Query query) {
+        return executor.submit(new Callable<T>() {
+            public T call() {
+                return dao.findOne(query);
+            }
+        });
+    }
+
+    public Future<List<T>> findList(final Query query) {
+        return executor.submit(new Callable<List<T>>() {
+            public List<T> call() {
+                return dao.findList(query);
+            }
+        });
+    }
+
+    public <D> Future<List<D>> findList(final Query query, final Class<D> projectionType) {
+        return executor.submit(new Callable<List<D>>() {
+            public List<D> call() {
+                return dao.findList(query, projectionType);
+            }
+        });
+    }
+
+    public Future<List<T>> findListByIds(final Collection<PK> ids) {
+        return executor.submit(new Callable<List<T>>() {
+            public List<T> call() {
+                return dao.findListByIds(ids);
+            }
+        });
+    }
+
+    public Future<Page<T>> findPage(final Query query, final Pageable pageable, final Sort... sort) {
+        return executor.submit(new Callable<Page<T>>() {
+            public Page<T> call() {
+                return dao.findPage(query, pageable, sort);
+            }
+        });
+    }
+
+    public Future<Long> getCount(final Query query) {
+        return executor.submit(new Callable<Long>() {
+            public Long call() {
+                return dao.getCount(query);
+            }
+        });
+    }
+
+    /**
+     * 异步执行任意DAO调用,与本门面的其它方法共享并发上限
+     * 
+     * @param task
+     * @return
+     */
+    public <V> Future<V> submit(Callable<V> task) {
+        return executor.submit(task);
+    }
+}
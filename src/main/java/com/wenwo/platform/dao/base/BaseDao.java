@@ -16,6 +16,13 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import com.mongodb.ReadPreference;
+import com.wenwo.platform.dao.util.BulkOperations;
+import com.wenwo.platform.dao.util.ChunkedInsertResult;
+import com.wenwo.platform.dao.util.CloseableIterator;
+import com.wenwo.platform.dao.util.KeysetPage;
+import com.wenwo.platform.dao.util.PreparedQuery;
+
 /**
  * 数据访问基类接口
  * 
@@ -62,6 +69,17 @@ public interface BaseDao<T, PK extends Serializable> {
 	 */
 	public T findOne(Query query);
 
+	/**
+	 * 按指定的读偏好(如带标签的从库)根据条件获取实体对象
+	 * 
+	 * @param query
+	 *            条件
+	 * @param readPreference
+	 *            读偏好
+	 * @return 实体对象
+	 */
+	public T findOne(Query query, ReadPreference readPreference);
+
 	/**
 	 * 根据条件获取实体集合
 	 * 
@@ -70,6 +88,27 @@ public interface BaseDao<T, PK extends Serializable> {
 	 */
 	public List<T> findList(Query query);
 
+	/**
+	 * 按指定的读偏好(如带标签的从库)根据条件获取实体集合
+	 * 
+	 * @param query
+	 * @param readPreference
+	 *            读偏好
+	 * @return
+	 */
+	public List<T> findList(Query query, ReadPreference readPreference);
+
+	/**
+	 * 根据条件获取投影对象集合:条件按实体类映射,查询未指定返回字段时只读取投影类型中与实体同名的属性对应的字段
+	 * 
+	 * @param query
+	 *            条件
+	 * @param projectionType
+	 *            投影类型(DTO)
+	 * @return
+	 */
+	public <D> List<D> findList(Query query, Class<D> projectionType);
+
 	/**
 	 * 获取集合
 	 * 
@@ -148,13 +187,31 @@ public interface BaseDao<T, PK extends Serializable> {
 	public List<T> findListByMap(Map<String, Object> queryMap);
 
 	/**
-	 * id数组查询集合
+	 * 声明一个预编译的参数化查询,结构只映射一次,执行时只绑定参数
+	 * 
+	 * @return
+	 */
+	public PreparedQuery.Builder<T> prepareQuery();
+
+	/**
+	 * id数组查询集合,结果按ID集合的顺序排列
 	 * 
 	 * @param ids
 	 *            ID集合
 	 * @return
 	 */
 	public List<T> findListByIds(Collection<PK> ids);
+
+	/**
+	 * id数组查询集合,结果按ID集合的顺序排列
+	 * 
+	 * @param ids
+	 *            ID集合
+	 * @param missingIds
+	 *            不为null时收集没有查到的ID
+	 * @return
+	 */
+	public List<T> findListByIdsInOrder(Collection<PK> ids, Collection<PK> missingIds);
 	public List<T> findListByIds(Collection<PK> ids, Sort... sort);
 
 	/**
@@ -164,6 +221,22 @@ public interface BaseDao<T, PK extends Serializable> {
 	 */
 	public List<T> findAll();
 
+	/**
+	 * 流式查询实体集合,结果在迭代时逐条转换,适用于大数据集合的遍历(如导出、重建索引)
+	 * 注意:使用完毕后必须关闭返回的迭代器
+	 * 
+	 * @param query
+	 * @return
+	 */
+	public CloseableIterator<T> streamList(Query query);
+
+	/**
+	 * 流式遍历所有实体对象,使用完毕后必须关闭返回的迭代器
+	 * 
+	 * @return
+	 */
+	public CloseableIterator<T> streamAll();
+
 	/**
 	 * 查询分页(注意:该函数只能适用于小数据集合)
 	 * 
@@ -174,6 +247,17 @@ public interface BaseDao<T, PK extends Serializable> {
 	 */
 	public Page<T> findPage(Query query, Pageable pageable, Sort... sort);
 
+	/**
+	 * 基于续页令牌(seek)的分页查询,不使用skip,深度翻页与第一页代价相同
+	 * 
+	 * @param query
+	 * @param pageable	提供每页条数和页码;token为空时按页码偏移查询
+	 * @param token		上一页返回的续页令牌({@link KeysetPage#getNextToken()}),第一页传null
+	 * @param sort
+	 * @return
+	 */
+	public KeysetPage<T> findPageAfter(Query query, Pageable pageable, String token, Sort... sort);
+
 	/**
 	 * 查询单个字段的值(结果多时慎用)
 	 * 
@@ -198,6 +282,17 @@ public interface BaseDao<T, PK extends Serializable> {
 	 * @return 实体对象总数
 	 */
 	public Long getCount(Query query);
+
+	/**
+	 * 按指定的读偏好获取实体对象总数
+	 * 
+	 * @param query
+	 *            查询对象
+	 * @param readPreference
+	 *            读偏好
+	 * @return 实体对象总数
+	 */
+	public Long getCount(Query query, ReadPreference readPreference);
 	/**
 	 * 获取所有实体对象总数
 	 * @return
@@ -219,6 +314,24 @@ public interface BaseDao<T, PK extends Serializable> {
 	 * @return
 	 */
 	public Long getCount(String key, Object val);
+
+	/**
+	 * 获取符合条件的实体对象数,最多数到limit为止,用于"99+"之类只关心是否超过某个数的场景
+	 * 
+	 * @param query
+	 *            查询对象,为null时统计所有实体
+	 * @param limit
+	 *            最大计数,必须大于0
+	 * @return 实体对象数,不超过limit
+	 */
+	public Long getCountUpTo(Query query, long limit);
+
+	/**
+	 * 从集合元数据读取实体对象总数的估计值,不执行count.非正常关闭后或分片集群中可能不准确,适合后台和统计页面
+	 * 
+	 * @return 实体对象总数的估计值
+	 */
+	public Long estimatedCount();
 	
 	/**
 	 * 保存实体对象
@@ -261,6 +374,14 @@ public interface BaseDao<T, PK extends Serializable> {
 	 */
 	public void save(Collection<T> entitys);
 
+	/**
+	 * 分块插入多个实体对象,某一块失败时继续插入其余分块,失败的分块在结果中返回
+	 * 
+	 * @param entitys
+	 * @return
+	 */
+	public ChunkedInsertResult saveChunked(Collection<T> entitys);
+
 	/**
 	 * 更新实体对象
 	 * 
@@ -286,6 +407,18 @@ public interface BaseDao<T, PK extends Serializable> {
 	 */
 	public int updateByIds(Collection<PK> ids, Update update);
 
+	/**
+	 * 对计数字段做$inc,如浏览数、点赞数.设置了计数器合并写入时增量先在内存中累加,
+	 * 在下次写入时与同一文档的其他增量合并为一次更新,否则立即更新
+	 * 
+	 * @param id
+	 * @param field
+	 *            计数字段
+	 * @param delta
+	 *            增量
+	 */
+	public void incrementCounter(PK id, String field, long delta);
+
 	/**
 	 * 
 	 * @param query
@@ -351,6 +484,15 @@ public interface BaseDao<T, PK extends Serializable> {
 	 */
 	public void remove(Collection<PK> ids);
 
+	/**
+	 * 创建批量写操作,插入、按ID更新/删除等操作合并后以尽量少的请求执行
+	 * 
+	 * @param mode
+	 *            有序(遇错即停)或无序(出错继续)执行
+	 * @return
+	 */
+	public BulkOperations<T> bulkOps(BulkOperations.Mode mode);
+
 	/**
 	 * 删除集合
 	 */
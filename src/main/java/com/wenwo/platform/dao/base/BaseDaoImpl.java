@@ -5,10 +5,13 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -29,6 +32,21 @@ import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteResult;
+import com.wenwo.platform.dao.cache.EntityCache;
+import com.wenwo.platform.dao.cache.EntityCacheRegistry;
+import com.wenwo.platform.dao.util.BatchingIdLoader;
+import com.wenwo.platform.dao.util.BulkOperations;
+import com.wenwo.platform.dao.util.BulkResult;
+import com.wenwo.platform.dao.util.ChunkedInsertResult;
+import com.wenwo.platform.dao.util.CloseableIterator;
+import com.wenwo.platform.dao.util.CountCache;
+import com.wenwo.platform.dao.util.CounterAccumulator;
+import com.wenwo.platform.dao.util.KeysetPage;
+import com.wenwo.platform.dao.util.KeysetPaging;
+import com.wenwo.platform.dao.util.PageQueryExecutor;
+import com.wenwo.platform.dao.util.PreparedQuery;
+import com.wenwo.platform.dao.util.ReadYourWritesTracker;
+import com.wenwo.platform.dao.util.WenwoQuery;
 import com.wenwo.platform.paging.PagedataImpl;
 
 /**
@@ -47,23 +65,224 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
 
     private static final String ID_FIELD = "_id";
 
+    private static final int REMOVE_BATCH_SIZE = 1000;
+
     private WenwoMongoTemplate mongoTemplate;
 
     private WenwoMongoTemplate realtimeTemplate;
 
+    private WenwoMongoTemplate sourceTemplate;
+
+    private String dataSource;
+
+    private boolean primaryPointReads = true;
+
     public void setMongoTemplate(WenwoMongoTemplate mongoTemplate) {
-        this.mongoTemplate = mongoTemplate;
-        this.mongoTemplate.setReadPreference(ReadPreference.secondaryPreferred());
-        try {
-            this.realtimeTemplate = mongoTemplate.clone();
-            realtimeTemplate.setReadPreference(ReadPreference.primary());
-        } catch (CloneNotSupportedException e) {
-            LOGGER.error("Exception while cloning WenwoMongoTemplate.", e);
+        this.sourceTemplate = mongoTemplate;
+        initTemplates();
+    }
+
+    /**
+     * 设置数据源名称,通过{@link WenwoMongoTemplate#forDataSource(String)}访问该数据源;为null时使用注入的模板所在的库(默认)
+     * 
+     * @param dataSource
+     */
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+        if (!customEntityCache) {
+            this.entityCache = EntityCacheRegistry.getCache(dataSource, entityClass);
+        }
+        initTemplates();
+    }
+
+    /**
+     * 设置按ID等单条读取是否走主库,默认true;为false时与列表查询一样优先读从库,实体缓存也从从库填充
+     * 
+     * @param primaryPointReads
+     */
+    public void setPrimaryPointReads(boolean primaryPointReads) {
+        this.primaryPointReads = primaryPointReads;
+        initTemplates();
+    }
+
+    private void initTemplates() {
+        if (sourceTemplate == null) {
+            return;
         }
+        WenwoMongoTemplate template = dataSource == null ? sourceTemplate : sourceTemplate.forDataSource(dataSource);
+        this.mongoTemplate = template.withReadPreference(ReadPreference.secondaryPreferred());
+        this.realtimeTemplate = template.withReadPreference(primaryPointReads ? ReadPreference.primary()
+                : ReadPreference.secondaryPreferred());
+        preparedQueries.clear();
+        initBatchLoader();
+    }
+
+    private static final int PREPARED_QUERY_CACHE_SIZE = 256;
+
+    private final Map<String, PreparedQuery<T>> preparedQueries = new ConcurrentHashMap<String, PreparedQuery<T>>();
+
+    private PageQueryExecutor pageQueryExecutor = PageQueryExecutor.getDefault();
+
+    /**
+     * 设置分页查询执行器(count与find并发执行),默认使用共享实例
+     * 
+     * @param pageQueryExecutor
+     */
+    public void setPageQueryExecutor(PageQueryExecutor pageQueryExecutor) {
+        this.pageQueryExecutor = pageQueryExecutor;
+    }
+
+    private volatile CountCache countCache;
+
+    /**
+     * 设置getCount和findPage的总数缓存,经本DAO的写操作使本集合的总数失效;为null时不缓存(默认).
+     * 多个DAO(或MongoUtilImpl)可共享同一个缓存
+     * 
+     * @param countCache
+     */
+    public void setCountCache(CountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    public CountCache getCountCache() {
+        return countCache;
+    }
+
+    private long batchLoadWindow;
+
+    private int batchLoadMaxSize = 100;
+
+    private volatile BatchingIdLoader<T> batchLoader;
+
+    private volatile BatchingIdLoader<T> secondaryBatchLoader;
+
+    private volatile ReadYourWritesTracker readYourWritesTracker;
+
+    /**
+     * 设置读己之写的路由:按ID读取时,窗口内没有相关写操作的读取走从库,否则走主库.
+     * 为null时按ID读取总是走主库(默认)
+     * 
+     * @param readYourWritesTracker
+     */
+    public void setReadYourWritesTracker(ReadYourWritesTracker readYourWritesTracker) {
+        this.readYourWritesTracker = readYourWritesTracker;
+        initBatchLoader();
+    }
+
+    public ReadYourWritesTracker getReadYourWritesTracker() {
+        return readYourWritesTracker;
+    }
+
+    /**
+     * 设置findById的合并窗口(毫秒),窗口内并发的findById合并为一次_id $in查询;小于等于0时不合并(默认)
+     * 
+     * @param batchLoadWindow
+     */
+    public void setBatchLoadWindow(long batchLoadWindow) {
+        this.batchLoadWindow = batchLoadWindow;
+        initBatchLoader();
+    }
+
+    /**
+     * 设置findById每批最多合并的ID数,默认100
+     * 
+     * @param batchLoadMaxSize
+     */
+    public void setBatchLoadMaxSize(int batchLoadMaxSize) {
+        this.batchLoadMaxSize = batchLoadMaxSize;
+        initBatchLoader();
+    }
+
+    private volatile CounterAccumulator counterAccumulator;
+
+    /**
+     * 设置计数器的合并写入,为null时{@link #incrementCounter(Serializable, String, long)}立即写入(默认)
+     * 
+     * @param counterAccumulator
+     */
+    public void setCounterAccumulator(CounterAccumulator counterAccumulator) {
+        this.counterAccumulator = counterAccumulator;
+    }
+
+    public CounterAccumulator getCounterAccumulator() {
+        return counterAccumulator;
+    }
+
+    /**
+     * 写入合并后的计数器增量,所有文档的更新在一次批量update命令中发送
+     */
+    private final CounterAccumulator.CounterSink counterSink = new CounterAccumulator.CounterSink() {
+        public int flush(Map<Object, Map<String, Long>> deltas) {
+            BulkOperations<T> ops = new BulkOperations<T>(mongoTemplate, entityClass, getCollectionName(),
+                    BulkOperations.Mode.UNORDERED);
+            for (Map.Entry<Object, Map<String, Long>> entry : deltas.entrySet()) {
+                Update update = new Update();
+                for (Map.Entry<String, Long> field : entry.getValue().entrySet()) {
+                    update.inc(field.getKey(), counterDelta(field.getValue()));
+                }
+                ops.updateById(entry.getKey(), update);
+            }
+            BulkResult result = ops.execute();
+            for (Object id : deltas.keySet()) {
+                written(id);
+            }
+            if (result.hasErrors()) {
+                LOGGER.warn("Counter flush of " + getCollectionName() + " failed: " + result);
+            }
+            return result.getFailed();
+        }
+    };
+
+    /**
+     * 增量在int范围内时按int写入,以免$inc把int类型的计数字段改为long
+     */
+    private static Number counterDelta(Long delta) {
+        long value = delta.longValue();
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Number) Integer.valueOf((int) value) : delta;
+    }
+
+    private void initBatchLoader() {
+        if (realtimeTemplate != null && batchLoadWindow > 0) {
+            batchLoader = new BatchingIdLoader<T>(realtimeTemplate, entityClass, batchLoadWindow, batchLoadMaxSize);
+        } else {
+            batchLoader = null;
+        }
+        if (batchLoader != null && readYourWritesTracker != null) {
+            secondaryBatchLoader = new BatchingIdLoader<T>(mongoTemplate, entityClass, batchLoadWindow,
+                    batchLoadMaxSize);
+        } else {
+            secondaryBatchLoader = null;
+        }
+    }
+
+    private ExecutorService insertConversionExecutor;
+
+    private int insertParallelism;
+
+    /**
+     * 设置分块插入时转换文档的线程池,为null时在调用线程中转换(默认)
+     * 
+     * @param insertConversionExecutor
+     */
+    public void setInsertConversionExecutor(ExecutorService insertConversionExecutor) {
+        this.insertConversionExecutor = insertConversionExecutor;
+    }
+
+    /**
+     * 设置分块插入时提前转换的分块数
+     * 
+     * @param insertParallelism
+     */
+    public void setInsertParallelism(int insertParallelism) {
+        this.insertParallelism = insertParallelism;
     }
 
     protected Class<T> entityClass;
 
+    private EntityCache<DBObject> entityCache;
+
+    private boolean customEntityCache;
+
     @SuppressWarnings("unchecked")
     public BaseDaoImpl() {
         Class<?> c = getClass();
@@ -72,16 +291,81 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
             Type[] parameterizedType = ((ParameterizedType) type).getActualTypeArguments();
             this.entityClass = (Class<T>) parameterizedType[0];
         }
+        this.entityCache = EntityCacheRegistry.getCache(entityClass);
+    }
+
+    /**
+     * 设置按ID读取的实体缓存,默认使用实体类上{@link com.wenwo.platform.dao.cache.CacheableEntity}注解开启的、
+     * 按数据源共享的缓存,传null关闭缓存
+     * 
+     * @param entityCache
+     */
+    public void setEntityCache(EntityCache<DBObject> entityCache) {
+        this.entityCache = entityCache;
+        this.customEntityCache = true;
+    }
+
+    public EntityCache<DBObject> getEntityCache() {
+        return entityCache;
     }
 
     @Override
     public T findById(PK id) {
-        return realtimeTemplate.findById(id, entityClass);
+        if (entityCache == null) {
+            return loadById(id);
+        }
+        // 缓存只从realtimeTemplate读取的文档填充,避免把从库延迟的状态缓存整个有效期
+        DBObject document = entityCache.get(id);
+        if (document == null) {
+            long generation = entityCache.getGeneration(id);
+            document = loadDocumentById(id);
+            if (document == null) {
+                return null;
+            }
+            entityCache.put(id, document, generation);
+        }
+        return mongoTemplate.readEntity(document, entityClass);
+    }
+
+    private DBObject loadDocumentById(PK id) {
+        BatchingIdLoader<T> loader = batchLoader;
+        if (loader != null) {
+            return loader.loadDocument(id);
+        }
+        List<DBObject> documents = realtimeTemplate.findDocuments(Query.query(Criteria.where(ID_FIELD).is(id)),
+                entityClass);
+        return documents.isEmpty() ? null : documents.get(0);
+    }
+
+    private T loadById(PK id) {
+        boolean primary = routeToPrimary(id);
+        BatchingIdLoader<T> loader = primary ? batchLoader : secondaryBatchLoader;
+        if (loader == null) {
+            return (primary ? realtimeTemplate : mongoTemplate).findById(id, entityClass);
+        }
+        return loader.load(id);
     }
 
     @Override
     public T findOne(Query query) {
-        return realtimeTemplate.findOne(query, entityClass);
+        Object id = query.getQueryObject().get(ID_FIELD);
+        boolean primary = routeToPrimary(id instanceof DBObject ? null : id);
+        return (primary ? realtimeTemplate : mongoTemplate).findOne(query, entityClass);
+    }
+
+    @Override
+    public T findOne(Query query, ReadPreference readPreference) {
+        return mongoTemplate.withReadPreference(readPreference).findOne(query, entityClass);
+    }
+
+    @Override
+    public List<T> findList(Query query, ReadPreference readPreference) {
+        return mongoTemplate.withReadPreference(readPreference).find(query, entityClass);
+    }
+
+    private boolean routeToPrimary(Object id) {
+        ReadYourWritesTracker tracker = readYourWritesTracker;
+        return tracker == null || tracker.routeToPrimary(id);
     }
 
     @Override
@@ -90,6 +374,13 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
         return findList(query, 0, sort);
     }
 
+    @Override
+    public <D> List<D> findList(Query query, Class<D> projectionType) {
+        if (query == null)
+            query = new Query();
+        return mongoTemplate.findProjected(query, entityClass, projectionType, getCollectionName());
+    }
+
     @Override
     public List<T> findList(Query query, Sort... sort) {
         return findList(query, 0, sort);
@@ -117,23 +408,23 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
 
     @Override
     public List<T> findListByKeyValue(String key, Object value) {
-        return findList(Query.query(Criteria.where(key).is(value)));
+        return findListByKeyValue(key, value, 0);
     }
 
     @Override
     public List<T> findListByKeyValues(String key, Collection<String> values) {
-        return findList(Query.query(Criteria.where(key).in(values)));
+        return findListByKeyValues(key, values, 0);
     }
     
     @Override
 	public List<T> findListByKeyValue(String key, Object value, int limit) {
-    	return findList(Query.query(Criteria.where(key).is(value)),limit);
+    	return getPreparedQuery(PreparedQuery.Operator.EQ, limit, key).find(value);
 	}
 
 	@Override
 	public List<T> findListByKeyValues(String key, Collection<String> values,
 			int limit) {
-		return findList(Query.query(Criteria.where(key).in(values)),limit);
+		return getPreparedQuery(PreparedQuery.Operator.IN, limit, key).find(values);
 	}
 	
 	@Override
@@ -141,24 +432,66 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
 		if(queryMap == null || queryMap.isEmpty()){
 			return null;
 		}
-		Query query = new Query();
-		Set<String> keyset = queryMap.keySet();
-		Iterator<String> keys = keyset.iterator();
-		while(keys.hasNext()){
-			String key = keys.next();
-			query.addCriteria(Criteria.where(key).is(queryMap.get(key)));
+		String[] keys = new String[queryMap.size()];
+		Object[] values = new Object[queryMap.size()];
+		int i = 0;
+		for (Map.Entry<String, Object> entry : queryMap.entrySet()) {
+			keys[i] = entry.getKey();
+			values[i++] = entry.getValue();
 		}
-		return findList(query);
+		return getPreparedQuery(PreparedQuery.Operator.EQ, 0, keys).find(values);
 	}
 
+    @Override
+    public PreparedQuery.Builder<T> prepareQuery() {
+        return PreparedQuery.builder(mongoTemplate, entityClass, getCollectionName());
+    }
+
+    /**
+     * 按查询结构取预编译查询,结构相同的查询只映射一次
+     */
+    private PreparedQuery<T> getPreparedQuery(PreparedQuery.Operator operator, int limit, String... keys) {
+        StringBuilder shape = new StringBuilder().append(operator).append(':').append(limit);
+        for (String key : keys) {
+            shape.append(':').append(key);
+        }
+        String cacheKey = shape.toString();
+        PreparedQuery<T> query = preparedQueries.get(cacheKey);
+        if (query == null) {
+            PreparedQuery.Builder<T> builder = prepareQuery().limit(limit);
+            for (String key : keys) {
+                builder.param(key, operator);
+            }
+            query = builder.build();
+            if (preparedQueries.size() >= PREPARED_QUERY_CACHE_SIZE) {
+                preparedQueries.clear();
+            }
+            preparedQueries.put(cacheKey, query);
+        }
+        return query;
+    }
+
     @Override
     public List<T> findListByIds(Collection<PK> ids) {
-        Sort sort = null;
-        return findListByIds(ids, sort);
+        return findListByIdsInOrder(ids, null);
+    }
+
+    @Override
+    public List<T> findListByIdsInOrder(Collection<PK> ids, Collection<PK> missingIds) {
+        List<T> entities;
+        if (entityCache != null) {
+            entities = findListByIdsCached(ids);
+        } else {
+            entities = findList(Query.query(Criteria.where(ID_FIELD).in(ids)));
+        }
+        return mongoTemplate.sortByIds(ids, entities, missingIds);
     }
 
     @Override
     public List<T> findListByIds(Collection<PK> ids, Sort... sort) {
+        if (entityCache != null && isUnsorted(sort)) {
+            return findListByIdsCached(ids);
+        }
         Query query = Query.query(Criteria.where(ID_FIELD).in(ids));
         if (sort != null) {
             for (Sort s : sort) {
@@ -168,101 +501,268 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
         return findList(query);
     }
 
+    private List<T> findListByIdsCached(Collection<PK> ids) {
+        List<T> result = new ArrayList<T>(ids.size());
+        List<PK> missing = new ArrayList<PK>();
+        Map<String, Long> generations = new HashMap<String, Long>();
+        for (PK id : ids) {
+            DBObject document = entityCache.get(id);
+            if (document == null) {
+                missing.add(id);
+                generations.put(id.toString(), Long.valueOf(entityCache.getGeneration(id)));
+            } else {
+                result.add(mongoTemplate.readEntity(document, entityClass));
+            }
+        }
+        if (!missing.isEmpty()) {
+            // 与findById一样只用realtimeTemplate读取的文档填充缓存
+            for (DBObject document : realtimeTemplate.findDocuments(Query.query(Criteria.where(ID_FIELD).in(missing)),
+                    entityClass)) {
+                Object id = document.get(ID_FIELD);
+                Long generation = id == null ? null : generations.get(id.toString());
+                if (generation != null) {
+                    entityCache.put(id, document, generation.longValue());
+                }
+                result.add(realtimeTemplate.readEntity(document, entityClass));
+            }
+        }
+        return result;
+    }
+
+    private static boolean isUnsorted(Sort... sort) {
+        if (sort != null) {
+            for (Sort s : sort) {
+                if (s != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public List<T> findAll() {
         return mongoTemplate.findAll(entityClass);
     }
 
+    @Override
+    public CloseableIterator<T> streamList(Query query) {
+        return mongoTemplate.stream(query, entityClass);
+    }
+
+    @Override
+    public CloseableIterator<T> streamAll() {
+        return mongoTemplate.streamAll(entityClass);
+    }
+
     @Override
     public Page<T> findPage(Query query, Pageable pageable, Sort... sort) {
         if (query == null) {
             query = new Query();
         }
-        Long total = getCount(query);
         if (sort != null) {
             for (Sort s : sort) {
                 query.with(s);
             }
         }
         query.with(pageable);
-        List<T> content = findList(query);
-        return new PagedataImpl<T>(content, pageable, total.longValue());
+        final Query pageQuery = query;
+        CountCache cache = countCache;
+        PageQueryExecutor.PageResult<T> result = pageQueryExecutor.execute(cache, getCollectionName(),
+                cache == null ? null : countKey(pageQuery), pageable.getOffset(), pageable.getPageSize(),
+                new Callable<Long>() {
+                    public Long call() {
+                        return mongoTemplate.count(pageQuery, entityClass);
+                    }
+                }, new Callable<List<T>>() {
+                    public List<T> call() {
+                        return findList(pageQuery);
+                    }
+                });
+        return new PagedataImpl<T>(result.getContent(), pageable, result.getTotal());
+    }
+
+    @Override
+    public KeysetPage<T> findPageAfter(Query query, Pageable pageable, String token, Sort... sort) {
+        if (query == null) {
+            query = new Query();
+        }
+        Long total = getCount(query);
+        // 排序、分页和范围条件加在副本上,调用方的查询不变
+        Query pageQuery = WenwoQuery.copyOf(query);
+        if (sort != null) {
+            for (Sort s : sort) {
+                pageQuery.with(s);
+            }
+        }
+        if (pageable.getSort() != null) {
+            pageQuery.with(pageable.getSort());
+        }
+        KeysetPaging.ensureTiebreaker(pageQuery, mongoTemplate.getConverter(), entityClass);
+        if (token == null) {
+            pageQuery.skip(pageable.getOffset());
+        } else {
+            pageQuery = KeysetPaging.applyToken(pageQuery, token);
+        }
+        pageQuery.limit(pageable.getPageSize());
+        List<T> content = findList(pageQuery);
+        String nextToken = null;
+        if (content.size() >= pageable.getPageSize()) {
+            nextToken = KeysetPaging.nextToken(pageQuery, mongoTemplate.getConverter(), content.get(content.size() - 1));
+        }
+        return new KeysetPage<T>(content, pageable, total.longValue(), nextToken);
     }
 
     @Override
-    public Long getCount(Query query) {
-        return mongoTemplate.count(query, entityClass);
+    public Long getCount(final Query query) {
+        CountCache cache = countCache;
+        if (cache == null) {
+            return mongoTemplate.count(query, entityClass);
+        }
+        return cache.count(getCollectionName(), countKey(query), new Callable<Long>() {
+            public Long call() {
+                return mongoTemplate.count(query, entityClass);
+            }
+        });
+    }
+
+    /**
+     * 总数缓存的键:映射后的查询条件,同一条件的不同写法共用缓存
+     */
+    private String countKey(Query query) {
+        return mongoTemplate.getMappedQuery(query, entityClass).toString();
+    }
+
+    @Override
+    public Long getCountUpTo(Query query, long limit) {
+        return mongoTemplate.countUpTo(query, entityClass, limit);
+    }
+
+    @Override
+    public Long estimatedCount() {
+        return mongoTemplate.estimatedCount(entityClass);
+    }
+
+    @Override
+    public Long getCount(Query query, ReadPreference readPreference) {
+        return mongoTemplate.withReadPreference(readPreference).count(query, entityClass);
     }
 
     @Override
     public Long getCount(String key, Object val) {
-        Query query = Query.query(Criteria.where(key).is(val));
-        return getCount(query);
+        return getPreparedQuery(PreparedQuery.Operator.EQ, 0, key).count(val);
     }
     
     @Override
 	public Long getCount() {
-    	return mongoTemplate.count(null, entityClass);
+    	return getCount((Query) null);
 	}
 
 	@Override
 	public Long getCount(Map<String, Object> queryMap) {
 		if(queryMap == null || queryMap.isEmpty()){
-			return mongoTemplate.count(null, entityClass);
+			return getCount((Query) null);
 		}
-		Query query = new Query();
-		Set<String> keyset = queryMap.keySet();
-		Iterator<String> keys = keyset.iterator();
-		while(keys.hasNext()){
-			String key = keys.next();
-			query.addCriteria(Criteria.where(key).is(queryMap.get(key)));
+		String[] keys = new String[queryMap.size()];
+		Object[] values = new Object[queryMap.size()];
+		int i = 0;
+		for (Map.Entry<String, Object> entry : queryMap.entrySet()) {
+			keys[i] = entry.getKey();
+			values[i++] = entry.getValue();
 		}
-		
-		return getCount(query);
+		return getPreparedQuery(PreparedQuery.Operator.EQ, 0, keys).count(values);
 	}
 
     @Override
     public T insert(T entity) {
         mongoTemplate.insert(entity);
+        written(mongoTemplate.getIdValue(entity));
         return entity;
     }
     
     @Override
     public T save(T entity) {
         mongoTemplate.save(entity);
+        written(mongoTemplate.getIdValue(entity));
         return entity;
     }
 
     @Override
     public void save(Collection<T> entitys) {
         mongoTemplate.insertAll(entitys);
+        countsChanged();
+        if (entityCache != null || readYourWritesTracker != null) {
+            for (T entity : entitys) {
+                written(mongoTemplate.getIdValue(entity));
+            }
+        }
+    }
+
+    @Override
+    public ChunkedInsertResult saveChunked(Collection<T> entitys) {
+        ChunkedInsertResult result = mongoTemplate.insertChunked(entitys, getCollectionName(),
+                insertConversionExecutor, insertParallelism);
+        countsChanged();
+        if (entityCache != null || readYourWritesTracker != null) {
+            for (T entity : entitys) {
+                written(mongoTemplate.getIdValue(entity));
+            }
+        }
+        return result;
     }
 
     @Override
     public void update(T entity) {
         mongoTemplate.update(entity);
+        written(mongoTemplate.getIdValue(entity));
     }
 
     @Override
     public int updateById(PK id, Update update) {
         Query query = Query.query(Criteria.where(ID_FIELD).is(id));
-        return update(query, update, true);
+        int n = doUpdate(query, update, true);
+        written(id);
+        return n;
+    }
+
+    @Override
+    public void incrementCounter(PK id, String field, long delta) {
+        CounterAccumulator accumulator = counterAccumulator;
+        if (accumulator == null) {
+            updateById(id, new Update().inc(field, delta));
+        } else {
+            accumulator.increment(counterSink, id, field, delta);
+        }
     }
 
     @Override
     public int updateByIds(Collection<PK> ids, Update update) {
         Query query = Query.query(Criteria.where(ID_FIELD).in(ids));
-        return update(query, update, false);
+        int n = doUpdate(query, update, false);
+        countsChanged();
+        if (entityCache != null || readYourWritesTracker != null) {
+            for (PK id : ids) {
+                written(id);
+            }
+        }
+        return n;
     }
 
     @Override
     public int upsert(Query query, Update update) {
         WriteResult wr = mongoTemplate.upsert(query, update, entityClass);
+        writtenAll();
         return wr.getN();
     }
 
     @Override
     public int update(Query query, Update update, boolean isFirst) {
+        int n = doUpdate(query, update, isFirst);
+        writtenAll();
+        return n;
+    }
+
+    private int doUpdate(Query query, Update update, boolean isFirst) {
         WriteResult wr = null;
         if (isFirst) {
             wr = mongoTemplate.updateFirst(query, update, entityClass);
@@ -275,25 +775,47 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
     @Override
     public void remove(Query query) {
         mongoTemplate.remove(query, entityClass);
+        writtenAll();
     }
 
     @Override
     public void remove(PK id) {
-        remove(Query.query(Criteria.where(ID_FIELD).is(id)));
+        mongoTemplate.remove(Query.query(Criteria.where(ID_FIELD).is(id)), entityClass);
+        written(id);
     }
 
     @Override
     public void remove(T entity) {
         mongoTemplate.remove(entity);
+        written(mongoTemplate.getIdValue(entity));
     }
 
     @Override
     public void remove(Collection<PK> ids) {
-        for (PK id : ids) {
-            remove(id);
+        List<PK> batch = new ArrayList<PK>(Math.min(ids.size(), REMOVE_BATCH_SIZE));
+        Iterator<PK> it = ids.iterator();
+        while (it.hasNext()) {
+            batch.add(it.next());
+            if (batch.size() == REMOVE_BATCH_SIZE || !it.hasNext()) {
+                mongoTemplate.remove(Query.query(Criteria.where(ID_FIELD).in(batch)), entityClass);
+                for (PK id : batch) {
+                    written(id);
+                }
+                batch = new ArrayList<PK>(REMOVE_BATCH_SIZE);
+            }
         }
     }
 
+    @Override
+    public BulkOperations<T> bulkOps(BulkOperations.Mode mode) {
+        return new BulkOperations<T>(mongoTemplate, entityClass, getCollectionName(), mode) {
+            @Override
+            protected void afterExecute(BulkResult result) {
+                writtenAll();
+            }
+        };
+    }
+
     /*
      * @Override public void dropTable(String collectionName) {
      * mongoTemplate.dropCollection(collectionName); }
@@ -344,6 +866,7 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
             DBObject fld = new BasicDBObject(fieldName, 1);
             DBObject obj = query.getQueryObject();
             DBCursor cursor = mongoTemplate.getCollection(collectionName).find(obj, fld);
+            cursor.setReadPreference(mongoTemplate.getReadPreference());
             if (query.getSortObject() != null) {
                 cursor.sort(query.getSortObject());
             }
@@ -379,17 +902,61 @@ public class BaseDaoImpl<T, PK extends Serializable> implements BaseDao<T, PK> {
             subName = getCollectionName(o.getClass());
         }
         mongoTemplate.saveSubEntityById(id.toString(), collName, subName, o);
+        written(id);
     }
 
     @Override
     public void findAndRemove(Query query) {
-        mongoTemplate.findAndRemove(query, entityClass);
-
+        T removed = mongoTemplate.findAndRemove(query, entityClass);
+        written(mongoTemplate.getIdValue(removed));
     }
 
     @Override
     public void findAndUpdate(Query query, Update update) {
-        mongoTemplate.findAndModify(query, update, entityClass);
+        T old = mongoTemplate.findAndModify(query, update, entityClass);
+        written(mongoTemplate.getIdValue(old));
+    }
+
+    /**
+     * 按ID写入后使缓存失效并记录写操作
+     */
+    private void written(Object id) {
+        if (id == null) {
+            return;
+        }
+        countsChanged();
+        if (entityCache != null) {
+            entityCache.evict(id);
+        }
+        ReadYourWritesTracker tracker = readYourWritesTracker;
+        if (tracker != null) {
+            tracker.entityWritten(id);
+        }
+    }
+
+    /**
+     * 按条件写入后清空缓存并记录整个集合的写操作
+     */
+    private void writtenAll() {
+        countsChanged();
+        if (entityCache != null) {
+            entityCache.clear();
+        }
+        ReadYourWritesTracker tracker = readYourWritesTracker;
+        if (tracker != null) {
+            tracker.collectionWritten();
+        }
+    }
+
+    /**
+     * 写入后使本集合的总数缓存失效
+     */
+    private void countsChanged() {
+        String collectionName = getCollectionName();
+        CountCache cache = countCache;
+        if (cache != null) {
+            cache.invalidate(collectionName);
+        }
     }
 
     @Override
@@ -15,6 +15,9 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import com.wenwo.platform.dao.util.BulkOperations;
+import com.wenwo.platform.dao.util.CloseableIterator;
+
 /**
  * 数据访问基类接口
  * 
@@ -139,6 +142,22 @@ public interface IaskBaseDao<T, PK extends Serializable> {
 	 */
 	public List<T> findAll();
 
+	/**
+	 * 流式查询实体集合,结果在迭代时逐条转换,适用于大数据集合的遍历(如导出、重建索引)
+	 * 注意:使用完毕后必须关闭返回的迭代器
+	 * 
+	 * @param query
+	 * @return
+	 */
+	public CloseableIterator<T> streamList(Query query);
+
+	/**
+	 * 流式遍历所有实体对象,使用完毕后必须关闭返回的迭代器
+	 * 
+	 * @return
+	 */
+	public CloseableIterator<T> streamAll();
+
 	/**
 	 * 查询分页(注意:该函数只能适用于小数据集合)
 	 * 
@@ -182,6 +201,24 @@ public interface IaskBaseDao<T, PK extends Serializable> {
 	 * @return
 	 */
 	public Long getCount(String key, Object val);
+
+	/**
+	 * 获取符合条件的实体对象数,最多数到limit为止,用于"99+"之类只关心是否超过某个数的场景
+	 * 
+	 * @param query
+	 *            查询对象,为null时统计所有实体
+	 * @param limit
+	 *            最大计数,必须大于0
+	 * @return 实体对象数,不超过limit
+	 */
+	public Long getCountUpTo(Query query, long limit);
+
+	/**
+	 * 从集合元数据读取实体对象总数的估计值,不执行count.非正常关闭后或分片集群中可能不准确,适合后台和统计页面
+	 * 
+	 * @return 实体对象总数的估计值
+	 */
+	public Long estimatedCount();
 	
 	/**
 	 * 保存实体对象
@@ -249,6 +286,18 @@ public interface IaskBaseDao<T, PK extends Serializable> {
 	 */
 	public int updateByIds(Collection<PK> ids, Update update);
 
+	/**
+	 * 对计数字段做$inc,如浏览数、点赞数.设置了计数器合并写入时增量先在内存中累加,
+	 * 在下次写入时与同一文档的其他增量合并为一次更新,否则立即更新
+	 * 
+	 * @param id
+	 * @param field
+	 *            计数字段
+	 * @param delta
+	 *            增量
+	 */
+	public void incrementCounter(PK id, String field, long delta);
+
 	/**
 	 * 
 	 * @param query
@@ -314,6 +363,15 @@ public interface IaskBaseDao<T, PK extends Serializable> {
 	 */
 	public void remove(Collection<PK> ids);
 
+	/**
+	 * 创建批量写操作,插入、按ID更新/删除等操作合并后以尽量少的请求执行
+	 * 
+	 * @param mode
+	 *            有序(遇错即停)或无序(出错继续)执行
+	 * @return
+	 */
+	public BulkOperations<T> bulkOps(BulkOperations.Mode mode);
+
 	/**
 	 * 删除集合
 	 */
@@ -0,0 +1,29 @@
+package com.wenwo.platform.dao.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在实体类上,开启按ID读取的实体缓存(findById/findListByIds/getEntityById).
+ * 通过DAO写入(save/update/updateById/updateByIds/upsert/remove/saveSub等)时自动失效.
+ * 
+ * 缓存的是从主库读取的文档,每次读取转换为新的实体实例,调用方可以修改.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheableEntity {
+
+	/**
+	 * 最大缓存条目数
+	 */
+	int maxSize() default 10000;
+
+	/**
+	 * 缓存有效期(秒)
+	 */
+	int ttlSeconds() default 60;
+}
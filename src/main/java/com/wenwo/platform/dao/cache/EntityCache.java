@@ -0,0 +1,48 @@
+package com.wenwo.platform.dao.cache;
+
+/**
+ * 按ID缓存实体的接口,可自行实现以接入其它缓存. DAO缓存的是从主库读取的文档,命中时转换为新的实体实例
+ * 
+ * @param <T>
+ */
+public interface EntityCache<T> {
+
+	/**
+	 * 获取缓存的实体,未命中时返回null
+	 * 
+	 * @param id
+	 * @return
+	 */
+	T get(Object id);
+
+	void put(Object id, T entity);
+
+	/**
+	 * 当前的版本,{@link #evict(Object)}和{@link #clear()}时增加. 从数据库读取前取得版本,
+	 * 读取后通过{@link #put(Object, Object, long)}放入,读取期间被写入的实体不会被放入缓存
+	 * 
+	 * @param id
+	 * @return
+	 */
+	long getGeneration(Object id);
+
+	/**
+	 * 放入缓存,取得版本之后该ID被失效过时忽略
+	 * 
+	 * @param id
+	 * @param entity
+	 * @param generation 读取前的{@link #getGeneration(Object)}
+	 */
+	void put(Object id, T entity, long generation);
+
+	void evict(Object id);
+
+	void clear();
+
+	/**
+	 * 命中、未命中、淘汰次数等统计
+	 * 
+	 * @return
+	 */
+	EntityCacheStats getStats();
+}
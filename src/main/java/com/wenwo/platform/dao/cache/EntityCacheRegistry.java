@@ -0,0 +1,141 @@
+package com.wenwo.platform.dao.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.mongodb.DBObject;
+
+/**
+ * 按数据源和实体类管理共享的实体缓存,缓存中保存的是实体的文档.
+ * 标注了{@link CacheableEntity}的实体类会自动创建{@link LruEntityCache},也可以通过{@link #register(String, Class, EntityCache)}注册自定义实现. 同一数据源、同一实体类的DAO与MongoUtil共用一个缓存,
+ * 任一方的写操作都会使其失效;不同数据源的同名实体各自缓存.
+ */
+public final class EntityCacheRegistry {
+
+	private static final EntityCache<DBObject> NONE = new LruEntityCache<DBObject>(0, 0);
+	private static final Map<CacheKey, EntityCache<DBObject>> CACHES = new ConcurrentHashMap<CacheKey, EntityCache<DBObject>>();
+
+	private EntityCacheRegistry() {
+	}
+
+	/**
+	 * 获取默认数据源中实体类对应的缓存,未开启缓存时返回null
+	 *
+	 * @param clazz
+	 * @return
+	 */
+	public static EntityCache<DBObject> getCache(Class<?> clazz) {
+		return getCache(null, clazz);
+	}
+
+	/**
+	 * 获取数据源中实体类对应的缓存,未开启缓存时返回null
+	 *
+	 * @param dataSource 数据源名称,null表示默认数据源
+	 * @param clazz
+	 * @return
+	 */
+	public static EntityCache<DBObject> getCache(String dataSource, Class<?> clazz) {
+		if (clazz == null) {
+			return null;
+		}
+		CacheKey key = new CacheKey(dataSource, clazz);
+		EntityCache<DBObject> cache = CACHES.get(key);
+		if (cache == null) {
+			synchronized (CACHES) {
+				cache = CACHES.get(key);
+				if (cache == null) {
+					CacheableEntity cacheable = clazz.getAnnotation(CacheableEntity.class);
+					cache = cacheable == null ? NONE : new LruEntityCache<DBObject>(cacheable.maxSize(),
+							cacheable.ttlSeconds() * 1000L);
+					CACHES.put(key, cache);
+				}
+			}
+		}
+		return cache == NONE ? null : cache;
+	}
+
+	/**
+	 * 为默认数据源中的实体类注册自定义缓存实现,传null则关闭该实体类的缓存
+	 *
+	 * @param clazz
+	 * @param cache
+	 */
+	public static void register(Class<?> clazz, EntityCache<DBObject> cache) {
+		register(null, clazz, cache);
+	}
+
+	/**
+	 * 为数据源中的实体类注册自定义缓存实现,传null则关闭该实体类的缓存
+	 *
+	 * @param dataSource 数据源名称,null表示默认数据源
+	 * @param clazz
+	 * @param cache
+	 */
+	public static void register(String dataSource, Class<?> clazz, EntityCache<DBObject> cache) {
+		CACHES.put(new CacheKey(dataSource, clazz), cache == null ? NONE : cache);
+	}
+
+	/**
+	 * 从所有实体缓存中移除指定ID,用于只知道集合名而不知道实体类的写操作
+	 *
+	 * @param id
+	 */
+	public static void evictFromAll(Object id) {
+		for (EntityCache<DBObject> cache : CACHES.values()) {
+			if (cache != NONE) {
+				cache.evict(id);
+			}
+		}
+	}
+
+	/**
+	 * 所有已开启缓存的实体类及其统计,键为实体类名,非默认数据源时为"数据源:实体类名"
+	 *
+	 * @return
+	 */
+	public static Map<String, EntityCacheStats> getStats() {
+		Map<String, EntityCacheStats> stats = new HashMap<String, EntityCacheStats>();
+		for (Map.Entry<CacheKey, EntityCache<DBObject>> entry : CACHES.entrySet()) {
+			if (entry.getValue() != NONE) {
+				stats.put(entry.getKey().toString(), entry.getValue().getStats());
+			}
+		}
+		return Collections.unmodifiableMap(stats);
+	}
+
+	private static class CacheKey {
+		private final String dataSource;
+		private final Class<?> clazz;
+
+		CacheKey(String dataSource, Class<?> clazz) {
+			this.dataSource = dataSource;
+			this.clazz = clazz;
+		}
+
+		@Override
+		public int hashCode() {
+			return (dataSource == null ? 0 : dataSource.hashCode()) * 31 + clazz.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return clazz == other.clazz && (dataSource == null ? other.dataSource == null
+					: dataSource.equals(other.dataSource));
+		}
+
+		@Override
+		public String toString() {
+			return dataSource == null ? clazz.getName() : dataSource + ":" + clazz.getName();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.wenwo.platform.dao.cache;
+
+/**
+ * 实体缓存的统计快照
+ */
+public class EntityCacheStats {
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long size;
+
+	public EntityCacheStats(long hitCount, long missCount, long evictionCount, long size) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.size = size;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * 因容量或过期被淘汰的条目数(不含写操作引起的失效)
+	 * 
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public double getHitRate() {
+		long total = hitCount + missCount;
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	@Override
+	public String toString() {
+		return "EntityCacheStats [hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount="
+				+ evictionCount + ", size=" + size + "]";
+	}
+}
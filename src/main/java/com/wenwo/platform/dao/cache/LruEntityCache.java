@@ -0,0 +1,143 @@
+package com.wenwo.platform.dao.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于LRU和TTL淘汰的本地实体缓存,ID统一按toString()作为键.
+ * 失效时记录该ID的版本,读取开始后被失效过的ID不会被{@link #put(Object, Object, long)}放入缓存.
+ * 
+ * @param <T>
+ */
+public class LruEntityCache<T> implements EntityCache<T> {
+
+	private static final int MIN_EVICTED_SIZE = 1024;
+
+	private final int maxSize;
+	private final long ttlMillis;
+	private final Map<String, CachedEntry<T>> entries;
+	private final Map<String, Long> evictedAt = new HashMap<String, Long>();
+
+	private long generation;
+	private long clearedAt;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public LruEntityCache(int maxSize, long ttlMillis) {
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlMillis;
+		this.entries = new LinkedHashMap<String, CachedEntry<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedEntry<T>> eldest) {
+				if (size() > LruEntityCache.this.maxSize) {
+					evictionCount.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public T get(Object id) {
+		if (id == null) {
+			return null;
+		}
+		String key = id.toString();
+		CachedEntry<T> entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && entry.expireAt < System.currentTimeMillis()) {
+				entries.remove(key);
+				evictionCount.incrementAndGet();
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	public void put(Object id, T entity) {
+		if (id == null || entity == null) {
+			return;
+		}
+		CachedEntry<T> entry = new CachedEntry<T>(entity, System.currentTimeMillis() + ttlMillis);
+		synchronized (entries) {
+			entries.put(id.toString(), entry);
+		}
+	}
+
+	public long getGeneration(Object id) {
+		synchronized (entries) {
+			return generation;
+		}
+	}
+
+	public void put(Object id, T entity, long generation) {
+		if (id == null || entity == null) {
+			return;
+		}
+		String key = id.toString();
+		CachedEntry<T> entry = new CachedEntry<T>(entity, System.currentTimeMillis() + ttlMillis);
+		synchronized (entries) {
+			Long evicted = evictedAt.get(key);
+			if (clearedAt > generation || (evicted != null && evicted.longValue() > generation)) {
+				return;
+			}
+			entries.put(key, entry);
+		}
+	}
+
+	public void evict(Object id) {
+		if (id == null) {
+			return;
+		}
+		String key = id.toString();
+		synchronized (entries) {
+			entries.remove(key);
+			generation++;
+			if (evictedAt.size() >= Math.max(maxSize, MIN_EVICTED_SIZE)) {
+				// 记录过多时清空,之前开始的读取都不再放入
+				evictedAt.clear();
+				clearedAt = generation;
+			} else {
+				evictedAt.put(key, Long.valueOf(generation));
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			evictedAt.clear();
+			clearedAt = ++generation;
+		}
+	}
+
+	public EntityCacheStats getStats() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		return new EntityCacheStats(hitCount.get(), missCount.get(), evictionCount.get(), size);
+	}
+
+	private static class CachedEntry<T> {
+		private final T value;
+		private final long expireAt;
+
+		CachedEntry(T value, long expireAt) {
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+	}
+}
@@ -5,24 +5,31 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
 
+import com.mongodb.ReadPreference;
 import com.wenwo.platform.dao.base.BaseDao;
 import com.wenwo.platform.dao.base.CiDianBaseDao;
+import com.wenwo.platform.dao.util.KeysetPage;
+import com.wenwo.platform.dao.util.WenwoQuery;
 import com.wenwo.platform.paging.PageableImpl;
 import com.wenwo.platform.utils.ReflectionUtil;
 
 public class ChainQueryer<T,PK extends Serializable> implements CriteriaQuery<T,PK>{
-	private Query query ;
+	private WenwoQuery query ;
 	private BaseDao<T,PK> dao ;
+	private Pageable pageable;
+	private String token;
+	private ReadPreference readPreference;
 	public ChainQueryer(BaseDao<T,PK> dao){
 		 this.dao = dao;
-		 this.query = new Query();
+		 this.query = new WenwoQuery();
 	}
 	@Override
 	public ChainQueryer<T,PK> forExample(T example) throws Exception {		
@@ -36,12 +43,18 @@ public class ChainQueryer<T,PK extends Serializable> implements CriteriaQuery<T,
 	}
 	@Override
 	public ChainQueryer<T,PK> pageable(Pageable pageable)  {
+		this.pageable = pageable;
 		query.with(pageable);
 		return this;
 	}
 	@Override
 	public ChainQueryer<T,PK> pageable(int page,int size)  {
-		query.with(new PageableImpl(page, size));
+		return pageable(new PageableImpl(page, size));
+	}
+	@Override
+	public ChainQueryer<T,PK> pageable(int page,int size,String token)  {
+		this.pageable = new PageableImpl(page, size);
+		this.token = token;
 		return this;
 	}
 	@Override
@@ -60,12 +73,35 @@ public class ChainQueryer<T,PK extends Serializable> implements CriteriaQuery<T,
 		return this;
 	}
 	@Override
+	public ChainQueryer<T, PK> include(String... fields) {
+		for (String field : fields) {
+			query.fields().include(field);
+		}
+		return this;
+	}
+	@Override
+	public ChainQueryer<T, PK> exclude(String... fields) {
+		for (String field : fields) {
+			query.fields().exclude(field);
+		}
+		return this;
+	}
+	@Override
 	public List<T> findList() {		
-		return dao.findList(query);
+		return readPreference == null ? dao.findList(query) : dao.findList(query, readPreference);
+	}
+	@Override
+	public <D> List<D> findList(Class<D> projectionType) {
+		return dao.findList(query, projectionType);
+	}
+	@Override
+	public KeysetPage<T> findPage() {
+		Assert.notNull(pageable, "pageable must be set before findPage");
+		return dao.findPageAfter(query, pageable, token);
 	}
 	@Override
 	public T findOne() {
-		return dao.findOne(query);
+		return readPreference == null ? dao.findOne(query) : dao.findOne(query, readPreference);
 	}
 	@Override
 	public ChainQueryer<T, PK> limit(int limit) {
@@ -84,7 +120,7 @@ public class ChainQueryer<T,PK extends Serializable> implements CriteriaQuery<T,
 	}
 	@Override
 	public long  count(){
-		return dao.getCount(query);
+		return readPreference == null ? dao.getCount(query) : dao.getCount(query, readPreference);
 	}
 	@Override
 	public ChainQueryer<T, PK> regex(String field, String re) {
@@ -96,5 +132,30 @@ public class ChainQueryer<T,PK extends Serializable> implements CriteriaQuery<T,
 		query.addCriteria(Criteria.where(field).ne(o));
 		return this;
 	}
+	@Override
+	public ChainQueryer<T, PK> batchSize(int batchSize) {
+		query.batchSize(batchSize);
+		return this;
+	}
+	@Override
+	public ChainQueryer<T, PK> maxTime(long maxTime, TimeUnit unit) {
+		query.maxTime(maxTime, unit);
+		return this;
+	}
+	@Override
+	public ChainQueryer<T, PK> noCursorTimeout() {
+		query.noCursorTimeout();
+		return this;
+	}
+	@Override
+	public ChainQueryer<T, PK> comment(String comment) {
+		query.comment(comment);
+		return this;
+	}
+	@Override
+	public ChainQueryer<T, PK> readPreference(ReadPreference readPreference) {
+		this.readPreference = readPreference;
+		return this;
+	}
 	
 }
\ No newline at end of file
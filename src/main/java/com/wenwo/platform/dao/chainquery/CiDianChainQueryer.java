@@ -5,15 +5,19 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
 
 import com.wenwo.platform.dao.base.BaseDao;
 import com.wenwo.platform.dao.base.CiDianBaseDao;
+import com.wenwo.platform.dao.util.KeysetPage;
+import com.wenwo.platform.dao.util.WenwoQuery;
+import com.wenwo.platform.paging.PageableImpl;
 import com.wenwo.platform.utils.ReflectionUtil;
 /**
  * 
@@ -23,11 +27,13 @@ import com.wenwo.platform.utils.ReflectionUtil;
  * @param <PK>
  */
 public class CiDianChainQueryer<T,PK extends Serializable> implements CiDianCriteriaQuery<T,PK>{
-	private Query query ;
+	private WenwoQuery query ;
 	private CiDianBaseDao<T,PK> dao ;
+	private Pageable pageable;
+	private String token;
 	public CiDianChainQueryer(CiDianBaseDao<T,PK> dao){
 		 this.dao = dao;
-		 this.query = new Query();
+		 this.query = new WenwoQuery();
 	}
 	@Override
 	public CiDianChainQueryer<T,PK> forExample(T example) throws Exception {		
@@ -41,10 +47,21 @@ public class CiDianChainQueryer<T,PK extends Serializable> implements CiDianCrit
 	}
 	@Override
 	public CiDianChainQueryer<T,PK> pageable(Pageable pageable)  {
+		this.pageable = pageable;
 		query.with(pageable);
 		return this;
 	}
 	@Override
+	public CiDianChainQueryer<T,PK> pageable(int page,int size)  {
+		return pageable(new PageableImpl(page, size));
+	}
+	@Override
+	public CiDianChainQueryer<T,PK> pageable(int page,int size,String token)  {
+		this.pageable = new PageableImpl(page, size);
+		this.token = token;
+		return this;
+	}
+	@Override
 	public CiDianChainQueryer<T,PK> sortAsc(String field){
 		query.with(new Sort(Direction.ASC, field));
 		return this;
@@ -60,10 +77,33 @@ public class CiDianChainQueryer<T,PK extends Serializable> implements CiDianCrit
 		return this;
 	}
 	@Override
+	public CiDianChainQueryer<T, PK> include(String... fields) {
+		for (String field : fields) {
+			query.fields().include(field);
+		}
+		return this;
+	}
+	@Override
+	public CiDianChainQueryer<T, PK> exclude(String... fields) {
+		for (String field : fields) {
+			query.fields().exclude(field);
+		}
+		return this;
+	}
+	@Override
 	public List<T> findList() {		
 		return dao.findList(query);
 	}
 	@Override
+	public <D> List<D> findList(Class<D> projectionType) {
+		return dao.findList(query, projectionType);
+	}
+	@Override
+	public KeysetPage<T> findPage() {
+		Assert.notNull(pageable, "pageable must be set before findPage");
+		return dao.findPageAfter(query, pageable, token);
+	}
+	@Override
 	public T findOne() {
 		return dao.findOne(query);
 	}
@@ -91,5 +131,25 @@ public class CiDianChainQueryer<T,PK extends Serializable> implements CiDianCrit
 		query.addCriteria(Criteria.where(field).regex(re));
 		return this;
 	}
+	@Override
+	public CiDianChainQueryer<T, PK> batchSize(int batchSize) {
+		query.batchSize(batchSize);
+		return this;
+	}
+	@Override
+	public CiDianChainQueryer<T, PK> maxTime(long maxTime, TimeUnit unit) {
+		query.maxTime(maxTime, unit);
+		return this;
+	}
+	@Override
+	public CiDianChainQueryer<T, PK> noCursorTimeout() {
+		query.noCursorTimeout();
+		return this;
+	}
+	@Override
+	public CiDianChainQueryer<T, PK> comment(String comment) {
+		query.comment(comment);
+		return this;
+	}
 	
 }
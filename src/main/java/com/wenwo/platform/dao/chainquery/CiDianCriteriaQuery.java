@@ -3,12 +3,17 @@ package com.wenwo.platform.dao.chainquery;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.data.domain.Pageable;
 
+import com.wenwo.platform.dao.util.KeysetPage;
+
 public interface CiDianCriteriaQuery<T,PK extends Serializable> {	
 	CiDianChainQueryer<T,PK> forExample(T example) throws Exception;
 	CiDianChainQueryer<T,PK> pageable(Pageable pageable);
+	CiDianChainQueryer<T,PK> pageable(int page,int size);
+	CiDianChainQueryer<T,PK> pageable(int page,int size,String token);
 	CiDianChainQueryer<T,PK> sortAsc(String field);
 	CiDianChainQueryer<T,PK> sortDesc(String field);
 	CiDianChainQueryer<T,PK> notIn (String field,Collection<?> notInCollection);
@@ -16,7 +21,15 @@ public interface CiDianCriteriaQuery<T,PK extends Serializable> {
 	CiDianChainQueryer<T,PK> lt (String field,Object object);
 	CiDianChainQueryer<T,PK> gt (String field,Object object);
 	CiDianChainQueryer<T,PK> regex(String field,String re);
+	CiDianChainQueryer<T,PK> include(String... fields);
+	CiDianChainQueryer<T,PK> exclude(String... fields);
+	CiDianChainQueryer<T,PK> batchSize(int batchSize);
+	CiDianChainQueryer<T,PK> maxTime(long maxTime, TimeUnit unit);
+	CiDianChainQueryer<T,PK> noCursorTimeout();
+	CiDianChainQueryer<T,PK> comment(String comment);
 	List<T> findList();
+	<D> List<D> findList(Class<D> projectionType);
+	KeysetPage<T> findPage();
 	T findOne();
 	long count();
 }
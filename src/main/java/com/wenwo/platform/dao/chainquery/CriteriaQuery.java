@@ -3,13 +3,18 @@ package com.wenwo.platform.dao.chainquery;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.data.domain.Pageable;
 
+import com.mongodb.ReadPreference;
+import com.wenwo.platform.dao.util.KeysetPage;
+
 public interface CriteriaQuery<T,PK extends Serializable> {	
 	ChainQueryer<T,PK> forExample(T example) throws Exception;
 	ChainQueryer<T,PK> pageable(Pageable pageable);
 	ChainQueryer<T,PK> pageable(int page,int size);
+	ChainQueryer<T,PK> pageable(int page,int size,String token);
 	ChainQueryer<T,PK> sortAsc(String field);
 	ChainQueryer<T,PK> sortDesc(String field);
 	ChainQueryer<T,PK> notIn (String field,Collection<?> notInCollection);
@@ -18,7 +23,16 @@ public interface CriteriaQuery<T,PK extends Serializable> {
 	ChainQueryer<T,PK> gt (String field,Object object);
 	ChainQueryer<T,PK> regex(String field,String re);
 	ChainQueryer<T,PK> notEq(String field,Object o);
+	ChainQueryer<T,PK> include(String... fields);
+	ChainQueryer<T,PK> exclude(String... fields);
+	ChainQueryer<T,PK> batchSize(int batchSize);
+	ChainQueryer<T,PK> maxTime(long maxTime, TimeUnit unit);
+	ChainQueryer<T,PK> noCursorTimeout();
+	ChainQueryer<T,PK> comment(String comment);
+	ChainQueryer<T,PK> readPreference(ReadPreference readPreference);
 	List<T> findList();
+	<D> List<D> findList(Class<D> projectionType);
+	KeysetPage<T> findPage();
 	T findOne();
 	long count();
 }
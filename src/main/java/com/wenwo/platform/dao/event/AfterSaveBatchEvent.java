@@ -0,0 +1,19 @@
+package com.wenwo.platform.dao.event;
+
+import java.util.List;
+
+import com.mongodb.DBObject;
+
+/**
+ * 批量插入时,一批文档插入成功之后发布
+ *
+ * @param <T>
+ */
+public class AfterSaveBatchEvent<T> extends BatchMappingEvent<T> {
+
+	private static final long serialVersionUID = 1L;
+
+	public AfterSaveBatchEvent(List<T> entities, List<DBObject> documents, String collectionName) {
+		super(entities, documents, collectionName);
+	}
+}
@@ -0,0 +1,46 @@
+package com.wenwo.platform.dao.event;
+
+import java.util.List;
+
+import org.springframework.context.ApplicationEvent;
+
+import com.mongodb.DBObject;
+
+/**
+ * 批量插入时按批发布的映射事件,一批最多包含{@code batchEventSize}个实体,替代逐个文档的映射事件.
+ * 事件源是本批的实体列表.
+ *
+ * @param <T>
+ */
+public abstract class BatchMappingEvent<T> extends ApplicationEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String collectionName;
+	private final List<DBObject> documents;
+
+	protected BatchMappingEvent(List<T> entities, List<DBObject> documents, String collectionName) {
+		super(entities);
+		this.documents = documents;
+		this.collectionName = collectionName;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<T> getSource() {
+		return (List<T>) super.getSource();
+	}
+
+	/**
+	 * 与实体一一对应的文档,转换前的事件中为null
+	 *
+	 * @return
+	 */
+	public List<DBObject> getDocuments() {
+		return documents;
+	}
+
+	public String getCollectionName() {
+		return collectionName;
+	}
+}
@@ -0,0 +1,17 @@
+package com.wenwo.platform.dao.event;
+
+import java.util.List;
+
+/**
+ * 批量插入时,一批实体转换为文档之前发布
+ *
+ * @param <T>
+ */
+public class BeforeConvertBatchEvent<T> extends BatchMappingEvent<T> {
+
+	private static final long serialVersionUID = 1L;
+
+	public BeforeConvertBatchEvent(List<T> entities, String collectionName) {
+		super(entities, null, collectionName);
+	}
+}
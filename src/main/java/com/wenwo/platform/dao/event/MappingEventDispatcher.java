@@ -0,0 +1,163 @@
+package com.wenwo.platform.dao.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.mongodb.core.index.MongoMappingEventPublisher;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+
+/**
+ * 映射事件的分发层:预先判断某类事件对某个实体类型是否有监听器,没有时调用方可以不创建事件对象,
+ * 避免每个文档都经过ApplicationEventPublisher分发给所有监听器.
+ * <ul>
+ * <li>发布者是ApplicationContext时,监听器取自容器(含父容器)中的ApplicationListener;</li>
+ * <li>发布者是模板默认的MongoMappingEventPublisher时,它只处理索引事件,映射事件没有监听器;</li>
+ * <li>其他发布者无法判断,总是发布.</li>
+ * </ul>
+ * 监听器在第一次判断时才从容器中查找,结果按(事件类型,实体类型)缓存. 运行时增加了监听器需调用{@link #refresh()}.
+ */
+public class MappingEventDispatcher {
+
+	private final ApplicationEventPublisher publisher;
+	private final boolean inspectable;
+	private final Map<ListenerKey, Boolean> listenerCache = new ConcurrentHashMap<ListenerKey, Boolean>();
+
+	private volatile List<ApplicationListener<?>> listeners;
+
+	public MappingEventDispatcher(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
+		this.inspectable = publisher instanceof ApplicationContext || publisher instanceof MongoMappingEventPublisher;
+	}
+
+	/**
+	 * 是否有监听器会处理该类型的事件
+	 *
+	 * @param eventType 事件类型
+	 * @param entityType 事件涉及的实体类型
+	 * @return
+	 */
+	public boolean hasListeners(Class<? extends ApplicationEvent> eventType, Class<?> entityType) {
+		if (publisher == null) {
+			return false;
+		}
+		if (!inspectable) {
+			return true;
+		}
+		ListenerKey key = new ListenerKey(eventType, entityType);
+		Boolean cached = listenerCache.get(key);
+		if (cached == null) {
+			cached = Boolean.FALSE;
+			for (ApplicationListener<?> listener : getListeners()) {
+				if (supports(listener, eventType, entityType)) {
+					cached = Boolean.TRUE;
+					break;
+				}
+			}
+			listenerCache.put(key, cached);
+		}
+		return cached.booleanValue();
+	}
+
+	public void publish(ApplicationEvent event) {
+		if (publisher != null) {
+			publisher.publishEvent(event);
+		}
+	}
+
+	/**
+	 * 重新查找监听器
+	 */
+	public void refresh() {
+		listeners = null;
+		listenerCache.clear();
+	}
+
+	private List<ApplicationListener<?>> getListeners() {
+		List<ApplicationListener<?>> result = listeners;
+		if (result == null) {
+			result = findListeners();
+			listeners = result;
+		}
+		return result;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private List<ApplicationListener<?>> findListeners() {
+		Set<ApplicationListener<?>> found = new LinkedHashSet<ApplicationListener<?>>();
+		if (publisher instanceof ListableBeanFactory) {
+			Collection<ApplicationListener> beans = BeanFactoryUtils.beansOfTypeIncludingAncestors(
+					(ListableBeanFactory) publisher, ApplicationListener.class, true, false).values();
+			for (ApplicationListener<?> listener : beans) {
+				found.add(listener);
+			}
+		}
+		if (publisher instanceof ApplicationContext) {
+			for (ApplicationContext context = (ApplicationContext) publisher; context != null; context = context
+					.getParent()) {
+				if (context instanceof AbstractApplicationContext) {
+					found.addAll(((AbstractApplicationContext) context).getApplicationListeners());
+				}
+			}
+		}
+		return new ArrayList<ApplicationListener<?>>(found);
+	}
+
+	/**
+	 * 按Spring分发事件时的规则判断监听器是否接收该事件,无法判断时视为接收
+	 */
+	private static boolean supports(ApplicationListener<?> listener, Class<? extends ApplicationEvent> eventType,
+			Class<?> entityType) {
+		if (listener instanceof SmartApplicationListener) {
+			SmartApplicationListener smart = (SmartApplicationListener) listener;
+			return smart.supportsEventType(eventType) && smart.supportsSourceType(entityType);
+		}
+		Class<?> listenedType = GenericTypeResolver.resolveTypeArgument(listener.getClass(), ApplicationListener.class);
+		if (listenedType != null && !listenedType.isAssignableFrom(eventType)) {
+			return false;
+		}
+		if (listener instanceof AbstractMongoEventListener) {
+			Class<?> domainType = GenericTypeResolver.resolveTypeArgument(listener.getClass(),
+					AbstractMongoEventListener.class);
+			return domainType == null || entityType == null || domainType.isAssignableFrom(entityType);
+		}
+		return true;
+	}
+
+	private static class ListenerKey {
+		private final Class<?> eventType;
+		private final Class<?> entityType;
+
+		ListenerKey(Class<?> eventType, Class<?> entityType) {
+			this.eventType = eventType;
+			this.entityType = entityType;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ListenerKey)) {
+				return false;
+			}
+			ListenerKey other = (ListenerKey) obj;
+			return eventType == other.eventType && entityType == other.entityType;
+		}
+
+		@Override
+		public int hashCode() {
+			return eventType.hashCode() * 31 + (entityType == null ? 0 : entityType.hashCode());
+		}
+	}
+}
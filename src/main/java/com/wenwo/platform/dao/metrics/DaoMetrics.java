@@ -0,0 +1,154 @@
+package com.wenwo.platform.dao.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 数据访问耗时统计的注册表. 模板的每个操作按(集合,操作)记录到各自的{@link LatencyHistogram},
+ * 直方图第一次创建时注册为JMX MBean(com.wenwo.platform.dao:type=Latency,collection=..,operation=..),
+ * 也可以通过{@link #snapshot()}读取.
+ */
+public final class DaoMetrics {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DaoMetrics.class);
+	private static final String JMX_DOMAIN = "com.wenwo.platform.dao";
+
+	private static final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> HISTOGRAMS = new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+
+	private static volatile boolean enabled = true;
+	private static volatile boolean jmxEnabled = true;
+
+	private DaoMetrics() {
+	}
+
+	/**
+	 * 开启或关闭耗时统计,默认开启
+	 *
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		DaoMetrics.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * 新建的直方图是否注册为MBean,默认注册
+	 *
+	 * @param jmxEnabled
+	 */
+	public static void setJmxEnabled(boolean jmxEnabled) {
+		DaoMetrics.jmxEnabled = jmxEnabled;
+	}
+
+	/**
+	 * 开始计时,统计关闭时返回0
+	 *
+	 * @return
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0L;
+	}
+
+	/**
+	 * 记录从{@link #start()}开始的一次操作
+	 *
+	 * @param collection
+	 * @param operation
+	 * @param start
+	 * @param success
+	 */
+	public static void record(String collection, String operation, long start, boolean success) {
+		if (start == 0L || !enabled) {
+			return;
+		}
+		getHistogram(collection, operation).record(System.nanoTime() - start, success);
+	}
+
+	/**
+	 * 直接记录一段耗时
+	 *
+	 * @param collection
+	 * @param operation
+	 * @param nanos
+	 */
+	public static void recordNanos(String collection, String operation, long nanos) {
+		if (enabled) {
+			getHistogram(collection, operation).record(nanos, true);
+		}
+	}
+
+	public static LatencyHistogram getHistogram(String collection, String operation) {
+		String collectionKey = collection == null ? "" : collection;
+		ConcurrentMap<String, LatencyHistogram> operations = HISTOGRAMS.get(collectionKey);
+		if (operations == null) {
+			operations = new ConcurrentHashMap<String, LatencyHistogram>();
+			ConcurrentMap<String, LatencyHistogram> existing = HISTOGRAMS.putIfAbsent(collectionKey, operations);
+			if (existing != null) {
+				operations = existing;
+			}
+		}
+		LatencyHistogram histogram = operations.get(operation);
+		if (histogram == null) {
+			histogram = new LatencyHistogram(collectionKey, operation);
+			LatencyHistogram existing = operations.putIfAbsent(operation, histogram);
+			if (existing != null) {
+				histogram = existing;
+			} else if (jmxEnabled) {
+				register(histogram);
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * 所有直方图的当前统计
+	 *
+	 * @return
+	 */
+	public static List<LatencySnapshot> snapshot() {
+		List<LatencySnapshot> snapshots = new ArrayList<LatencySnapshot>();
+		for (ConcurrentMap<String, LatencyHistogram> operations : HISTOGRAMS.values()) {
+			for (LatencyHistogram histogram : operations.values()) {
+				snapshots.add(histogram.snapshot());
+			}
+		}
+		return snapshots;
+	}
+
+	/**
+	 * 清零所有直方图
+	 */
+	public static void reset() {
+		for (ConcurrentMap<String, LatencyHistogram> operations : HISTOGRAMS.values()) {
+			for (LatencyHistogram histogram : operations.values()) {
+				histogram.reset();
+			}
+		}
+	}
+
+	private static void register(LatencyHistogram histogram) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Latency,collection="
+					+ ObjectName.quote(histogram.getCollection()) + ",operation=" + ObjectName.quote(histogram.getOperation()));
+			if (!server.isRegistered(name)) {
+				server.registerMBean(histogram, name);
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Exception while registering latency MBean for " + histogram.getCollection() + "."
+					+ histogram.getOperation(), e);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.wenwo.platform.dao.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的耗时直方图. 按纳秒记录,桶按2的幂分段、每段再分8个子桶,相对误差不超过12.5%;
+ * 记录一次只有几次原子自增,不加锁、不分配对象.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_BIT = 42;
+	private static final int BUCKETS = (MAX_BIT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final String collection;
+	private final String operation;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong errorCount = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public LatencyHistogram(String collection, String operation) {
+		this.collection = collection;
+		this.operation = operation;
+	}
+
+	/**
+	 * 记录一次操作
+	 *
+	 * @param nanos 耗时(纳秒)
+	 * @param success 是否成功
+	 */
+	public void record(long nanos, boolean success) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(indexOf(nanos));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		if (!success) {
+			errorCount.incrementAndGet();
+		}
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	public String getCollection() {
+		return collection;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	public double getMeanMicros() {
+		long n = count.get();
+		return n == 0 ? 0 : totalNanos.get() / 1000.0 / n;
+	}
+
+	public double getP50Micros() {
+		return getPercentileMicros(0.50);
+	}
+
+	public double getP99Micros() {
+		return getPercentileMicros(0.99);
+	}
+
+	public double getP999Micros() {
+		return getPercentileMicros(0.999);
+	}
+
+	public double getMaxMicros() {
+		return maxNanos.get() / 1000.0;
+	}
+
+	/**
+	 * 百分位耗时(微秒),取所在桶的上界
+	 *
+	 * @param percentile 0~1
+	 * @return
+	 */
+	public double getPercentileMicros(double percentile) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), maxNanos.get()) / 1000.0;
+			}
+		}
+		return getMaxMicros();
+	}
+
+	public LatencySnapshot snapshot() {
+		return new LatencySnapshot(collection, operation, getCount(), getErrorCount(), getMeanMicros(),
+				getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+	}
+
+	/**
+	 * 清零,并发记录中的数据可能部分保留
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		errorCount.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	static int indexOf(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int bit = 63 - Long.numberOfLeadingZeros(nanos);
+		if (bit > MAX_BIT) {
+			return BUCKETS - 1;
+		}
+		int shift = bit - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((nanos >> shift) & (SUB_BUCKETS - 1));
+	}
+
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+}
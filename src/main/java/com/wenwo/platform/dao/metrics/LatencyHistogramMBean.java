@@ -0,0 +1,27 @@
+package com.wenwo.platform.dao.metrics;
+
+/**
+ * 单个集合、单个操作的耗时统计,耗时单位为微秒
+ */
+public interface LatencyHistogramMBean {
+
+	String getCollection();
+
+	String getOperation();
+
+	long getCount();
+
+	long getErrorCount();
+
+	double getMeanMicros();
+
+	double getP50Micros();
+
+	double getP99Micros();
+
+	double getP999Micros();
+
+	double getMaxMicros();
+
+	void reset();
+}
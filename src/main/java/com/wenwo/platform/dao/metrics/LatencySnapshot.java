@@ -0,0 +1,73 @@
+package com.wenwo.platform.dao.metrics;
+
+/**
+ * 某一时刻的耗时统计,耗时单位为微秒
+ */
+public class LatencySnapshot {
+
+	private final String collection;
+	private final String operation;
+	private final long count;
+	private final long errorCount;
+	private final double meanMicros;
+	private final double p50Micros;
+	private final double p99Micros;
+	private final double p999Micros;
+	private final double maxMicros;
+
+	public LatencySnapshot(String collection, String operation, long count, long errorCount, double meanMicros,
+			double p50Micros, double p99Micros, double p999Micros, double maxMicros) {
+		this.collection = collection;
+		this.operation = operation;
+		this.count = count;
+		this.errorCount = errorCount;
+		this.meanMicros = meanMicros;
+		this.p50Micros = p50Micros;
+		this.p99Micros = p99Micros;
+		this.p999Micros = p999Micros;
+		this.maxMicros = maxMicros;
+	}
+
+	public String getCollection() {
+		return collection;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	public double getMeanMicros() {
+		return meanMicros;
+	}
+
+	public double getP50Micros() {
+		return p50Micros;
+	}
+
+	public double getP99Micros() {
+		return p99Micros;
+	}
+
+	public double getP999Micros() {
+		return p999Micros;
+	}
+
+	public double getMaxMicros() {
+		return maxMicros;
+	}
+
+	@Override
+	public String toString() {
+		return collection + "." + operation + " [count=" + count + ", errors=" + errorCount + ", mean=" + meanMicros
+				+ "us, p50=" + p50Micros + "us, p99=" + p99Micros + "us, p999=" + p999Micros + "us, max=" + maxMicros
+				+ "us]";
+	}
+}
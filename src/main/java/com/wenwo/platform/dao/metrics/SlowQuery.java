@@ -0,0 +1,145 @@
+package com.wenwo.platform.dao.metrics;
+
+import java.util.Date;
+
+import com.mongodb.DBObject;
+
+/**
+ * 一次慢操作的记录. 开启explain时执行计划在后台补充,补充前相关字段为空.
+ */
+public class SlowQuery {
+
+	private final Date time;
+	private final String collection;
+	private final String operation;
+	private final long durationMicros;
+	private final String query;
+	private final String fields;
+	private final String sort;
+	private final int skip;
+	private final int limit;
+
+	private volatile String plan;
+	private volatile Boolean indexUsed;
+	private volatile Long docsExamined;
+	private volatile Long docsReturned;
+	private volatile String explainError;
+
+	SlowQuery(String collection, String operation, long durationMicros, DBObject query, DBObject fields, DBObject sort,
+			int skip, int limit) {
+		this.time = new Date();
+		this.collection = collection;
+		this.operation = operation;
+		this.durationMicros = durationMicros;
+		this.query = query == null ? null : query.toString();
+		this.fields = fields == null ? null : fields.toString();
+		this.sort = sort == null ? null : sort.toString();
+		this.skip = skip;
+		this.limit = limit;
+	}
+
+	void setExplain(DBObject explain) {
+		Object cursor = explain.get("cursor");
+		this.plan = cursor == null ? null : cursor.toString();
+		this.indexUsed = cursor == null ? null : !cursor.toString().startsWith("BasicCursor");
+		this.docsExamined = toLong(explain.get("nscannedObjects"));
+		this.docsReturned = toLong(explain.get("n"));
+	}
+
+	void setExplainError(String explainError) {
+		this.explainError = explainError;
+	}
+
+	private static Long toLong(Object value) {
+		return value instanceof Number ? ((Number) value).longValue() : null;
+	}
+
+	public Date getTime() {
+		return time;
+	}
+
+	public String getCollection() {
+		return collection;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public long getDurationMicros() {
+		return durationMicros;
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	public String getFields() {
+		return fields;
+	}
+
+	public String getSort() {
+		return sort;
+	}
+
+	public int getSkip() {
+		return skip;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * 执行计划使用的游标,如BtreeCursor idx_1
+	 */
+	public String getPlan() {
+		return plan;
+	}
+
+	/**
+	 * 是否使用了索引,未explain时为null
+	 */
+	public Boolean getIndexUsed() {
+		return indexUsed;
+	}
+
+	public Long getDocsExamined() {
+		return docsExamined;
+	}
+
+	public Long getDocsReturned() {
+		return docsReturned;
+	}
+
+	public String getExplainError() {
+		return explainError;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(time).append(' ').append(collection).append('.').append(operation).append(' ')
+				.append(durationMicros / 1000.0).append("ms query=").append(query);
+		if (fields != null) {
+			sb.append(" fields=").append(fields);
+		}
+		if (sort != null) {
+			sb.append(" sort=").append(sort);
+		}
+		if (skip > 0) {
+			sb.append(" skip=").append(skip);
+		}
+		if (limit > 0) {
+			sb.append(" limit=").append(limit);
+		}
+		if (plan != null) {
+			sb.append(" plan=").append(plan).append(" indexUsed=").append(indexUsed).append(" examined=")
+					.append(docsExamined).append(" returned=").append(docsReturned);
+		}
+		if (explainError != null) {
+			sb.append(" explainError=").append(explainError);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,221 @@
+package com.wenwo.platform.dao.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * 慢操作日志:耗时超过阈值的查询、计数、更新、删除操作记录在固定容量的环形缓冲区中,
+ * 可选地在后台线程对其查询条件执行explain,记录执行计划、是否用到索引以及扫描/返回的文档数.
+ * 通过{@link #register(String)}注册为JMX MBean后可在线查看和调整.
+ */
+public class SlowQueryLog implements SlowQueryLogMBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+	private static final int DEFAULT_CAPACITY = 200;
+	private static final long DEFAULT_THRESHOLD_MILLIS = 100;
+	private static final int EXPLAIN_QUEUE_SIZE = 64;
+
+	private final SlowQuery[] entries;
+	private long recorded;
+
+	private volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+	private volatile boolean explainEnabled;
+	private volatile ExecutorService explainExecutor;
+
+	public SlowQueryLog() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity 缓冲区容量,满后覆盖最早的记录
+	 */
+	public SlowQueryLog(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.entries = new SlowQuery[capacity];
+	}
+
+	/**
+	 * 注册为MBean:com.wenwo.platform.dao:type=SlowQueryLog,name=..
+	 *
+	 * @param name
+	 */
+	public void register(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("com.wenwo.platform.dao:type=SlowQueryLog,name="
+					+ ObjectName.quote(name));
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(this, objectName);
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Exception while registering slow query log MBean " + name, e);
+		}
+	}
+
+	public long getThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+	}
+
+	/**
+	 * 慢操作阈值(毫秒),默认100
+	 */
+	public void setThresholdMillis(long thresholdMillis) {
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+	}
+
+	public boolean isExplainEnabled() {
+		return explainEnabled;
+	}
+
+	/**
+	 * 是否对慢操作执行explain,默认关闭. explain在单独的后台线程中执行,积压过多时丢弃.
+	 */
+	public void setExplainEnabled(boolean explainEnabled) {
+		this.explainEnabled = explainEnabled;
+	}
+
+	public int getCapacity() {
+		return entries.length;
+	}
+
+	public synchronized long getRecordedCount() {
+		return recorded;
+	}
+
+	/**
+	 * 是否超过阈值
+	 *
+	 * @param nanos
+	 * @return
+	 */
+	public boolean isSlow(long nanos) {
+		return nanos >= thresholdNanos;
+	}
+
+	/**
+	 * 记录一次慢操作
+	 *
+	 * @param collection 执行explain使用的集合
+	 * @param operation
+	 * @param nanos
+	 * @param query 已映射的查询条件
+	 * @param fields
+	 * @param sort
+	 * @param skip
+	 * @param limit
+	 */
+	public void record(DBCollection collection, String operation, long nanos, DBObject query, DBObject fields,
+			DBObject sort, int skip, int limit) {
+		SlowQuery entry = new SlowQuery(collection.getName(), operation, TimeUnit.NANOSECONDS.toMicros(nanos), query,
+				fields, sort, skip, limit);
+		synchronized (this) {
+			entries[(int) (recorded % entries.length)] = entry;
+			recorded++;
+		}
+		if (LOGGER.isWarnEnabled()) {
+			LOGGER.warn("Slow mongo operation: " + entry);
+		}
+		if (explainEnabled) {
+			explain(collection, entry, query, fields, sort, skip, limit);
+		}
+	}
+
+	/**
+	 * 缓冲区中的慢操作,从新到旧
+	 *
+	 * @return
+	 */
+	public synchronized List<SlowQuery> getSlowQueries() {
+		int size = (int) Math.min(recorded, entries.length);
+		List<SlowQuery> result = new ArrayList<SlowQuery>(size);
+		for (int i = 1; i <= size; i++) {
+			result.add(entries[(int) ((recorded - i) % entries.length)]);
+		}
+		return result;
+	}
+
+	public String[] getEntries() {
+		List<SlowQuery> slowQueries = getSlowQueries();
+		String[] result = new String[slowQueries.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = slowQueries.get(i).toString();
+		}
+		return result;
+	}
+
+	public synchronized void clear() {
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = null;
+		}
+		recorded = 0;
+	}
+
+	private void explain(final DBCollection collection, final SlowQuery entry, final DBObject query,
+			final DBObject fields, final DBObject sort, final int skip, final int limit) {
+		try {
+			getExplainExecutor().execute(new Runnable() {
+				public void run() {
+					DBCursor cursor = null;
+					try {
+						cursor = collection.find(query, fields);
+						if (sort != null) {
+							cursor.sort(sort);
+						}
+						if (skip > 0) {
+							cursor.skip(skip);
+						}
+						if (limit > 0) {
+							cursor.limit(limit);
+						}
+						entry.setExplain(cursor.explain());
+					} catch (RuntimeException e) {
+						entry.setExplainError(e.toString());
+					} finally {
+						if (cursor != null) {
+							cursor.close();
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			entry.setExplainError("explain queue full");
+		}
+	}
+
+	private ExecutorService getExplainExecutor() {
+		if (explainExecutor == null) {
+			synchronized (this) {
+				if (explainExecutor == null) {
+					explainExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+							new ArrayBlockingQueue<Runnable>(EXPLAIN_QUEUE_SIZE), new ThreadFactory() {
+								public Thread newThread(Runnable r) {
+									Thread thread = new Thread(r, "wenwo-mongo-explain");
+									thread.setDaemon(true);
+									return thread;
+								}
+							});
+				}
+			}
+		}
+		return explainExecutor;
+	}
+}
@@ -0,0 +1,29 @@
+package com.wenwo.platform.dao.metrics;
+
+/**
+ * 慢操作日志的JMX接口
+ */
+public interface SlowQueryLogMBean {
+
+	long getThresholdMillis();
+
+	void setThresholdMillis(long thresholdMillis);
+
+	boolean isExplainEnabled();
+
+	void setExplainEnabled(boolean explainEnabled);
+
+	int getCapacity();
+
+	/**
+	 * 累计记录的慢操作数(含已被覆盖的)
+	 */
+	long getRecordedCount();
+
+	/**
+	 * 缓冲区中的慢操作,从新到旧
+	 */
+	String[] getEntries();
+
+	void clear();
+}
@@ -0,0 +1,195 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * 异步执行DAO调用的执行器.
+ * <ul>
+ * <li>任务在有界线程池中执行,默认使用所有实例共享的线程池,队列满时由调用线程执行;</li>
+ * <li>每个实例有独立的并发上限,超过上限时提交线程阻塞等待,避免单个DAO占满连接池;</li>
+ * <li>通过{@link ContextPropagator}把提交线程的上下文带到执行线程,
+ * 默认传递{@link ReadYourWritesTracker#bindContext(Object)}绑定的调用方上下文.</li>
+ * </ul>
+ */
+public class AsyncExecutor {
+
+	private static final int DEFAULT_POOL_SIZE = 32;
+	private static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	private static volatile ExecutorService defaultExecutor;
+
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private volatile List<ContextPropagator> contextPropagators = Collections
+			.singletonList(ReadYourWritesTracker.CONTEXT_PROPAGATOR);
+
+	/**
+	 * 使用共享线程池
+	 *
+	 * @param maxConcurrency 本实例同时执行的最大任务数
+	 */
+	public AsyncExecutor(int maxConcurrency) {
+		this(getDefaultExecutor(), maxConcurrency);
+	}
+
+	/**
+	 * @param executor 执行任务的线程池,应为有界线程池
+	 * @param maxConcurrency 本实例同时执行的最大任务数
+	 */
+	public AsyncExecutor(ExecutorService executor, int maxConcurrency) {
+		if (maxConcurrency <= 0) {
+			throw new IllegalArgumentException("maxConcurrency must be positive");
+		}
+		this.executor = executor;
+		this.permits = new Semaphore(maxConcurrency);
+	}
+
+	/**
+	 * 设置额外的上下文传递器,按顺序捕获和恢复;读己之写的调用方上下文总是最先传递
+	 *
+	 * @param contextPropagators
+	 */
+	public void setContextPropagators(List<ContextPropagator> contextPropagators) {
+		List<ContextPropagator> propagators = new ArrayList<ContextPropagator>(contextPropagators.size() + 1);
+		propagators.add(ReadYourWritesTracker.CONTEXT_PROPAGATOR);
+		for (ContextPropagator propagator : contextPropagators) {
+			if (propagator != ReadYourWritesTracker.CONTEXT_PROPAGATOR) {
+				propagators.add(propagator);
+			}
+		}
+		this.contextPropagators = propagators;
+	}
+
+	/**
+	 * 异步执行任务
+	 *
+	 * @param task
+	 * @return
+	 */
+	public <V> Future<V> submit(final Callable<V> task) {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException("Interrupted while waiting for an async permit", e);
+		}
+
+		final List<ContextPropagator> propagators = contextPropagators;
+		final Object[] captured = new Object[propagators.size()];
+		for (int i = 0; i < captured.length; i++) {
+			captured[i] = propagators.get(i).capture();
+		}
+
+		// 许可由开始执行任务的线程在结束时归还;任务开始前被取消时由done()归还
+		final AtomicBoolean claimed = new AtomicBoolean();
+		FutureTask<V> future = new FutureTask<V>(new Callable<V>() {
+			public V call() throws Exception {
+				if (!claimed.compareAndSet(false, true)) {
+					// 开始前已被取消
+					return null;
+				}
+				try {
+					Object[] previous = new Object[captured.length];
+					int applied = 0;
+					try {
+						for (; applied < captured.length; applied++) {
+							previous[applied] = propagators.get(applied).apply(captured[applied]);
+						}
+						return task.call();
+					} finally {
+						for (int i = applied - 1; i >= 0; i--) {
+							propagators.get(i).restore(previous[i]);
+						}
+					}
+				} finally {
+					permits.release();
+				}
+			}
+		}) {
+			@Override
+			protected void done() {
+				// 被取消时任务可能仍在执行,此时由执行线程归还许可
+				if (claimed.compareAndSet(false, true)) {
+					permits.release();
+				}
+			}
+		};
+
+		try {
+			executor.execute(future);
+		} catch (RejectedExecutionException e) {
+			if (claimed.compareAndSet(false, true)) {
+				permits.release();
+			}
+			throw e;
+		}
+		return future;
+	}
+
+	/**
+	 * 当前可用的并发数
+	 *
+	 * @return
+	 */
+	public int getAvailablePermits() {
+		return permits.availablePermits();
+	}
+
+	private static ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			synchronized (AsyncExecutor.class) {
+				if (defaultExecutor == null) {
+					ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE, 60L,
+							TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(DEFAULT_QUEUE_SIZE),
+							new PageQueryExecutor.DaemonThreadFactory("wenwo-mongo-async-"),
+							new ThreadPoolExecutor.CallerRunsPolicy());
+					pool.allowCoreThreadTimeOut(true);
+					defaultExecutor = pool;
+				}
+			}
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * 在提交线程捕获上下文,在执行线程中设置并在任务结束后恢复
+	 */
+	public interface ContextPropagator {
+
+		/**
+		 * 在提交线程中捕获上下文
+		 *
+		 * @return
+		 */
+		Object capture();
+
+		/**
+		 * 在执行线程中设置捕获的上下文
+		 *
+		 * @param captured
+		 * @return 执行线程原来的上下文
+		 */
+		Object apply(Object captured);
+
+		/**
+		 * 任务结束后恢复执行线程原来的上下文
+		 *
+		 * @param previous
+		 */
+		void restore(Object previous);
+	}
+}
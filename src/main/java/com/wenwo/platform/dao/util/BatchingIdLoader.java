@@ -0,0 +1,201 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.WenwoMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.DBObject;
+
+/**
+ * 按ID读取的批量合并器:在一个时间窗口内(或攒够最大批量时)并发到达的按ID查询合并成一次_id $in查询,
+ * 再把结果分发给各个调用线程.
+ * <ul>
+ * <li>同一批中读取相同ID的线程共享查询到的文档,但各自转换得到独立的实体实例;</li>
+ * <li>每批第一个到达的线程负责等待窗口结束并执行查询,其余线程只等待结果,不额外占用线程池;</li>
+ * <li>批量达到上限时立即执行,不再等待窗口结束;</li>
+ * <li>单个调用最多多付出一个窗口的延迟,因此窗口应设置得很小(通常1~5毫秒).</li>
+ * </ul>
+ *
+ * @param <T>
+ */
+public class BatchingIdLoader<T> {
+
+	private static final String ID_FIELD = "_id";
+
+	private final WenwoMongoTemplate template;
+	private final Class<T> entityClass;
+	private final long windowMillis;
+	private final int maxBatchSize;
+
+	private final Object lock = new Object();
+	private Batch current;
+
+	/**
+	 * @param template 执行查询的模板
+	 * @param entityClass 实体类
+	 * @param windowMillis 合并窗口(毫秒)
+	 * @param maxBatchSize 每批最多合并的ID数
+	 */
+	public BatchingIdLoader(WenwoMongoTemplate template, Class<T> entityClass, long windowMillis, int maxBatchSize) {
+		if (windowMillis <= 0 || maxBatchSize <= 0) {
+			throw new IllegalArgumentException("windowMillis and maxBatchSize must be positive");
+		}
+		this.template = template;
+		this.entityClass = entityClass;
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * 按ID读取实体,查不到时返回null. 每次调用返回新的实例
+	 *
+	 * @param id
+	 * @return
+	 */
+	public T load(Object id) {
+		return template.readEntity(loadDocument(id), entityClass);
+	}
+
+	/**
+	 * 按ID读取未转换的文档,查不到时返回null. 同一批的调用方共享同一个文档,不应修改
+	 *
+	 * @param id
+	 * @return
+	 */
+	public DBObject loadDocument(Object id) {
+		if (id == null) {
+			return null;
+		}
+
+		Batch batch;
+		boolean leader;
+		synchronized (lock) {
+			leader = current == null;
+			if (leader) {
+				current = new Batch();
+			}
+			batch = current;
+			batch.add(id);
+			if (batch.size() >= maxBatchSize) {
+				current = null;
+				batch.close();
+			}
+		}
+
+		if (leader) {
+			batch.awaitClose(windowMillis);
+			synchronized (lock) {
+				if (current == batch) {
+					current = null;
+				}
+				batch.close();
+			}
+			execute(batch);
+		}
+		return batch.get(id);
+	}
+
+	private void execute(Batch batch) {
+		try {
+			List<Object> ids = batch.getIds();
+			List<DBObject> documents = template.findDocuments(Query.query(Criteria.where(ID_FIELD).in(ids)), entityClass);
+			Map<String, DBObject> results = new HashMap<String, DBObject>(documents.size() * 4 / 3 + 1);
+			for (DBObject document : documents) {
+				Object documentId = document.get(ID_FIELD);
+				if (documentId != null) {
+					results.put(documentId.toString(), document);
+				}
+			}
+			batch.complete(results);
+		} catch (RuntimeException e) {
+			batch.fail(e);
+		} catch (Error e) {
+			batch.fail(new DataAccessResourceFailureException(e.getMessage(), e));
+			throw e;
+		}
+	}
+
+	/**
+	 * 一批待查询的ID及其结果
+	 */
+	private static class Batch {
+		private final Set<Object> ids = new LinkedHashSet<Object>();
+		private boolean closed;
+		private boolean done;
+		private Map<String, DBObject> results;
+		private RuntimeException failure;
+
+		synchronized void add(Object id) {
+			ids.add(id);
+		}
+
+		synchronized int size() {
+			return ids.size();
+		}
+
+		synchronized List<Object> getIds() {
+			return new ArrayList<Object>(ids);
+		}
+
+		synchronized void close() {
+			closed = true;
+			notifyAll();
+		}
+
+		/**
+		 * 等待窗口结束或批量攒满
+		 */
+		synchronized void awaitClose(long windowMillis) {
+			long deadline = System.currentTimeMillis() + windowMillis;
+			long remaining = windowMillis;
+			try {
+				while (!closed && remaining > 0) {
+					wait(remaining);
+					remaining = deadline - System.currentTimeMillis();
+				}
+			} catch (InterruptedException e) {
+				// 提前执行本批查询,保留中断状态
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		synchronized void complete(Map<String, DBObject> results) {
+			this.results = results;
+			this.done = true;
+			notifyAll();
+		}
+
+		synchronized void fail(RuntimeException failure) {
+			this.failure = failure;
+			this.done = true;
+			notifyAll();
+		}
+
+		synchronized DBObject get(Object id) {
+			boolean interrupted = false;
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// 查询由本批的首个线程执行且必然结束,等待结果后再恢复中断状态
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return results.get(id.toString());
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.bson.BSONObject;
+import org.bson.types.BSONTimestamp;
+import org.bson.types.Binary;
+import org.bson.types.Code;
+import org.bson.types.CodeWScope;
+import org.bson.types.ObjectId;
+import org.bson.types.Symbol;
+
+import com.mongodb.DBRef;
+
+/**
+ * BSON编码大小的估算:按各类型的编码长度累加,不实际编码,用于按字节数给批量写操作分块.
+ * 支持的类型得到的是准确的编码长度,无法识别的类型按toString的长度加上余量估算.
+ */
+public final class BsonSizes {
+
+	/**
+	 * 单个文档(包括写命令)的大小上限
+	 */
+	public static final int MAX_DOCUMENT_SIZE = 16 * 1024 * 1024;
+
+	private static final int UNKNOWN_TYPE_OVERHEAD = 64;
+
+	private BsonSizes() {
+	}
+
+	/**
+	 * 文档编码后的大小
+	 *
+	 * @param document
+	 * @return
+	 */
+	public static int document(BSONObject document) {
+		int size = 4 + 1;
+		for (String key : document.keySet()) {
+			size += element(key, document.get(key));
+		}
+		return size;
+	}
+
+	/**
+	 * 文档中一个元素(类型、键和值)编码后的大小,也用于计算数组中一个元素的大小,数组元素的键为下标
+	 *
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public static int element(String key, Object value) {
+		return 1 + cstring(key) + value(value);
+	}
+
+	private static int value(Object value) {
+		if (value == null || value instanceof Boolean) {
+			return value == null ? 0 : 1;
+		}
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return 4;
+		}
+		if (value instanceof Number || value instanceof Date || value instanceof BSONTimestamp) {
+			return 8;
+		}
+		if (value instanceof String || value instanceof Character || value instanceof Symbol) {
+			return string(value instanceof Symbol ? ((Symbol) value).getSymbol() : value.toString());
+		}
+		if (value instanceof ObjectId) {
+			return 12;
+		}
+		if (value instanceof BSONObject) {
+			return document((BSONObject) value);
+		}
+		if (value instanceof Map) {
+			int size = 4 + 1;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				size += element(String.valueOf(entry.getKey()), entry.getValue());
+			}
+			return size;
+		}
+		if (value instanceof Iterable) {
+			int size = 4 + 1;
+			int index = 0;
+			for (Object item : (Iterable<?>) value) {
+				size += 1 + indexKey(index++) + value(item);
+			}
+			return size;
+		}
+		if (value instanceof Object[]) {
+			Object[] items = (Object[]) value;
+			int size = 4 + 1;
+			for (int i = 0; i < items.length; i++) {
+				size += 1 + indexKey(i) + value(items[i]);
+			}
+			return size;
+		}
+		if (value instanceof byte[]) {
+			return 4 + 1 + ((byte[]) value).length;
+		}
+		if (value instanceof Binary) {
+			return 4 + 1 + 4 + ((Binary) value).length();
+		}
+		if (value instanceof UUID) {
+			return 4 + 1 + 16;
+		}
+		if (value instanceof Pattern) {
+			return cstring(((Pattern) value).pattern()) + 8;
+		}
+		if (value instanceof CodeWScope) {
+			return 4 + string(((CodeWScope) value).getCode()) + document(((CodeWScope) value).getScope());
+		}
+		if (value instanceof Code) {
+			return string(((Code) value).getCode());
+		}
+		if (value instanceof DBRef) {
+			DBRef ref = (DBRef) value;
+			return 4 + 1 + element("$ref", ref.getRef()) + element("$id", ref.getId());
+		}
+		return string(value.toString()) + UNKNOWN_TYPE_OVERHEAD;
+	}
+
+	private static int string(String value) {
+		return 4 + cstring(value);
+	}
+
+	private static int cstring(String value) {
+		return utf8Length(value) + 1;
+	}
+
+	private static int indexKey(int index) {
+		return (index < 10 ? 1 : index < 100 ? 2 : index < 1000 ? 3 : String.valueOf(index).length()) + 1;
+	}
+
+	private static int utf8Length(String value) {
+		int length = 0;
+		for (int i = 0, n = value.length(); i < n; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+}
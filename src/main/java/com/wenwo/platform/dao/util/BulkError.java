@@ -0,0 +1,40 @@
+package com.wenwo.platform.dao.util;
+
+/**
+ * 批量写操作中失败的一个批次或一条更新语句
+ */
+public class BulkError {
+
+	private final int index;
+	private final int count;
+	private final RuntimeException cause;
+
+	public BulkError(int index, int count, RuntimeException cause) {
+		this.index = index;
+		this.count = count;
+		this.cause = cause;
+	}
+
+	/**
+	 * 批次中第一个操作的添加序号(从0开始)
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * 批次中的操作数
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	public RuntimeException getCause() {
+		return cause;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkError [index=" + index + ", count=" + count + ", cause=" + cause + "]";
+	}
+}
@@ -0,0 +1,477 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteResult;
+
+/**
+ * 批量写操作构建器:收集插入、按ID更新、按条件更新/upsert和删除操作,合并后以尽量少的请求执行.
+ * <ul>
+ * <li>插入按条数分块,每块一次批量插入;</li>
+ * <li>按ID更新、按条件更新和upsert每个操作是一条独立的更新语句,多条语句合并为一次update写命令发送(需要2.6以上的服务端),
+ * 同一ID的多次更新各自生效,语句累计的编码大小超过16MB时拆分为多个命令;服务端不支持update命令时逐条更新;</li>
+ * <li>按ID删除合并为_id $in删除,按条数分块;</li>
+ * <li>{@link Mode#ORDERED}按添加顺序执行(只合并相邻的同类操作),遇到第一个错误即停止;
+ * {@link Mode#UNORDERED}按类型合并全部操作,出错后继续执行其余操作,错误汇总在结果中.</li>
+ * </ul>
+ * 实例不是线程安全的,执行后不能再次使用.
+ *
+ * @param <T>
+ */
+public class BulkOperations<T> {
+
+	private static final String ID_FIELD = "_id";
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final int COMMAND_NOT_FOUND = 59;
+	private static final MongoExceptionTranslator EXCEPTION_TRANSLATOR = new MongoExceptionTranslator();
+
+	public enum Mode {
+		ORDERED, UNORDERED
+	}
+
+	private enum OpType {
+		INSERT, UPDATE_BY_ID, UPDATE, UPSERT, REMOVE_BY_ID, REMOVE;
+
+		/**
+		 * 同一类别的操作可以合并为一个批次
+		 */
+		OpType category() {
+			return this == UPDATE || this == UPSERT ? UPDATE_BY_ID : this;
+		}
+	}
+
+	private final MongoTemplate template;
+	private final Class<T> entityClass;
+	private final String collectionName;
+	private final Mode mode;
+	private final List<Op> ops = new ArrayList<Op>();
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private boolean executed;
+	private boolean updateCommandSupported = true;
+
+	public BulkOperations(MongoTemplate template, Class<T> entityClass, Mode mode) {
+		this(template, entityClass, template.getCollectionName(entityClass), mode);
+	}
+
+	public BulkOperations(MongoTemplate template, Class<T> entityClass, String collectionName, Mode mode) {
+		this.template = template;
+		this.entityClass = entityClass;
+		this.collectionName = collectionName;
+		this.mode = mode;
+	}
+
+	/**
+	 * 每个批次最多包含的文档数或ID数,默认1000
+	 *
+	 * @param batchSize
+	 * @return
+	 */
+	public BulkOperations<T> batchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	public BulkOperations<T> insert(T entity) {
+		return add(OpType.INSERT, entity, null, null);
+	}
+
+	public BulkOperations<T> insert(Collection<? extends T> entities) {
+		for (T entity : entities) {
+			insert(entity);
+		}
+		return this;
+	}
+
+	/**
+	 * 按ID更新单个文档
+	 *
+	 * @param id
+	 * @param update
+	 * @return
+	 */
+	public BulkOperations<T> updateById(Object id, Update update) {
+		return add(OpType.UPDATE_BY_ID, id, null, update);
+	}
+
+	/**
+	 * 更新所有符合条件的文档
+	 *
+	 * @param query
+	 * @param update
+	 * @return
+	 */
+	public BulkOperations<T> update(Query query, Update update) {
+		return add(OpType.UPDATE, null, query, update);
+	}
+
+	public BulkOperations<T> upsert(Query query, Update update) {
+		return add(OpType.UPSERT, null, query, update);
+	}
+
+	public BulkOperations<T> removeById(Object id) {
+		return add(OpType.REMOVE_BY_ID, id, null, null);
+	}
+
+	public BulkOperations<T> removeByIds(Collection<?> ids) {
+		for (Object id : ids) {
+			removeById(id);
+		}
+		return this;
+	}
+
+	public BulkOperations<T> remove(Query query) {
+		return add(OpType.REMOVE, null, query, null);
+	}
+
+	/**
+	 * 操作数
+	 *
+	 * @return
+	 */
+	public int size() {
+		return ops.size();
+	}
+
+	/**
+	 * 执行所有操作
+	 *
+	 * @return
+	 */
+	public BulkResult execute() {
+		if (executed) {
+			throw new IllegalStateException("Bulk operations have already been executed");
+		}
+		executed = true;
+
+		BulkResult result = new BulkResult(ops.size());
+		List<Batch> batches = mode == Mode.ORDERED ? orderedBatches() : unorderedBatches();
+		for (Batch batch : batches) {
+			boolean failed;
+			try {
+				failed = !run(batch, result);
+			} catch (RuntimeException e) {
+				result.addError(new BulkError(batch.firstIndex(), batch.ops.size(), e));
+				failed = true;
+			}
+			if (failed && mode == Mode.ORDERED) {
+				break;
+			}
+		}
+		afterExecute(result);
+		return result;
+	}
+
+	/**
+	 * 执行结束后的回调,子类可用于清除缓存等
+	 *
+	 * @param result
+	 */
+	protected void afterExecute(BulkResult result) {
+	}
+
+	private BulkOperations<T> add(OpType type, Object target, Query query, Update update) {
+		if (executed) {
+			throw new IllegalStateException("Bulk operations have already been executed");
+		}
+		ops.add(new Op(ops.size(), type, target, query, update));
+		return this;
+	}
+
+	/**
+	 * 只合并相邻的同类操作,保持执行顺序
+	 */
+	private List<Batch> orderedBatches() {
+		return toBatches(ops);
+	}
+
+	/**
+	 * 按类别合并全部操作:插入、更新(含upsert)、删除依次执行
+	 */
+	private List<Batch> unorderedBatches() {
+		List<Op> sorted = new ArrayList<Op>(ops.size());
+		for (OpType type : OpType.values()) {
+			if (type.category() != type) {
+				continue;
+			}
+			for (Op op : ops) {
+				if (op.type.category() == type) {
+					sorted.add(op);
+				}
+			}
+		}
+		return toBatches(sorted);
+	}
+
+	private List<Batch> toBatches(List<Op> sorted) {
+		List<Batch> batches = new ArrayList<Batch>();
+		Batch current = null;
+		for (Op op : sorted) {
+			if (current == null || !current.accepts(op, batchSize)) {
+				current = new Batch(op.type.category());
+				batches.add(current);
+			}
+			current.ops.add(op);
+		}
+		return batches;
+	}
+
+	/**
+	 * @return 批次中的操作是否全部成功
+	 */
+	private boolean run(Batch batch, BulkResult result) {
+		Op first = batch.ops.get(0);
+		switch (batch.type) {
+		case INSERT:
+			List<Object> entities = new ArrayList<Object>(batch.ops.size());
+			for (Op op : batch.ops) {
+				entities.add(op.target);
+			}
+			template.insert(entities, collectionName);
+			result.inserted += entities.size();
+			break;
+		case UPDATE_BY_ID:
+			return runUpdates(batch, result);
+		case REMOVE_BY_ID:
+			result.removed += removeByIds(batch.targets());
+			break;
+		case REMOVE:
+			result.removed += doRemove(first.query);
+			break;
+		default:
+			throw new IllegalStateException("Unexpected batch type " + batch.type);
+		}
+		result.succeeded += batch.ops.size();
+		return true;
+	}
+
+	/**
+	 * 批次中的每个更新作为一条语句,一次update写命令发送;语句累计的编码大小超过单个命令的上限时拆分为多个命令
+	 */
+	private boolean runUpdates(Batch batch, BulkResult result) {
+		MongoPersistentEntity<?> entity = template.getConverter().getMappingContext().getPersistentEntity(entityClass);
+		WenwoQueryMapper mapper = new WenwoQueryMapper(template.getConverter());
+		List<DBObject> statements = new ArrayList<DBObject>(batch.ops.size());
+		for (Op op : batch.ops) {
+			DBObject query = op.type == OpType.UPDATE_BY_ID ? new BasicDBObject(ID_FIELD, op.target) : op.query
+					.getQueryObject();
+			BasicDBObject statement = new BasicDBObject("q", mapper.getMappedObject(query, entity));
+			statement.put("u", mapper.getMappedObject(op.update.getUpdateObject(), entity));
+			statement.put("multi", op.type == OpType.UPDATE);
+			statement.put("upsert", op.type == OpType.UPSERT);
+			statements.add(statement);
+		}
+
+		int commandSize = BsonSizes.document(updateCommand(new BasicDBList()));
+		boolean succeeded = true;
+		int from = 0;
+		while (from < statements.size()) {
+			int size = commandSize;
+			int to = from;
+			while (to < statements.size()) {
+				int element = BsonSizes.element(String.valueOf(to - from), statements.get(to));
+				if (to > from && size + element > BsonSizes.MAX_DOCUMENT_SIZE) {
+					break;
+				}
+				size += element;
+				to++;
+			}
+			List<Op> ops = batch.ops.subList(from, to);
+			boolean chunkSucceeded;
+			try {
+				chunkSucceeded = runUpdateCommand(ops, statements.subList(from, to), result);
+			} catch (RuntimeException e) {
+				result.addError(new BulkError(ops.get(0).index, ops.size(), e));
+				chunkSucceeded = false;
+			}
+			if (!chunkSucceeded) {
+				if (mode == Mode.ORDERED) {
+					return false;
+				}
+				succeeded = false;
+			}
+			from = to;
+		}
+		return succeeded;
+	}
+
+	private BasicDBObject updateCommand(BasicDBList statements) {
+		BasicDBObject command = new BasicDBObject("update", collectionName);
+		command.put("updates", statements);
+		command.put("ordered", mode == Mode.ORDERED);
+		return command;
+	}
+
+	/**
+	 * 以一次update写命令发送语句,写错误的下标对应ops中的位置
+	 */
+	private boolean runUpdateCommand(List<Op> ops, List<DBObject> statements, BulkResult result) {
+		if (!updateCommandSupported) {
+			return runLegacyUpdates(ops, statements, result);
+		}
+		BasicDBList list = new BasicDBList();
+		list.addAll(statements);
+		CommandResult commandResult = template.executeCommand(updateCommand(list));
+		if (!commandResult.ok() && isCommandNotFound(commandResult)) {
+			// 2.6以前的服务端没有写命令
+			updateCommandSupported = false;
+			return runLegacyUpdates(ops, statements, result);
+		}
+		commandResult.throwOnError();
+
+		int upserted = 0;
+		Object upsertedList = commandResult.get("upserted");
+		if (upsertedList instanceof List) {
+			upserted = ((List<?>) upsertedList).size();
+		}
+		result.upserted += upserted;
+		result.updated += commandResult.getInt("n", 0) - upserted;
+
+		Object writeErrors = commandResult.get("writeErrors");
+		if (!(writeErrors instanceof List) || ((List<?>) writeErrors).isEmpty()) {
+			result.succeeded += ops.size();
+			return true;
+		}
+		List<?> errors = (List<?>) writeErrors;
+		for (Object error : errors) {
+			DBObject writeError = (DBObject) error;
+			Op op = ops.get(((Number) writeError.get("index")).intValue());
+			int code = ((Number) writeError.get("code")).intValue();
+			String message = String.valueOf(writeError.get("errmsg"));
+			// 转换器对带重复键错误码的普通MongoException会直接抛出,需要构造DuplicateKey
+			MongoException cause = code == 11000 || code == 11001 ? new MongoException.DuplicateKey(code, message)
+					: new MongoException(code, message);
+			RuntimeException translated = EXCEPTION_TRANSLATOR.translateExceptionIfPossible(cause);
+			result.addError(new BulkError(op.index, 1, translated == null ? cause : translated));
+		}
+		if (mode == Mode.ORDERED) {
+			// 有序执行时服务端在第一个错误处停止
+			result.succeeded += ((Number) ((DBObject) errors.get(0)).get("index")).intValue();
+		} else {
+			result.succeeded += ops.size() - errors.size();
+		}
+		return false;
+	}
+
+	private static boolean isCommandNotFound(CommandResult commandResult) {
+		Object code = commandResult.get("code");
+		String message = commandResult.getErrorMessage();
+		return (code instanceof Number && ((Number) code).intValue() == COMMAND_NOT_FOUND)
+				|| (message != null && message.startsWith("no such cmd"));
+	}
+
+	/**
+	 * 不支持update命令时逐条发送更新语句,结果与update命令相同
+	 */
+	private boolean runLegacyUpdates(List<Op> ops, final List<DBObject> statements, BulkResult result) {
+		boolean succeeded = true;
+		for (int i = 0; i < statements.size(); i++) {
+			final DBObject statement = statements.get(i);
+			WriteResult writeResult;
+			try {
+				writeResult = template.execute(collectionName, new CollectionCallback<WriteResult>() {
+					public WriteResult doInCollection(DBCollection collection) throws MongoException, DataAccessException {
+						return collection.update((DBObject) statement.get("q"), (DBObject) statement.get("u"),
+								Boolean.TRUE.equals(statement.get("upsert")), Boolean.TRUE.equals(statement.get("multi")));
+					}
+				});
+			} catch (RuntimeException e) {
+				result.addError(new BulkError(ops.get(i).index, 1, e));
+				if (mode == Mode.ORDERED) {
+					return false;
+				}
+				succeeded = false;
+				continue;
+			}
+			int n = writeResult.getN();
+			if (n > 0 && Boolean.FALSE.equals(writeResult.getField("updatedExisting"))) {
+				result.upserted += n;
+			} else {
+				result.updated += n;
+			}
+			result.succeeded++;
+		}
+		return succeeded;
+	}
+
+	private int removeByIds(List<Object> ids) {
+		return doRemove(Query.query(Criteria.where(ID_FIELD).in(ids)));
+	}
+
+	/**
+	 * 与模板的remove相同,但返回删除的文档数
+	 */
+	private int doRemove(Query query) {
+		MongoPersistentEntity<?> entity = template.getConverter().getMappingContext().getPersistentEntity(entityClass);
+		final DBObject queryObject = new WenwoQueryMapper(template.getConverter()).getMappedObject(query.getQueryObject(),
+				entity);
+		return template.execute(collectionName, new CollectionCallback<Integer>() {
+			public Integer doInCollection(DBCollection collection) throws MongoException, DataAccessException {
+				return collection.remove(queryObject).getN();
+			}
+		});
+	}
+
+	private class Op {
+		private final int index;
+		private final OpType type;
+		private final Object target;
+		private final Query query;
+		private final Update update;
+
+		Op(int index, OpType type, Object target, Query query, Update update) {
+			this.index = index;
+			this.type = type;
+			this.target = target;
+			this.query = query;
+			this.update = update;
+		}
+	}
+
+	private class Batch {
+		private final OpType type;
+		private final List<Op> ops = new ArrayList<Op>();
+
+		Batch(OpType type) {
+			this.type = type;
+		}
+
+		boolean accepts(Op op, int batchSize) {
+			if (op.type.category() != type || ops.size() >= batchSize) {
+				return false;
+			}
+			return type != OpType.REMOVE;
+		}
+
+		int firstIndex() {
+			return ops.get(0).index;
+		}
+
+		List<Object> targets() {
+			List<Object> targets = new ArrayList<Object>(ops.size());
+			for (Op op : ops) {
+				targets.add(op.target);
+			}
+			return targets;
+		}
+	}
+}
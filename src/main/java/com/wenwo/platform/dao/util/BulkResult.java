@@ -0,0 +1,84 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量写操作的汇总结果
+ */
+public class BulkResult {
+
+	private final int total;
+	int succeeded;
+	int inserted;
+	int updated;
+	int upserted;
+	int removed;
+	private final List<BulkError> errors = new ArrayList<BulkError>();
+
+	BulkResult(int total) {
+		this.total = total;
+	}
+
+	void addError(BulkError error) {
+		errors.add(error);
+	}
+
+	/**
+	 * 提交的操作数
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * 执行成功的操作数
+	 */
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	/**
+	 * 失败或(有序执行时)因前面出错而未执行的操作数
+	 */
+	public int getFailed() {
+		return total - succeeded;
+	}
+
+	public int getInserted() {
+		return inserted;
+	}
+
+	/**
+	 * 被更新的已有文档数
+	 */
+	public int getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * upsert新插入的文档数
+	 */
+	public int getUpserted() {
+		return upserted;
+	}
+
+	public int getRemoved() {
+		return removed;
+	}
+
+	public boolean hasErrors() {
+		return !errors.isEmpty();
+	}
+
+	public List<BulkError> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+
+	@Override
+	public String toString() {
+		return "BulkResult [total=" + total + ", succeeded=" + succeeded + ", inserted=" + inserted + ", updated="
+				+ updated + ", upserted=" + upserted + ", removed=" + removed + ", errors=" + errors.size() + "]";
+	}
+}
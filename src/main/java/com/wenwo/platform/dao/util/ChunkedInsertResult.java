@@ -0,0 +1,74 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分块批量插入的结果:成功插入的文档数及每个失败的分块
+ */
+public class ChunkedInsertResult {
+
+	private int inserted;
+	private final List<Failure> failures = new ArrayList<Failure>();
+
+	public synchronized void addInserted(int count) {
+		inserted += count;
+	}
+
+	public synchronized void addFailure(List<?> objects, RuntimeException cause) {
+		failures.add(new Failure(objects, cause));
+	}
+
+	/**
+	 * 成功插入的文档数
+	 */
+	public synchronized int getInserted() {
+		return inserted;
+	}
+
+	/**
+	 * 没有插入成功的文档数
+	 */
+	public synchronized int getFailed() {
+		int failed = 0;
+		for (Failure failure : failures) {
+			failed += failure.getObjects().size();
+		}
+		return failed;
+	}
+
+	public synchronized boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+	public synchronized List<Failure> getFailures() {
+		return Collections.unmodifiableList(new ArrayList<Failure>(failures));
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkedInsertResult [inserted=" + getInserted() + ", failed=" + getFailed() + "]";
+	}
+
+	/**
+	 * 失败的分块,包含该块中没有插入的对象,可用于重试
+	 */
+	public static class Failure {
+		private final List<?> objects;
+		private final RuntimeException cause;
+
+		Failure(List<?> objects, RuntimeException cause) {
+			this.objects = objects;
+			this.cause = cause;
+		}
+
+		public List<?> getObjects() {
+			return objects;
+		}
+
+		public RuntimeException getCause() {
+			return cause;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.wenwo.platform.dao.util;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * 可关闭的迭代器,用于流式读取查询结果. 结果在迭代时才逐条从游标读取并转换,遍历结束时自动关闭游标;
+ * 提前结束遍历时必须调用{@link #close()}释放服务端游标.
+ *
+ * @param <T>
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+	/**
+	 * 关闭底层游标,可重复调用
+	 */
+	void close();
+}
@@ -0,0 +1,204 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * 查询总数的缓存:相同集合、相同查询条件的总数在有效期内直接复用.
+ * <ul>
+ * <li>经DAO的写操作通过{@link #invalidate(String)}使该集合的所有总数失效,其他集合不受影响;</li>
+ * <li>计数期间集合被写入时,计数结果不放入缓存;</li>
+ * <li>其他进程的写操作只能等有效期过后才可见.</li>
+ * </ul>
+ * 有效期小于等于0时不缓存.
+ */
+public class CountCache {
+
+	private static final int DEFAULT_MAX_SIZE = 10000;
+
+	private final Map<String, CachedCount> counts = new ConcurrentHashMap<String, CachedCount>();
+	private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+
+	private volatile long ttl;
+	private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+	/**
+	 * @param ttl 有效期(毫秒),小于等于0时不缓存
+	 */
+	public CountCache(long ttl) {
+		this.ttl = ttl;
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * 有效期(毫秒),小于等于0时不缓存
+	 *
+	 * @param ttl
+	 */
+	public void setTtl(long ttl) {
+		this.ttl = ttl;
+	}
+
+	/**
+	 * 最大条目数,超过时先清理过期条目,仍超过则全部清空
+	 *
+	 * @param maxSize
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public boolean isEnabled() {
+		return ttl > 0;
+	}
+
+	/**
+	 * 返回缓存的总数,没有时计数并放入缓存
+	 *
+	 * @param collectionName 集合名
+	 * @param key 查询条件
+	 * @param count 计数
+	 * @return
+	 */
+	public long count(String collectionName, String key, Callable<Long> count) {
+		Long cached = get(collectionName, key);
+		if (cached != null) {
+			return cached.longValue();
+		}
+		long generation = getGeneration(collectionName);
+		long value = call(count).longValue();
+		put(collectionName, key, value, generation);
+		return value;
+	}
+
+	/**
+	 * @param collectionName
+	 * @param key
+	 * @return 有效的缓存总数,没有时返回null
+	 */
+	public Long get(String collectionName, String key) {
+		if (ttl <= 0) {
+			return null;
+		}
+		String cacheKey = cacheKey(collectionName, key);
+		CachedCount cached = counts.get(cacheKey);
+		if (cached == null) {
+			return null;
+		}
+		if (cached.expireAt < System.currentTimeMillis() || cached.generation != getGeneration(collectionName)) {
+			counts.remove(cacheKey);
+			return null;
+		}
+		return cached.count;
+	}
+
+	/**
+	 * 集合当前的版本,每次{@link #invalidate(String)}加1. 计数前取得版本,计数后连同版本一起放入缓存
+	 *
+	 * @param collectionName
+	 * @return
+	 */
+	public long getGeneration(String collectionName) {
+		AtomicLong generation = generations.get(normalize(collectionName));
+		return generation == null ? 0 : generation.get();
+	}
+
+	/**
+	 * 放入缓存,计数开始后集合被写入过时忽略
+	 *
+	 * @param collectionName
+	 * @param key
+	 * @param count
+	 * @param generation 计数开始前的{@link #getGeneration(String)}
+	 */
+	public void put(String collectionName, String key, long count, long generation) {
+		long ttl = this.ttl;
+		if (ttl <= 0 || generation != getGeneration(collectionName)) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (counts.size() >= maxSize) {
+			evictExpired(now);
+			if (counts.size() >= maxSize) {
+				counts.clear();
+			}
+		}
+		counts.put(cacheKey(collectionName, key), new CachedCount(count, now + ttl, generation));
+	}
+
+	/**
+	 * 集合被写入后调用,使该集合的所有总数失效
+	 *
+	 * @param collectionName
+	 */
+	public void invalidate(String collectionName) {
+		if (ttl <= 0) {
+			return;
+		}
+		String name = normalize(collectionName);
+		AtomicLong generation = generations.get(name);
+		if (generation == null) {
+			generation = new AtomicLong();
+			AtomicLong existing = generations.putIfAbsent(name, generation);
+			if (existing != null) {
+				generation = existing;
+			}
+		}
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * 清空所有总数
+	 */
+	public void clear() {
+		counts.clear();
+	}
+
+	private void evictExpired(long now) {
+		Iterator<CachedCount> it = counts.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().expireAt < now) {
+				it.remove();
+			}
+		}
+	}
+
+	private static String normalize(String collectionName) {
+		return collectionName == null ? "" : collectionName;
+	}
+
+	private static String cacheKey(String collectionName, String key) {
+		return normalize(collectionName) + '\u0000' + key;
+	}
+
+	private static Long call(Callable<Long> callable) {
+		try {
+			return callable.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DataAccessResourceFailureException(e.getMessage(), e);
+		}
+	}
+
+	private static class CachedCount {
+		private final long count;
+		private final long expireAt;
+		private final long generation;
+
+		CachedCount(long count, long expireAt, long generation) {
+			this.count = count;
+			this.expireAt = expireAt;
+			this.generation = generation;
+		}
+	}
+}
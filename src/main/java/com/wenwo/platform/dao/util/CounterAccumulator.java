@@ -0,0 +1,349 @@
+package com.wenwo.platform.dao.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 计数器的合并写入:浏览数、点赞数等高频$inc先在内存中按(集合,ID,字段)累加,
+ * 定时或待写入的计数器数达到上限时,每个文档合并为一个$inc更新批量写入.
+ * <ul>
+ * <li>累加按键分段加锁,不同段的累加互不阻塞;</li>
+ * <li>增量在写入前只存在于内存中,进程异常退出时最多丢失一个写入间隔内的增量,
+ * 正常关闭时应调用{@link #shutdown()}(如配置为Spring的destroy-method)写入剩余的增量;</li>
+ * <li>写入失败的增量不重试,以免部分成功的批次被重复累加,失败数见{@link #getFailedDocuments()}.</li>
+ * </ul>
+ * 通过{@link #register(String)}注册为JMX MBean后可查看待写入的增量和写入延迟.
+ */
+public class CounterAccumulator implements CounterAccumulatorMBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CounterAccumulator.class);
+	private static final int DEFAULT_STRIPES = 16;
+	private static final int DEFAULT_MAX_PENDING_COUNTERS = 10000;
+
+	/**
+	 * 合并后的增量的写入目标,通常每个DAO一个
+	 */
+	public interface CounterSink {
+
+		/**
+		 * 写入合并后的增量
+		 *
+		 * @param deltas ID -> (字段 -> 增量)
+		 * @return 写入失败的文档数
+		 */
+		int flush(Map<Object, Map<String, Long>> deltas);
+	}
+
+	private final Stripe[] stripes;
+	private final long flushIntervalMillis;
+	private final ScheduledExecutorService scheduler;
+	private final Object flushLock = new Object();
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+	private final AtomicInteger pendingCounters = new AtomicInteger();
+	private final AtomicLong pendingDelta = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong flushedDocuments = new AtomicLong();
+	private final AtomicLong failedDocuments = new AtomicLong();
+
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				LOGGER.warn("Exception while flushing counters", e);
+			}
+		}
+	};
+
+	private volatile int maxPendingCounters = DEFAULT_MAX_PENDING_COUNTERS;
+	private volatile long lastFlushLagMillis;
+	private volatile long lastFlushMillis;
+	private volatile boolean shutdown;
+
+	/**
+	 * @param flushIntervalMillis 定时写入的间隔(毫秒)
+	 */
+	public CounterAccumulator(long flushIntervalMillis) {
+		this(flushIntervalMillis, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param flushIntervalMillis 定时写入的间隔(毫秒)
+	 * @param stripeCount 累加的分段数
+	 */
+	public CounterAccumulator(long flushIntervalMillis, int stripeCount) {
+		if (flushIntervalMillis <= 0) {
+			throw new IllegalArgumentException("flushIntervalMillis must be positive");
+		}
+		if (stripeCount <= 0) {
+			throw new IllegalArgumentException("stripeCount must be positive");
+		}
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe();
+		}
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new PageQueryExecutor.DaemonThreadFactory(
+				"wenwo-mongo-counter-"));
+		scheduler.scheduleWithFixedDelay(flushTask, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 注册为MBean:com.wenwo.platform.dao:type=CounterAccumulator,name=..
+	 *
+	 * @param name
+	 */
+	public void register(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("com.wenwo.platform.dao:type=CounterAccumulator,name="
+					+ ObjectName.quote(name));
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(this, objectName);
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Exception while registering counter accumulator MBean " + name, e);
+		}
+	}
+
+	/**
+	 * 累加一个增量,在下次写入时生效
+	 *
+	 * @param sink 写入目标
+	 * @param id 文档ID
+	 * @param field 字段名
+	 * @param delta 增量
+	 */
+	public void increment(CounterSink sink, Object id, String field, long delta) {
+		if (delta == 0) {
+			return;
+		}
+		if (shutdown) {
+			// 关闭后直接写入,不再累加
+			Map<String, Long> fields = Collections.singletonMap(field, Long.valueOf(delta));
+			sink.flush(Collections.<Object, Map<String, Long>> singletonMap(id, fields));
+			return;
+		}
+
+		CounterKey key = new CounterKey(sink, id, field);
+		Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % stripes.length];
+		boolean added;
+		synchronized (stripe) {
+			if (stripe.deltas.isEmpty()) {
+				stripe.firstPendingAt = System.currentTimeMillis();
+			}
+			long[] value = stripe.deltas.get(key);
+			added = value == null;
+			if (added) {
+				value = new long[1];
+				stripe.deltas.put(key, value);
+			}
+			value[0] += delta;
+			stripe.absDelta += Math.abs(delta);
+		}
+		pendingDelta.addAndGet(Math.abs(delta));
+
+		if (shutdown) {
+			// 与shutdown并发时,shutdown中的写入可能已经结束
+			flush();
+		} else if (added && pendingCounters.incrementAndGet() >= maxPendingCounters
+				&& flushRequested.compareAndSet(false, true)) {
+			try {
+				scheduler.execute(flushTask);
+			} catch (RejectedExecutionException e) {
+				flushRequested.set(false);
+			}
+		}
+	}
+
+	/**
+	 * 立即写入所有待写入的增量,同一时间只有一个写入在执行
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			flushRequested.set(false);
+			long start = System.currentTimeMillis();
+			long oldest = Long.MAX_VALUE;
+			Map<CounterSink, Map<Object, Map<String, Long>>> bySink = new HashMap<CounterSink, Map<Object, Map<String, Long>>>();
+			for (Stripe stripe : stripes) {
+				Map<CounterKey, long[]> deltas;
+				synchronized (stripe) {
+					if (stripe.deltas.isEmpty()) {
+						continue;
+					}
+					deltas = stripe.deltas;
+					stripe.deltas = new HashMap<CounterKey, long[]>();
+					oldest = Math.min(oldest, stripe.firstPendingAt);
+					pendingCounters.addAndGet(-deltas.size());
+					pendingDelta.addAndGet(-stripe.absDelta);
+					stripe.absDelta = 0;
+				}
+				for (Map.Entry<CounterKey, long[]> entry : deltas.entrySet()) {
+					long delta = entry.getValue()[0];
+					if (delta == 0) {
+						continue;
+					}
+					CounterKey key = entry.getKey();
+					Map<Object, Map<String, Long>> documents = bySink.get(key.sink);
+					if (documents == null) {
+						documents = new HashMap<Object, Map<String, Long>>();
+						bySink.put(key.sink, documents);
+					}
+					Map<String, Long> fields = documents.get(key.id);
+					if (fields == null) {
+						fields = new HashMap<String, Long>();
+						documents.put(key.id, fields);
+					}
+					fields.put(key.field, Long.valueOf(delta));
+				}
+			}
+			if (oldest == Long.MAX_VALUE) {
+				return;
+			}
+
+			int documents = 0;
+			int failed = 0;
+			for (Map.Entry<CounterSink, Map<Object, Map<String, Long>>> entry : bySink.entrySet()) {
+				int size = entry.getValue().size();
+				documents += size;
+				try {
+					failed += entry.getKey().flush(entry.getValue());
+				} catch (RuntimeException e) {
+					failed += size;
+					LOGGER.warn("Exception while flushing counters of " + size + " documents", e);
+				}
+			}
+			if (failed > 0) {
+				LOGGER.warn("Dropped counter increments of " + failed + " documents");
+			}
+
+			long end = System.currentTimeMillis();
+			flushes.incrementAndGet();
+			flushedDocuments.addAndGet(documents - failed);
+			failedDocuments.addAndGet(failed);
+			lastFlushLagMillis = start - oldest;
+			lastFlushMillis = end - start;
+		}
+	}
+
+	/**
+	 * 停止定时写入并写入剩余的增量,之后的累加直接写入
+	 */
+	public void shutdown() {
+		shutdown = true;
+		scheduler.shutdown();
+		flush();
+	}
+
+	public long getFlushIntervalMillis() {
+		return flushIntervalMillis;
+	}
+
+	public int getMaxPendingCounters() {
+		return maxPendingCounters;
+	}
+
+	/**
+	 * 待写入的计数器数达到该值时立即写入,默认10000
+	 *
+	 * @param maxPendingCounters
+	 */
+	public void setMaxPendingCounters(int maxPendingCounters) {
+		if (maxPendingCounters <= 0) {
+			throw new IllegalArgumentException("maxPendingCounters must be positive");
+		}
+		this.maxPendingCounters = maxPendingCounters;
+	}
+
+	public int getPendingCounters() {
+		return pendingCounters.get();
+	}
+
+	public long getPendingDelta() {
+		return pendingDelta.get();
+	}
+
+	public long getFlushLagMillis() {
+		long oldest = Long.MAX_VALUE;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				if (!stripe.deltas.isEmpty()) {
+					oldest = Math.min(oldest, stripe.firstPendingAt);
+				}
+			}
+		}
+		return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+	}
+
+	public long getLastFlushLagMillis() {
+		return lastFlushLagMillis;
+	}
+
+	public long getLastFlushMillis() {
+		return lastFlushMillis;
+	}
+
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	public long getFlushedDocuments() {
+		return flushedDocuments.get();
+	}
+
+	public long getFailedDocuments() {
+		return failedDocuments.get();
+	}
+
+	private static class Stripe {
+		private Map<CounterKey, long[]> deltas = new HashMap<CounterKey, long[]>();
+		private long firstPendingAt;
+		private long absDelta;
+	}
+
+	private static class CounterKey {
+		private final CounterSink sink;
+		private final Object id;
+		private final String field;
+		private final int hash;
+
+		CounterKey(CounterSink sink, Object id, String field) {
+			this.sink = sink;
+			this.id = id;
+			this.field = field;
+			this.hash = (System.identityHashCode(sink) * 31 + id.hashCode()) * 31 + field.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CounterKey)) {
+				return false;
+			}
+			CounterKey other = (CounterKey) obj;
+			return sink == other.sink && id.equals(other.id) && field.equals(other.field);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.wenwo.platform.dao.util;
+
+/**
+ * 计数器合并写入的JMX接口
+ */
+public interface CounterAccumulatorMBean {
+
+	long getFlushIntervalMillis();
+
+	int getMaxPendingCounters();
+
+	void setMaxPendingCounters(int maxPendingCounters);
+
+	/**
+	 * 尚未写入的计数器数,每个(集合,ID,字段)算一个
+	 */
+	int getPendingCounters();
+
+	/**
+	 * 尚未写入的增量绝对值之和
+	 */
+	long getPendingDelta();
+
+	/**
+	 * 最早一个尚未写入的增量已等待的时间(毫秒),没有待写入的增量时为0
+	 */
+	long getFlushLagMillis();
+
+	/**
+	 * 上次写入时最早一个增量等待的时间(毫秒)
+	 */
+	long getLastFlushLagMillis();
+
+	/**
+	 * 上次写入耗时(毫秒)
+	 */
+	long getLastFlushMillis();
+
+	long getFlushes();
+
+	/**
+	 * 累计写入的文档数,每个文档每次写入合并为一个更新
+	 */
+	long getFlushedDocuments();
+
+	/**
+	 * 累计写入失败而丢弃增量的文档数
+	 */
+	long getFailedDocuments();
+
+	/**
+	 * 立即写入所有待写入的增量
+	 */
+	void flush();
+}
@@ -0,0 +1,53 @@
+package com.wenwo.platform.dao.util;
+
+import org.springframework.data.mapping.context.MappingContextEvent;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexCreator;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+/**
+ * 按数据源创建索引. 多个数据源共享同一个映射上下文时,映射上下文中的实体不一定属于每个数据源,
+ * 因此不能在实体加入映射上下文时就在所有数据库中建索引:关闭eager后只在模板实际使用某个实体时,
+ * 通过{@link #ensureIndexes(MongoPersistentEntity)}在该模板的数据库中为它建一次索引.
+ */
+public class DataSourceIndexCreator extends MongoPersistentEntityIndexCreator {
+
+	private volatile boolean eager = true;
+
+	/**
+	 * 在映射上下文中已有的实体会立即建索引,只共享元数据的数据源应传入空的映射上下文
+	 *
+	 * @param mappingContext
+	 * @param mongoDbFactory
+	 */
+	public DataSourceIndexCreator(MongoMappingContext mappingContext, MongoDbFactory mongoDbFactory) {
+		super(mappingContext, mongoDbFactory);
+	}
+
+	/**
+	 * 是否在实体加入映射上下文时建索引,默认true
+	 *
+	 * @param eager
+	 */
+	public void setEager(boolean eager) {
+		this.eager = eager;
+	}
+
+	@Override
+	public void onApplicationEvent(MappingContextEvent<MongoPersistentEntity<?>, MongoPersistentProperty> event) {
+		if (eager) {
+			super.onApplicationEvent(event);
+		}
+	}
+
+	/**
+	 * 为实体建索引,每个实体类只执行一次
+	 *
+	 * @param entity
+	 */
+	public void ensureIndexes(MongoPersistentEntity<?> entity) {
+		checkForIndexes(entity);
+	}
+}
@@ -0,0 +1,136 @@
+package com.wenwo.platform.dao.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.mongodb.DBObject;
+
+/**
+ * 实体最近一次读取或写入时的文档快照,用于按ID更新时只写入变化的字段.
+ * 快照按实体对象本身(而不是ID)记录,并且弱引用实体:同一文档被多次读取成不同的对象时各自对比,
+ * 实体不再被使用时快照随之释放. 默认关闭,关闭时不记录快照.
+ */
+public class EntitySnapshots {
+
+	private final ConcurrentMap<Object, DBObject> snapshots = new ConcurrentHashMap<Object, DBObject>();
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+	private volatile boolean enabled;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * 开启或关闭快照记录,关闭时清空已有的快照
+	 *
+	 * @param enabled
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		if (!enabled) {
+			snapshots.clear();
+		}
+	}
+
+	/**
+	 * 记录实体对应的文档,文档之后不应再被修改
+	 *
+	 * @param entity
+	 * @param document
+	 */
+	public void put(Object entity, DBObject document) {
+		if (!enabled || entity == null || document == null) {
+			return;
+		}
+		expungeStaleEntries();
+		snapshots.put(new WeakKey(entity, queue), document);
+	}
+
+	/**
+	 * @param entity
+	 * @return 实体的快照,没有记录时返回null
+	 */
+	public DBObject get(Object entity) {
+		if (!enabled || entity == null) {
+			return null;
+		}
+		return snapshots.get(new LookupKey(entity));
+	}
+
+	public void remove(Object entity) {
+		if (entity != null) {
+			snapshots.remove(new LookupKey(entity));
+		}
+	}
+
+	public int size() {
+		expungeStaleEntries();
+		return snapshots.size();
+	}
+
+	private void expungeStaleEntries() {
+		Reference<?> reference;
+		while ((reference = queue.poll()) != null) {
+			snapshots.remove(reference);
+		}
+	}
+
+	/**
+	 * 按实体对象的同一性比较
+	 */
+	private interface IdentityKey {
+		Object entity();
+	}
+
+	private static class WeakKey extends WeakReference<Object> implements IdentityKey {
+		private final int hash;
+
+		WeakKey(Object entity, ReferenceQueue<Object> queue) {
+			super(entity, queue);
+			this.hash = System.identityHashCode(entity);
+		}
+
+		public Object entity() {
+			return get();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			Object entity = get();
+			return entity != null && obj instanceof IdentityKey && ((IdentityKey) obj).entity() == entity;
+		}
+	}
+
+	private static class LookupKey implements IdentityKey {
+		private final Object entity;
+
+		LookupKey(Object entity) {
+			this.entity = entity;
+		}
+
+		public Object entity() {
+			return entity;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(entity);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey && ((IdentityKey) obj).entity() == entity;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.wenwo.platform.dao.util;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -59,14 +60,61 @@ public interface IMongoUtil {
 	 */
 	<T> PageHolder<T> getPage(Class<T> clazz, PageInfo pageInfo, Sort sort, List<Criteria> cs);
 
+	/**
+	 * 基于续页令牌(seek)的分页查询,不使用skip,深度翻页与第一页代价相同
+	 * 
+	 * @param clazz
+	 * @param pageInfo	提供每页条数和页码;token为空时按页码偏移查询
+	 * @param token		上一页返回的续页令牌({@link KeysetPageHolder#getNextToken()}),第一页传null
+	 * @param sort
+	 * @param criterias
+	 * @return
+	 */
+	<T> KeysetPageHolder<T> getPageAfter(Class<T> clazz, PageInfo pageInfo, String token, Sort sort, Criteria... criterias);
+
 	<T> int getCount(Class<T> clazz, Criteria... criterias);
 
 	<T> int getCount(Class<T> clazz, List<Criteria> criterias);
 
 	int getCount(String document, Criteria... criterias);
 
+	/**
+	 * 获取符合条件的实体数,最多数到limit为止,用于"99+"之类只关心是否超过某个数的场景
+	 * 
+	 * @param clazz
+	 * @param limit		最大计数,必须大于0
+	 * @param criterias
+	 * @return 实体数,不超过limit
+	 */
+	<T> int getCountUpTo(Class<T> clazz, int limit, Criteria... criterias);
+
+	/**
+	 * 从集合元数据读取实体总数的估计值,不执行count.非正常关闭后或分片集群中可能不准确,适合后台和统计页面
+	 * 
+	 * @param clazz
+	 * @return
+	 */
+	<T> long estimatedCount(Class<T> clazz);
+
+	/**
+	 * 根据ID集合查询实体,结果按ID集合的顺序排列
+	 * 
+	 * @param clazz
+	 * @param questionIds
+	 * @return
+	 */
 	<T> List<T> getEntitysByIds(Class<T> clazz, Collection<String> questionIds);
 
+	/**
+	 * 根据ID集合查询实体,结果按ID集合的顺序排列
+	 * 
+	 * @param clazz
+	 * @param ids
+	 * @param missingIds	不为null时收集没有查到的ID
+	 * @return
+	 */
+	<T> List<T> getEntitysByIds(Class<T> clazz, Collection<String> ids, Collection<String> missingIds);
+
 	<T> T getEntityByKeyValue(Class<T> clazz, String key, Object value);
 
 	<T> List<T> getEntitysByKeyValue(Class<T> clazz, String key, Object value);
@@ -99,6 +147,17 @@ public interface IMongoUtil {
 
 	<T> List<T> findAll(Class<T> c);
 
+	/**
+	 * 流式查询MongoDB实体,结果在迭代时逐条转换,使用完毕后必须关闭返回的迭代器
+	 * 
+	 * @param query
+	 * @param clazz
+	 * @return
+	 */
+	<T> CloseableIterator<T> streamList(Query query, Class<T> clazz);
+
+	<T> CloseableIterator<T> streamAll(Class<T> clazz);
+
 	<T> List<T> find(Query query, Class<T> clazz);
 
 	List<String> find(Query query, String collName, String fieldName);
@@ -118,6 +177,26 @@ public interface IMongoUtil {
 	String getCollectionName(Class<?> entityClass);
 
 	void insertAll(Collection<? extends Object> objectsToSave);
+
+	/**
+	 * 分块插入,某一块失败时继续插入其余分块,失败的分块在结果中返回
+	 * 
+	 * @param objectsToSave
+	 * @param conversionExecutor	转换文档的线程池,为null时在调用线程中转换
+	 * @param parallelism	提前转换的分块数
+	 * @return
+	 */
+	ChunkedInsertResult insertAllChunked(Collection<? extends Object> objectsToSave, ExecutorService conversionExecutor,
+			int parallelism);
+
+	/**
+	 * 创建批量写操作,插入、按ID更新/删除等操作合并后以尽量少的请求执行
+	 * 
+	 * @param clazz
+	 * @param mode	有序(遇错即停)或无序(出错继续)执行
+	 * @return
+	 */
+	<T> BulkOperations<T> bulkOps(Class<T> clazz, BulkOperations.Mode mode);
 	
 	/**
 	 * 获取一个子文档的方法
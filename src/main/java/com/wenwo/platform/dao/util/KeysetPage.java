@@ -0,0 +1,33 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+
+import com.wenwo.platform.paging.PagedataImpl;
+
+/**
+ * 带续页令牌的分页结果,见{@link KeysetPaging}
+ *
+ * @param <T>
+ */
+public class KeysetPage<T> extends PagedataImpl<T> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String nextToken;
+
+	public KeysetPage(List<T> content, Pageable pageable, long total, String nextToken) {
+		super(content, pageable, total);
+		this.nextToken = nextToken;
+	}
+
+	/**
+	 * 获取下一页的续页令牌,没有下一页时返回null
+	 *
+	 * @return
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+}
@@ -0,0 +1,28 @@
+package com.wenwo.platform.dao.util;
+
+import com.wenwo.platform.paging.PageHolder;
+
+/**
+ * 带续页令牌的分页结果,见{@link KeysetPaging}
+ *
+ * @param <T>
+ */
+public class KeysetPageHolder<T> extends PageHolder<T> {
+
+	private static final long serialVersionUID = 1L;
+
+	private String nextToken;
+
+	/**
+	 * 获取下一页的续页令牌,没有下一页时返回null
+	 *
+	 * @return
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+
+	public void setNextToken(String nextToken) {
+		this.nextToken = nextToken;
+	}
+}
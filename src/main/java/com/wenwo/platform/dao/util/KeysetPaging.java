@@ -0,0 +1,179 @@
+package com.wenwo.platform.dao.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+/**
+ * 基于游标位置(seek/keyset)的分页工具. 不使用skip,而是把上一页最后一条记录的排序字段值和_id编码成
+ * 续页令牌,下一页查询时据此生成范围条件,因此任意深度的分页代价都与第一页相同.
+ *
+ * 注意:排序字段的值不应为null;排序字段中没有映射到_id的字段时会自动追加_id升序作为唯一性保证.
+ */
+public final class KeysetPaging {
+
+	private static final String ID_FIELD = "_id";
+	private static final String CHARSET = "UTF-8";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private KeysetPaging() {
+	}
+
+	/**
+	 * 保证排序的唯一性:排序字段中没有映射到_id的字段时追加_id升序
+	 *
+	 * @param query
+	 * @param converter 用于把排序的属性名解析为字段名
+	 * @param entityClass 查询的实体类型
+	 */
+	public static void ensureTiebreaker(Query query, MongoConverter converter, Class<?> entityClass) {
+		DBObject sortObject = query.getSortObject();
+		if (sortObject != null) {
+			MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(entityClass);
+			WenwoQueryMapper mapper = new WenwoQueryMapper(converter);
+			for (String key : sortObject.keySet()) {
+				if (ID_FIELD.equals(mapper.getMappedKey(key, entity))) {
+					return;
+				}
+			}
+		}
+		query.with(new Sort(Direction.ASC, ID_FIELD));
+	}
+
+	/**
+	 * 根据续页令牌生成带范围条件的查询副本,原查询不做修改;令牌为空时返回原查询(即第一页).
+	 * 原查询的条件与范围条件合并为一个$and,原查询中已有的$or/$and不受影响;副本的skip为0.
+	 *
+	 * @param query 已设置好排序的查询
+	 * @param token 上一页返回的续页令牌
+	 * @return
+	 */
+	public static Query applyToken(Query query, String token) {
+		if (token == null || token.length() == 0) {
+			return query;
+		}
+		DBObject sortObject = query.getSortObject();
+		DBObject position = decode(token);
+		if (sortObject == null || !sortObject.keySet().equals(position.keySet())) {
+			throw new IllegalArgumentException("Continuation token does not match the sort of the query: " + sortObject);
+		}
+
+		List<String> keys = new ArrayList<String>(sortObject.keySet());
+		Criteria[] branches = new Criteria[keys.size()];
+		for (int i = 0; i < keys.size(); i++) {
+			Criteria branch = null;
+			for (int j = 0; j < i; j++) {
+				String key = keys.get(j);
+				branch = branch == null ? Criteria.where(key) : branch.and(key);
+				branch = branch.is(position.get(key));
+			}
+			String key = keys.get(i);
+			branch = branch == null ? Criteria.where(key) : branch.and(key);
+			boolean ascending = ((Number) sortObject.get(key)).intValue() > 0;
+			branches[i] = ascending ? branch.gt(position.get(key)) : branch.lt(position.get(key));
+		}
+
+		DBObject seek = new Criteria().orOperator(branches).getCriteriaObject();
+		DBObject queryObject = query.getQueryObject();
+		if (queryObject != null && !queryObject.keySet().isEmpty()) {
+			BasicDBList and = new BasicDBList();
+			and.add(queryObject);
+			and.add(seek);
+			seek = new BasicDBObject("$and", and);
+		}
+		// 续页的位置由范围条件决定,不再跳过记录
+		WenwoQuery seekQuery = WenwoQuery.copyOf(query, seek);
+		seekQuery.skip(0);
+		return seekQuery;
+	}
+
+	/**
+	 * 根据本页最后一条记录生成下一页的续页令牌
+	 *
+	 * @param query 本页的查询
+	 * @param converter 用于把实体转换为文档以读取排序字段值
+	 * @param last 本页最后一条记录
+	 * @return
+	 */
+	public static String nextToken(Query query, MongoConverter converter, Object last) {
+		if (last == null) {
+			return null;
+		}
+		DBObject document = new BasicDBObject();
+		converter.write(last, document);
+
+		// 排序字段是属性名,文档中是映射后的字段名
+		MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(last.getClass());
+		WenwoQueryMapper mapper = new WenwoQueryMapper(converter);
+		DBObject position = new BasicDBObject();
+		for (String key : query.getSortObject().keySet()) {
+			position.put(key, getValue(document, mapper.getMappedKey(key, entity)));
+		}
+		return encode(position);
+	}
+
+	private static Object getValue(DBObject document, String path) {
+		Object value = document;
+		for (String part : path.split("\\.")) {
+			if (!(value instanceof DBObject)) {
+				return null;
+			}
+			value = ((DBObject) value).get(part);
+		}
+		return value;
+	}
+
+	private static String encode(DBObject position) {
+		byte[] bytes;
+		try {
+			bytes = JSON.serialize(position).getBytes(CHARSET);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+	private static DBObject decode(String token) {
+		if (token.length() % 2 != 0) {
+			throw new IllegalArgumentException("Malformed continuation token: " + token);
+		}
+		byte[] bytes = new byte[token.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			int high = Character.digit(token.charAt(i * 2), 16);
+			int low = Character.digit(token.charAt(i * 2 + 1), 16);
+			if (high < 0 || low < 0) {
+				throw new IllegalArgumentException("Malformed continuation token: " + token);
+			}
+			bytes[i] = (byte) ((high << 4) | low);
+		}
+		Object parsed;
+		try {
+			parsed = JSON.parse(new String(bytes, CHARSET));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+		}
+		if (!(parsed instanceof DBObject)) {
+			throw new IllegalArgumentException("Malformed continuation token: " + token);
+		}
+		return (DBObject) parsed;
+	}
+}
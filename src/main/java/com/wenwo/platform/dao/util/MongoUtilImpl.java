@@ -1,9 +1,12 @@
 package com.wenwo.platform.dao.util;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
@@ -27,6 +30,8 @@ import com.mongodb.DBObject;
 import com.mongodb.MongoException;
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteResult;
+import com.wenwo.platform.dao.cache.EntityCache;
+import com.wenwo.platform.dao.cache.EntityCacheRegistry;
 import com.wenwo.platform.paging.PageHolder;
 import com.wenwo.platform.paging.PageInfo;
 import com.wenwo.platform.paging.PagedataImpl;
@@ -39,14 +44,31 @@ public class MongoUtilImpl implements IMongoUtil {
 
     private WenwoMongoTemplate realtimeTemplate;
 
+    private PageQueryExecutor pageQueryExecutor = PageQueryExecutor.getDefault();
+
     public void setMongoTemplate(WenwoMongoTemplate mongoTemplate) {
         this.mongoTemplate = mongoTemplate;
-        try {
-            this.realtimeTemplate = mongoTemplate.clone();
-            realtimeTemplate.setReadPreference(ReadPreference.primary());
-        } catch (CloneNotSupportedException e) {
-            LOGGER.error("Exception while cloning WenwoMongoTemplate.", e);
-        }
+        this.realtimeTemplate = mongoTemplate.withReadPreference(ReadPreference.primary());
+    }
+
+    /**
+     * 设置分页查询执行器(count与find并发执行),默认使用共享实例
+     * 
+     * @param pageQueryExecutor
+     */
+    public void setPageQueryExecutor(PageQueryExecutor pageQueryExecutor) {
+        this.pageQueryExecutor = pageQueryExecutor;
+    }
+
+    private volatile CountCache countCache;
+
+    /**
+     * 设置getCount和分页查询的总数缓存,经本类的写操作使对应集合的总数失效;为null时不缓存(默认)
+     * 
+     * @param countCache
+     */
+    public void setCountCache(CountCache countCache) {
+        this.countCache = countCache;
     }
 
     @Override
@@ -57,6 +79,7 @@ public class MongoUtilImpl implements IMongoUtil {
     @Override
     public <T> T save(T entity) {
         mongoTemplate.save(entity);
+        evictCache(entity);
         return entity;
     }
 
@@ -89,19 +112,30 @@ public class MongoUtilImpl implements IMongoUtil {
     }
 
     @Override
-    public <T> Page<T> findPage(Class<T> clazz, Query query, Pageable pageable, Sort... sort) {
+    public <T> Page<T> findPage(final Class<T> clazz, Query query, Pageable pageable, Sort... sort) {
         if (query == null) {
             query = new Query();
         }
-        Long total = mongoTemplate.count(query, clazz);
         if (sort != null) {
             for (Sort s : sort) {
                 query.with(s);
             }
         }
         query.with(pageable);
-        List<T> content = mongoTemplate.find(query, clazz);
-        return new PagedataImpl<T>(content, pageable, total.longValue());
+        final Query pageQuery = query;
+        CountCache cache = countCache;
+        PageQueryExecutor.PageResult<T> result = pageQueryExecutor.execute(cache, getCollectionName(clazz),
+                cache == null ? null : countKey(pageQuery, clazz), pageable.getOffset(), pageable.getPageSize(),
+                new Callable<Long>() {
+                    public Long call() {
+                        return mongoTemplate.count(pageQuery, clazz);
+                    }
+                }, new Callable<List<T>>() {
+                    public List<T> call() {
+                        return mongoTemplate.find(pageQuery, clazz);
+                    }
+                });
+        return new PagedataImpl<T>(result.getContent(), pageable, result.getTotal());
     }
 
     @Override
@@ -111,9 +145,9 @@ public class MongoUtilImpl implements IMongoUtil {
             for (Criteria cr : criterias) {
                 query.addCriteria(cr);
             }
-            return (int) mongoTemplate.count(query, clazz);
+            return count(query, clazz, getCollectionName(clazz));
         } else {
-            return (int) mongoTemplate.count(null, clazz);
+            return count(null, clazz, getCollectionName(clazz));
         }
     }
 
@@ -124,9 +158,9 @@ public class MongoUtilImpl implements IMongoUtil {
             for (Criteria cr : criterias) {
                 query.addCriteria(cr);
             }
-            return (int) mongoTemplate.count(query, clazz);
+            return count(query, clazz, getCollectionName(clazz));
         } else {
-            return (int) mongoTemplate.count(null, clazz);
+            return count(null, clazz, getCollectionName(clazz));
         }
     }
 
@@ -139,49 +173,102 @@ public class MongoUtilImpl implements IMongoUtil {
                     query.addCriteria(cr);
                 }
             }
-            return (int) mongoTemplate.count(query, document);
+            return count(query, null, document);
         } else {
-            return (int) mongoTemplate.count(null, document);
+            return count(null, null, document);
+        }
+    }
+
+    private int count(final Query query, final Class<?> clazz, final String collectionName) {
+        CountCache cache = countCache;
+        if (cache == null) {
+            return (int) (clazz == null ? mongoTemplate.count(query, collectionName) : mongoTemplate.count(query, clazz));
+        }
+        return (int) cache.count(collectionName, countKey(query, clazz), new Callable<Long>() {
+            public Long call() {
+                return clazz == null ? mongoTemplate.count(query, collectionName) : mongoTemplate.count(query, clazz);
+            }
+        });
+    }
+
+    /**
+     * 总数缓存的键:映射后的查询条件,同一条件的不同写法共用缓存
+     */
+    private String countKey(Query query, Class<?> clazz) {
+        return mongoTemplate.getMappedQuery(query, clazz).toString();
+    }
+
+    @Override
+    public <T> int getCountUpTo(Class<T> clazz, int limit, Criteria... criterias) {
+        Query query = new Query();
+        if (criterias != null) {
+            for (Criteria cr : criterias) {
+                query.addCriteria(cr);
+            }
         }
+        return (int) mongoTemplate.countUpTo(query, clazz, limit);
+    }
+
+    @Override
+    public <T> long estimatedCount(Class<T> clazz) {
+        return mongoTemplate.estimatedCount(clazz);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public <T> List<T> getEntitysByIds(Class<T> clazz, Collection<String> idlist) {
+        return getEntitysByIds(clazz, idlist, null);
+    }
+
+    @Override
+    public <T> List<T> getEntitysByIds(Class<T> clazz, Collection<String> idlist, Collection<String> missingIds) {
         Query query = new Query();
         query.addCriteria(Criteria.where("_id").in(idlist));
         List<T> entities = mongoTemplate.find(query, clazz);
-        List<T> sortList = new ArrayList<T>();
-        try {
-            if (entities != null) {
-                for (String id : idlist) {
-                    for (Object entity : entities) {
-                        Field field = entity.getClass().getDeclaredField("id");
-                        field.setAccessible(true);
-                        if (id.equals(field.get(entity).toString())) {
-                            sortList.add((T) entity);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.error("Exception while sort getEntitysByIds.", e);
-        }
-        return sortList;
+        return mongoTemplate.sortByIds(idlist, entities, missingIds);
     }
 
     @Override
     public <T> PageHolder<T> getPage(Class<T> clazz, PageInfo pageInfo, Sort sort, Criteria... criterias) {
-        List<T> alist = this.getPageList(clazz, pageInfo, sort, criterias);
+        List<Criteria> cs = new ArrayList<Criteria>();
+        if (criterias != null) {
+            for (Criteria cr : criterias) {
+                cs.add(cr);
+            }
+        }
+        return getPage(clazz, pageInfo, sort, cs);
+    }
 
+    @Override
+    public <T> KeysetPageHolder<T> getPageAfter(Class<T> clazz, PageInfo pageInfo, String token, Sort sort, Criteria... criterias) {
         long count = this.getCount(clazz, criterias);
 
-        PageHolder<T> page = new PageHolder<T>();
+        Query query = new Query();
+        if (criterias != null) {
+            for (Criteria cr : criterias) {
+                query.addCriteria(cr);
+            }
+        }
+        if (sort != null) {
+            query.with(sort);
+        }
+        KeysetPaging.ensureTiebreaker(query, mongoTemplate.getConverter(), clazz);
+        if (token == null) {
+            query.skip(pageInfo.getOffset());
+        } else {
+            query = KeysetPaging.applyToken(query, token);
+        }
+        query.limit(pageInfo.getPageSize());
+        List<T> alist = mongoTemplate.find(query, clazz);
+
+        KeysetPageHolder<T> page = new KeysetPageHolder<T>();
         page.setCurrentPageNum(pageInfo.getCurrentPageNum());
         page.setPageSize(pageInfo.getPageSize());
         page.setDataList(alist);
         page.setTotalCount(count);
         page.setPageCount(calculatePageCount(pageInfo.getPageSize(), count));
+        if (alist.size() >= pageInfo.getPageSize()) {
+            page.setNextToken(KeysetPaging.nextToken(query, mongoTemplate.getConverter(), alist.get(alist.size() - 1)));
+        }
 
         return page;
     }
@@ -189,13 +276,57 @@ public class MongoUtilImpl implements IMongoUtil {
     @Override
     public <T> void update(T entity) {
         mongoTemplate.update(entity);
+        evictCache(entity);
     }
 
     @Override
     public <T> T getEntityById(Class<T> clazz, String id) {
+        EntityCache<DBObject> cache = EntityCacheRegistry.getCache(clazz);
         Query query = new Query();
         query.addCriteria(Criteria.where("_id").is(id));
-        return realtimeTemplate.findOne(query, clazz);
+        if (cache == null) {
+            return realtimeTemplate.findOne(query, clazz);
+        }
+        DBObject document = cache.get(id);
+        if (document == null) {
+            long generation = cache.getGeneration(id);
+            List<DBObject> documents = realtimeTemplate.findDocuments(query, clazz);
+            if (documents.isEmpty()) {
+                return null;
+            }
+            document = documents.get(0);
+            cache.put(id, document, generation);
+        }
+        return realtimeTemplate.readEntity(document, clazz);
+    }
+
+    private void evictCache(Object entity) {
+        if (entity != null) {
+            countsChanged(entity.getClass());
+            EntityCache<DBObject> cache = EntityCacheRegistry.getCache(entity.getClass());
+            if (cache != null) {
+                cache.evict(mongoTemplate.getIdValue(entity));
+            }
+        }
+    }
+
+    private void clearCache(Class<?> clazz) {
+        countsChanged(clazz);
+        EntityCache<DBObject> cache = EntityCacheRegistry.getCache(clazz);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 写入后使集合的总数缓存失效
+     */
+    private void countsChanged(Class<?> clazz) {
+        String collectionName = getCollectionName(clazz);
+        CountCache cache = countCache;
+        if (cache != null) {
+            cache.invalidate(collectionName);
+        }
     }
 
     @Override
@@ -225,6 +356,7 @@ public class MongoUtilImpl implements IMongoUtil {
     @Override
     public <T> void remove(T entity) {
         mongoTemplate.remove(entity);
+        evictCache(entity);
 
     }
 
@@ -233,6 +365,16 @@ public class MongoUtilImpl implements IMongoUtil {
         return mongoTemplate.findAll(c);
     }
 
+    @Override
+    public <T> CloseableIterator<T> streamList(Query query, Class<T> clazz) {
+        return mongoTemplate.stream(query, clazz);
+    }
+
+    @Override
+    public <T> CloseableIterator<T> streamAll(Class<T> clazz) {
+        return mongoTemplate.streamAll(clazz);
+    }
+
     private Query toQuery(Sort sort, int limit, Criteria... criterias) {
         Query query = null;
         if (criterias != null) {
@@ -270,15 +412,31 @@ public class MongoUtilImpl implements IMongoUtil {
     }
 
     @Override
-    public <T> PageHolder<T> getPage(Class<T> clazz, PageInfo pageInfo, Sort sort, List<Criteria> cs) {
-        List<T> alist = this.getPageList(clazz, pageInfo, cs, sort);
-
-        long count = this.getCount(clazz, cs);
+    public <T> PageHolder<T> getPage(final Class<T> clazz, final PageInfo pageInfo, final Sort sort, final List<Criteria> cs) {
+        final Query countQuery = new Query();
+        if (cs != null) {
+            for (Criteria cr : cs) {
+                countQuery.addCriteria(cr);
+            }
+        }
+        CountCache cache = countCache;
+        PageQueryExecutor.PageResult<T> result = pageQueryExecutor.execute(cache, getCollectionName(clazz),
+                cache == null ? null : countKey(countQuery, clazz), pageInfo.getOffset(), pageInfo.getPageSize(),
+                new Callable<Long>() {
+                    public Long call() {
+                        return mongoTemplate.count(countQuery, clazz);
+                    }
+                }, new Callable<List<T>>() {
+                    public List<T> call() {
+                        return getPageList(clazz, pageInfo, cs, sort);
+                    }
+                });
+        long count = result.getTotal();
 
         PageHolder<T> page = new PageHolder<T>();
         page.setCurrentPageNum(pageInfo.getCurrentPageNum());
         page.setPageSize(pageInfo.getPageSize());
-        page.setDataList(alist);
+        page.setDataList(result.getContent());
         page.setTotalCount(count);
         page.setPageCount(calculatePageCount(pageInfo.getPageSize(), count));
 
@@ -303,12 +461,14 @@ public class MongoUtilImpl implements IMongoUtil {
     @Override
     public <T> int updateMulti(Query query, Update update, Class<T> clazz) {
         WriteResult wr = mongoTemplate.updateMulti(query, update, clazz);
+        clearCache(clazz);
         return wr.getN();
     }
 
     @Override
     public <T> int updateFirst(Query query, Update update, Class<T> clazz) {
         WriteResult wr = mongoTemplate.updateFirst(query, update, clazz);
+        clearCache(clazz);
         return wr.getN();
     }
 
@@ -323,7 +483,7 @@ public class MongoUtilImpl implements IMongoUtil {
         if (mongoTemplate.collectionExists(collectionName)) {
             DBObject keys = new BasicDBObject(fieldName, 1);
             DBObject queryObj = query.getQueryObject();
-            DBCursor cursor = mongoTemplate.getCollection(collectionName).find(queryObj, keys);
+            DBCursor cursor = withReadPreference(mongoTemplate.getCollection(collectionName).find(queryObj, keys));
             if (query.getSortObject() != null) {
                 cursor.sort(query.getSortObject());
             }
@@ -343,7 +503,8 @@ public class MongoUtilImpl implements IMongoUtil {
         List<String> userList = new ArrayList<String>();
         if (mongoTemplate.collectionExists(collectionName)) {
             DBObject keys = new BasicDBObject("_id", 1);
-            DBCursor cursor = mongoTemplate.getCollection(collectionName).find(query.getQueryObject(), keys);
+            DBCursor cursor = withReadPreference(mongoTemplate.getCollection(collectionName).find(
+                    query.getQueryObject(), keys));
             while (cursor.hasNext()) {
                 Object id = cursor.next().get("_id");
                 if (id == null) {
@@ -356,6 +517,17 @@ public class MongoUtilImpl implements IMongoUtil {
         return userList;
     }
 
+    /**
+     * 直接读取集合的游标使用模板的读偏好,与经模板的查询一致
+     */
+    private DBCursor withReadPreference(DBCursor cursor) {
+        ReadPreference readPreference = mongoTemplate.getReadPreference();
+        if (readPreference != null) {
+            cursor.setReadPreference(readPreference);
+        }
+        return cursor;
+    }
+
     @Override
     public <T> GroupByResults<T> group(String inputCollectionName, GroupBy groupBy, Class<T> entityClass) {
         return mongoTemplate.group(inputCollectionName, groupBy, entityClass);
@@ -374,7 +546,33 @@ public class MongoUtilImpl implements IMongoUtil {
     @Override
     public void insertAll(Collection<? extends Object> objectsToSave) {
         mongoTemplate.insertAll(objectsToSave);
+        Set<Class<?>> classes = new HashSet<Class<?>>();
+        for (Object entity : objectsToSave) {
+            if (classes.add(entity.getClass())) {
+                countsChanged(entity.getClass());
+            }
+        }
+
+    }
 
+    @Override
+    public ChunkedInsertResult insertAllChunked(Collection<? extends Object> objectsToSave,
+            ExecutorService conversionExecutor, int parallelism) {
+        ChunkedInsertResult result = mongoTemplate.insertAllChunked(objectsToSave, conversionExecutor, parallelism);
+        for (Object entity : objectsToSave) {
+            evictCache(entity);
+        }
+        return result;
+    }
+
+    @Override
+    public <T> BulkOperations<T> bulkOps(final Class<T> clazz, BulkOperations.Mode mode) {
+        return new BulkOperations<T>(mongoTemplate, clazz, mode) {
+            @Override
+            protected void afterExecute(BulkResult result) {
+                clearCache(clazz);
+            }
+        };
     }
 
     public <T> T getSubEntityById(String id, String collectionName, final String subDocumentName, final Class<T> clazz) {
@@ -416,6 +614,7 @@ public class MongoUtilImpl implements IMongoUtil {
 			String subDocumentName, T entity) {
 		mongoTemplate.saveSubEntityById(id, collectionName, subDocumentName,
 				entity);
+		EntityCacheRegistry.evictFromAll(id);
 	}
 
     @Override
@@ -430,6 +629,7 @@ public class MongoUtilImpl implements IMongoUtil {
     @Override
     public <T> void findAndRemove(Query query, Class<T> clazz) {
         mongoTemplate.remove(query, clazz);
+        clearCache(clazz);
     }
 
     @Override
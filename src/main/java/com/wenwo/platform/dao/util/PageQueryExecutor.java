@@ -0,0 +1,212 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * 分页查询执行器:总数(count)与当前页数据(find)并发执行.
+ * <ul>
+ * <li>count在专用线程池中执行,find在调用线程中执行,
+ * 提交线程通过{@link ReadYourWritesTracker#bindContext(Object)}绑定的调用方上下文会带到count的执行线程;</li>
+ * <li>当前页不满一页时即为最后一页,总数直接由偏移量+本页条数得出,不再等待count;</li>
+ * <li>传入{@link CountCache}时,缓存中有效的总数直接复用,不再执行count,算出的总数也放入该缓存.
+ * 与DAO的getCount使用同一个缓存,写操作使其失效.</li>
+ * </ul>
+ */
+public class PageQueryExecutor {
+
+	private static final int DEFAULT_POOL_SIZE = 16;
+	private static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	private static volatile PageQueryExecutor defaultInstance;
+
+	private final ExecutorService executor;
+
+	public PageQueryExecutor() {
+		this(createDefaultExecutor());
+	}
+
+	public PageQueryExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * 所有未单独配置的DAO共享的实例
+	 *
+	 * @return
+	 */
+	public static PageQueryExecutor getDefault() {
+		if (defaultInstance == null) {
+			synchronized (PageQueryExecutor.class) {
+				if (defaultInstance == null) {
+					defaultInstance = new PageQueryExecutor();
+				}
+			}
+		}
+		return defaultInstance;
+	}
+
+	/**
+	 * 执行分页查询,不缓存总数
+	 *
+	 * @param offset 当前页的偏移量
+	 * @param pageSize 每页条数
+	 * @param count 查询总数
+	 * @param fetch 查询当前页数据
+	 * @return
+	 */
+	public <T> PageResult<T> execute(int offset, int pageSize, Callable<Long> count, Callable<List<T>> fetch) {
+		return execute(null, null, null, offset, pageSize, count, fetch);
+	}
+
+	/**
+	 * 执行分页查询
+	 *
+	 * @param countCache 总数缓存,为null时不缓存
+	 * @param collectionName 集合名,总数缓存按集合失效
+	 * @param cacheKey 总数缓存的键(映射后的查询条件)
+	 * @param offset 当前页的偏移量
+	 * @param pageSize 每页条数
+	 * @param count 查询总数,不应再经过总数缓存
+	 * @param fetch 查询当前页数据
+	 * @return
+	 */
+	public <T> PageResult<T> execute(CountCache countCache, String collectionName, String cacheKey, int offset,
+			int pageSize, Callable<Long> count, Callable<List<T>> fetch) {
+
+		if (countCache != null) {
+			Long cached = countCache.get(collectionName, cacheKey);
+			if (cached != null) {
+				return new PageResult<T>(call(fetch), cached.longValue());
+			}
+		}
+
+		long generation = countCache == null ? 0 : countCache.getGeneration(collectionName);
+
+		Future<Long> countFuture = executor.submit(withContext(count));
+		List<T> content;
+		try {
+			content = call(fetch);
+		} catch (RuntimeException e) {
+			countFuture.cancel(false);
+			throw e;
+		}
+
+		long total;
+		if (content.size() < pageSize && (!content.isEmpty() || offset == 0)) {
+			// 不满一页,即为最后一页
+			countFuture.cancel(false);
+			total = offset + content.size();
+		} else {
+			total = get(countFuture).longValue();
+		}
+
+		if (countCache != null) {
+			countCache.put(collectionName, cacheKey, total, generation);
+		}
+		return new PageResult<T>(content, total);
+	}
+
+	/**
+	 * 在执行线程中使用提交线程的调用方上下文
+	 */
+	private static <V> Callable<V> withContext(final Callable<V> task) {
+		final AsyncExecutor.ContextPropagator propagator = ReadYourWritesTracker.CONTEXT_PROPAGATOR;
+		final Object captured = propagator.capture();
+		return new Callable<V>() {
+			public V call() throws Exception {
+				Object previous = propagator.apply(captured);
+				try {
+					return task.call();
+				} finally {
+					propagator.restore(previous);
+				}
+			}
+		};
+	}
+
+	private static <V> V call(Callable<V> callable) {
+		try {
+			return callable.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DataAccessResourceFailureException(e.getMessage(), e);
+		}
+	}
+
+	private static <V> V get(Future<V> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException("Interrupted while waiting for count", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new DataAccessResourceFailureException(cause.getMessage(), cause);
+		}
+	}
+
+	private static ExecutorService createDefaultExecutor() {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(DEFAULT_QUEUE_SIZE), new DaemonThreadFactory("wenwo-mongo-page-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * 分页查询结果
+	 *
+	 * @param <T>
+	 */
+	public static class PageResult<T> {
+		private final List<T> content;
+		private final long total;
+
+		public PageResult(List<T> content, long total) {
+			this.content = content;
+			this.total = total;
+		}
+
+		public List<T> getContent() {
+			return content;
+		}
+
+		public long getTotal() {
+			return total;
+		}
+	}
+
+	static class DaemonThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.WenwoMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * 预编译的参数化查询. 查询的结构(字段、操作符、排序、条数)只在创建时按实体映射一次,
+ * 执行时只把参数值按目标属性转换后填入已映射好的查询骨架,不再对整个查询做映射.
+ *
+ * <pre>
+ * PreparedQuery&lt;Question&gt; byUser = PreparedQuery.builder(template, Question.class)
+ * 		.eq(&quot;userId&quot;).in(&quot;status&quot;).sort(new Sort(Direction.DESC, &quot;createTime&quot;)).limit(20).build();
+ * List&lt;Question&gt; list = byUser.find(userId, statuses);
+ * </pre>
+ *
+ * 参数按声明顺序传入;IN/NIN参数传集合或数组. 实例创建后不可变,可在多个线程间共享.
+ *
+ * @param <T>
+ */
+public class PreparedQuery<T> {
+
+	public enum Operator {
+		EQ(null), NE("$ne"), GT("$gt"), GTE("$gte"), LT("$lt"), LTE("$lte"), IN("$in"), NIN("$nin");
+
+		private final String keyword;
+
+		private Operator(String keyword) {
+			this.keyword = keyword;
+		}
+	}
+
+	private final WenwoMongoTemplate template;
+	private final Class<T> entityClass;
+	private final String collectionName;
+	private final DBObject skeleton;
+	private final List<Parameter> parameters;
+	private final Query options;
+	private final Query oneOptions;
+
+	private PreparedQuery(Builder<T> builder) {
+		this.template = builder.template;
+		this.entityClass = builder.entityClass;
+		this.collectionName = builder.collectionName;
+
+		MongoPersistentEntity<?> entity = template.getConverter().getMappingContext().getPersistentEntity(entityClass);
+		WenwoQueryMapper mapper = template.getQueryMapper();
+
+		this.skeleton = mapper.getMappedObject(builder.constants.getQueryObject(), entity);
+		this.parameters = new ArrayList<Parameter>(builder.parameters.size());
+		for (Object[] declared : builder.parameters) {
+			String key = (String) declared[0];
+			parameters.add(new Parameter(mapper.getMappedKey(key, entity), mapper.getMappedProperty(key, entity),
+					(Operator) declared[1]));
+		}
+
+		this.options = new Query();
+		this.oneOptions = new Query().limit(1);
+		for (Query query : new Query[] { options, oneOptions }) {
+			if (builder.sort != null) {
+				query.with(builder.sort);
+			}
+			for (String field : builder.fields) {
+				query.fields().include(field);
+			}
+		}
+		if (builder.limit > 0) {
+			options.limit(builder.limit);
+		}
+	}
+
+	/**
+	 * 创建查询,集合名由实体类决定
+	 *
+	 * @param template
+	 * @param entityClass
+	 * @return
+	 */
+	public static <T> Builder<T> builder(WenwoMongoTemplate template, Class<T> entityClass) {
+		return new Builder<T>(template, entityClass, template.getCollectionName(entityClass));
+	}
+
+	public static <T> Builder<T> builder(WenwoMongoTemplate template, Class<T> entityClass, String collectionName) {
+		return new Builder<T>(template, entityClass, collectionName);
+	}
+
+	public List<T> find(Object... values) {
+		return template.findMapped(bind(values), options, entityClass, collectionName);
+	}
+
+	public T findOne(Object... values) {
+		if (oneOptions.getSortObject() == null) {
+			return template.findOneMapped(bind(values), oneOptions.getFieldsObject(), entityClass, collectionName);
+		}
+		List<T> result = template.findMapped(bind(values), oneOptions, entityClass, collectionName);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	public long count(Object... values) {
+		return template.countMapped(bind(values), collectionName);
+	}
+
+	/**
+	 * 参数个数
+	 *
+	 * @return
+	 */
+	public int getParameterCount() {
+		return parameters.size();
+	}
+
+	/**
+	 * 把参数填入查询骨架
+	 *
+	 * @param values
+	 * @return 已映射的查询
+	 */
+	public DBObject bind(Object... values) {
+		if (values.length != parameters.size()) {
+			throw new IllegalArgumentException("Expected " + parameters.size() + " parameters but got "
+					+ values.length);
+		}
+
+		WenwoQueryMapper mapper = template.getQueryMapper();
+		DBObject query = new BasicDBObject(skeleton.toMap());
+		for (int i = 0; i < values.length; i++) {
+			Parameter parameter = parameters.get(i);
+			Object mapped = parameter.map(mapper, values[i]);
+			if (parameter.operator == Operator.EQ) {
+				query.put(parameter.key, mapped);
+				continue;
+			}
+			Object existing = query.get(parameter.key);
+			DBObject condition = existing instanceof DBObject ? new BasicDBObject(((DBObject) existing).toMap())
+					: new BasicDBObject();
+			condition.put(parameter.operator.keyword, mapped);
+			query.put(parameter.key, condition);
+		}
+		return query;
+	}
+
+	/**
+	 * 已映射的参数位置:目标字段、属性和操作符
+	 */
+	private static class Parameter {
+		private final String key;
+		private final MongoPersistentProperty property;
+		private final Operator operator;
+
+		Parameter(String key, MongoPersistentProperty property, Operator operator) {
+			this.key = key;
+			this.property = property;
+			this.operator = operator;
+		}
+
+		Object map(WenwoQueryMapper mapper, Object value) {
+			if (operator != Operator.IN && operator != Operator.NIN) {
+				return mapper.getMappedValue(value, property, key);
+			}
+			BasicDBList list = new BasicDBList();
+			if (value instanceof Object[]) {
+				for (Object element : (Object[]) value) {
+					list.add(mapper.getMappedValue(element, property, key));
+				}
+			} else if (value instanceof Collection) {
+				for (Object element : (Collection<?>) value) {
+					list.add(mapper.getMappedValue(element, property, key));
+				}
+			} else {
+				throw new IllegalArgumentException("Parameter for " + key + " must be a collection or an array");
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * 声明查询结构
+	 *
+	 * @param <T>
+	 */
+	public static class Builder<T> {
+		private final WenwoMongoTemplate template;
+		private final Class<T> entityClass;
+		private final String collectionName;
+		private final Query constants = new Query();
+		private final List<Object[]> parameters = new ArrayList<Object[]>();
+		private final List<String> fields = new ArrayList<String>();
+		private Sort sort;
+		private int limit;
+
+		private Builder(WenwoMongoTemplate template, Class<T> entityClass, String collectionName) {
+			this.template = template;
+			this.entityClass = entityClass;
+			this.collectionName = collectionName;
+		}
+
+		/**
+		 * 固定不变的条件,与参数条件使用不同的字段
+		 *
+		 * @param criteria
+		 * @return
+		 */
+		public Builder<T> constant(Criteria criteria) {
+			constants.addCriteria(criteria);
+			return this;
+		}
+
+		public Builder<T> param(String key, Operator operator) {
+			parameters.add(new Object[] { key, operator });
+			return this;
+		}
+
+		public Builder<T> eq(String key) {
+			return param(key, Operator.EQ);
+		}
+
+		public Builder<T> ne(String key) {
+			return param(key, Operator.NE);
+		}
+
+		public Builder<T> gt(String key) {
+			return param(key, Operator.GT);
+		}
+
+		public Builder<T> gte(String key) {
+			return param(key, Operator.GTE);
+		}
+
+		public Builder<T> lt(String key) {
+			return param(key, Operator.LT);
+		}
+
+		public Builder<T> lte(String key) {
+			return param(key, Operator.LTE);
+		}
+
+		public Builder<T> in(String key) {
+			return param(key, Operator.IN);
+		}
+
+		public Builder<T> nin(String key) {
+			return param(key, Operator.NIN);
+		}
+
+		public Builder<T> sort(Sort sort) {
+			this.sort = this.sort == null ? sort : this.sort.and(sort);
+			return this;
+		}
+
+		public Builder<T> limit(int limit) {
+			this.limit = limit;
+			return this;
+		}
+
+		/**
+		 * 只返回指定的字段
+		 *
+		 * @param fields
+		 * @return
+		 */
+		public Builder<T> include(String... fields) {
+			for (String field : fields) {
+				this.fields.add(field);
+			}
+			return this;
+		}
+
+		public PreparedQuery<T> build() {
+			return new PreparedQuery<T>(this);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+/**
+ * 字段投影工具:按DTO类型的映射属性生成查询的返回字段,只读取并转换DTO需要的字段.
+ * DTO的属性按属性名对应到实体的属性,返回字段使用实体中映射后的字段名.
+ */
+public final class Projections {
+
+	private Projections() {
+	}
+
+	/**
+	 * 投影需要的字段
+	 *
+	 * @param converter
+	 * @param entityClass 查询的实体类型
+	 * @param projectionType 投影类型
+	 * @return 实体中存储的字段名 -> 投影类型读取的字段名,按投影类型的属性顺序;投影类型不是映射类型时为空
+	 */
+	public static Map<String, String> fieldNames(MongoConverter converter, Class<?> entityClass, Class<?> projectionType) {
+		MongoPersistentEntity<?> projection = converter.getMappingContext().getPersistentEntity(projectionType);
+		if (projection == null) {
+			return Collections.emptyMap();
+		}
+		final MongoPersistentEntity<?> entity = converter.getMappingContext().getPersistentEntity(entityClass);
+		final Map<String, String> fields = new LinkedHashMap<String, String>();
+		projection.doWithProperties(new PropertyHandler<MongoPersistentProperty>() {
+			public void doWithPersistentProperty(MongoPersistentProperty property) {
+				MongoPersistentProperty stored = entity == null ? null : entity.getPersistentProperty(property.getName());
+				fields.put(stored == null ? property.getFieldName() : stored.getFieldName(), property.getFieldName());
+			}
+		});
+		return fields;
+	}
+}
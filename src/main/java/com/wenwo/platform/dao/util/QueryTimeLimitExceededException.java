@@ -0,0 +1,20 @@
+package com.wenwo.platform.dao.util;
+
+import org.springframework.dao.QueryTimeoutException;
+
+/**
+ * 查询超过了{@link WenwoQuery#maxTime(long, java.util.concurrent.TimeUnit)}设置的服务端执行时间,被服务端中止
+ */
+public class QueryTimeLimitExceededException extends QueryTimeoutException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 服务端表示超过执行时间的错误码
+	 */
+	public static final int ERROR_CODE = 50;
+
+	public QueryTimeLimitExceededException(String msg, Throwable cause) {
+		super(msg, cause);
+	}
+}
@@ -0,0 +1,230 @@
+package com.wenwo.platform.dao.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 读己之写的路由依据:记录经DAO发出的写操作时间,在时间窗口内读过写过的数据时走主库,否则可以读从库.
+ * 写操作按三种范围记录:
+ * <ul>
+ * <li>实体:按ID写入的实体,之后按该ID读取时在窗口内走主库;</li>
+ * <li>调用方上下文:线程通过{@link #bindContext(Object)}绑定的标识(如用户ID),
+ * 该标识下有过写操作时,同一标识的所有读取在窗口内走主库;</li>
+ * <li>整个集合:按条件更新/删除等无法确定ID的写操作,之后所有读取在窗口内走主库.</li>
+ * </ul>
+ * 窗口应大于从库的正常复制延迟. 通过{@link #register(String)}注册为JMX MBean后可查看路由计数.
+ */
+public class ReadYourWritesTracker implements ReadYourWritesTrackerMBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReadYourWritesTracker.class);
+	private static final int DEFAULT_MAX_ENTRIES = 100000;
+	private static final ThreadLocal<Object> CONTEXT = new ThreadLocal<Object>();
+
+	private final Map<Object, Long> entityWrites = new ConcurrentHashMap<Object, Long>();
+	private final Map<Object, Long> contextWrites = new ConcurrentHashMap<Object, Long>();
+	private final AtomicLong primaryReads = new AtomicLong();
+	private final AtomicLong secondaryReads = new AtomicLong();
+
+	private volatile long windowMillis;
+	private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+	private volatile long collectionWriteAt;
+
+	/**
+	 * @param windowMillis 写后走主库的时间窗口(毫秒)
+	 */
+	public ReadYourWritesTracker(long windowMillis) {
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("windowMillis must be positive");
+		}
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * 为当前线程绑定调用方上下文,之后的读写按该上下文记录,直到{@link #unbindContext()}
+	 *
+	 * @param context 调用方标识,如用户ID或会话ID
+	 */
+	public static void bindContext(Object context) {
+		CONTEXT.set(context);
+	}
+
+	public static void unbindContext() {
+		CONTEXT.remove();
+	}
+
+	/**
+	 * 把提交线程绑定的调用方上下文带到执行线程的传递器,{@link AsyncExecutor}默认使用
+	 */
+	public static final AsyncExecutor.ContextPropagator CONTEXT_PROPAGATOR = new AsyncExecutor.ContextPropagator() {
+
+		public Object capture() {
+			return CONTEXT.get();
+		}
+
+		public Object apply(Object captured) {
+			Object previous = CONTEXT.get();
+			bindOrUnbind(captured);
+			return previous;
+		}
+
+		public void restore(Object previous) {
+			bindOrUnbind(previous);
+		}
+
+		private void bindOrUnbind(Object context) {
+			if (context == null) {
+				CONTEXT.remove();
+			} else {
+				CONTEXT.set(context);
+			}
+		}
+	};
+
+	/**
+	 * 注册为MBean:com.wenwo.platform.dao:type=ReadYourWritesTracker,name=..
+	 *
+	 * @param name
+	 */
+	public void register(String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("com.wenwo.platform.dao:type=ReadYourWritesTracker,name="
+					+ ObjectName.quote(name));
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(this, objectName);
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Exception while registering read-your-writes tracker MBean " + name, e);
+		}
+	}
+
+	/**
+	 * 记录一次按ID的写操作
+	 *
+	 * @param id 为null时按整个集合记录
+	 */
+	public void entityWritten(Object id) {
+		if (id == null) {
+			collectionWritten();
+			return;
+		}
+		long now = System.currentTimeMillis();
+		put(entityWrites, id.toString(), now);
+		contextWritten(now);
+	}
+
+	/**
+	 * 记录一次无法确定ID的写操作
+	 */
+	public void collectionWritten() {
+		long now = System.currentTimeMillis();
+		collectionWriteAt = now;
+		contextWritten(now);
+	}
+
+	/**
+	 * 按ID读取时是否必须走主库,同时计入路由计数
+	 *
+	 * @param id 为null时只检查调用方上下文和整个集合
+	 * @return
+	 */
+	public boolean routeToPrimary(Object id) {
+		long since = System.currentTimeMillis() - windowMillis;
+		boolean primary = collectionWriteAt > since || isRecent(contextWrites, CONTEXT.get(), since)
+				|| (id != null && isRecent(entityWrites, id.toString(), since));
+		(primary ? primaryReads : secondaryReads).incrementAndGet();
+		return primary;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public void setWindowMillis(long windowMillis) {
+		if (windowMillis <= 0) {
+			throw new IllegalArgumentException("windowMillis must be positive");
+		}
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * 实体和上下文各自最多记录的条目数,超过时先清理过期条目,仍超过则全部清空
+	 *
+	 * @param maxEntries
+	 */
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public long getPrimaryReads() {
+		return primaryReads.get();
+	}
+
+	public long getSecondaryReads() {
+		return secondaryReads.get();
+	}
+
+	public int getTrackedEntities() {
+		return entityWrites.size();
+	}
+
+	public int getTrackedContexts() {
+		return contextWrites.size();
+	}
+
+	public void resetCounters() {
+		primaryReads.set(0);
+		secondaryReads.set(0);
+	}
+
+	private void contextWritten(long now) {
+		Object context = CONTEXT.get();
+		if (context != null) {
+			put(contextWrites, context, now);
+		}
+	}
+
+	private void put(Map<Object, Long> writes, Object key, long now) {
+		if (writes.size() >= maxEntries && !writes.containsKey(key)) {
+			evictExpired(writes, now - windowMillis);
+			if (writes.size() >= maxEntries) {
+				// 清空后最坏情况是窗口内的少量读取走从库,集合级别的记录不受影响
+				writes.clear();
+			}
+		}
+		writes.put(key, Long.valueOf(now));
+	}
+
+	private static boolean isRecent(Map<Object, Long> writes, Object key, long since) {
+		if (key == null) {
+			return false;
+		}
+		Long writeAt = writes.get(key);
+		if (writeAt == null) {
+			return false;
+		}
+		if (writeAt.longValue() <= since) {
+			writes.remove(key);
+			return false;
+		}
+		return true;
+	}
+
+	private static void evictExpired(Map<Object, Long> writes, long since) {
+		Iterator<Long> it = writes.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().longValue() <= since) {
+				it.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.wenwo.platform.dao.util;
+
+/**
+ * 读己之写路由的JMX接口
+ */
+public interface ReadYourWritesTrackerMBean {
+
+	long getWindowMillis();
+
+	void setWindowMillis(long windowMillis);
+
+	/**
+	 * 因窗口内有写操作而走主库的读取次数
+	 */
+	long getPrimaryReads();
+
+	/**
+	 * 走从库的读取次数
+	 */
+	long getSecondaryReads();
+
+	int getTrackedEntities();
+
+	int getTrackedContexts();
+
+	void resetCounters();
+}
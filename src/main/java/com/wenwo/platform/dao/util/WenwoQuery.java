@@ -0,0 +1,202 @@
+package com.wenwo.platform.dao.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * 带游标执行选项的查询:每批返回条数、服务端最长执行时间、游标不超时和注释标签.
+ * 选项由模板的QueryCursorPreparer应用到游标上,普通{@link Query}的用法不变.
+ * <ul>
+ * <li>maxTime依赖服务端的$maxTimeMS(MongoDB 2.6及以上),超时时抛出{@link QueryTimeLimitExceededException};</li>
+ * <li>noCursorTimeout的游标不会被服务端回收,必须读完或关闭,只用于长时间的批量扫描;</li>
+ * <li>comment会出现在服务端的慢查询日志和currentOp中,便于定位调用方.</li>
+ * </ul>
+ */
+public class WenwoQuery extends Query {
+
+	private int batchSize;
+	private long maxTimeMillis;
+	private boolean noCursorTimeout;
+	private String comment;
+
+	public WenwoQuery() {
+	}
+
+	public WenwoQuery(Criteria criteria) {
+		super(criteria);
+	}
+
+	public static WenwoQuery query(Criteria criteria) {
+		return new WenwoQuery(criteria);
+	}
+
+	/**
+	 * 每批从服务端取回的文档数,小于等于0时使用服务端默认值
+	 *
+	 * @param batchSize
+	 * @return
+	 */
+	public WenwoQuery batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * 服务端最长执行时间,小于等于0时不限制
+	 *
+	 * @param maxTime
+	 * @param unit
+	 * @return
+	 */
+	public WenwoQuery maxTime(long maxTime, TimeUnit unit) {
+		this.maxTimeMillis = unit.toMillis(maxTime);
+		return this;
+	}
+
+	/**
+	 * 游标空闲时不被服务端回收
+	 *
+	 * @return
+	 */
+	public WenwoQuery noCursorTimeout() {
+		this.noCursorTimeout = true;
+		return this;
+	}
+
+	/**
+	 * 附加在查询上的注释标签
+	 *
+	 * @param comment
+	 * @return
+	 */
+	public WenwoQuery comment(String comment) {
+		this.comment = comment;
+		return this;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getMaxTimeMillis() {
+		return maxTimeMillis;
+	}
+
+	public boolean isNoCursorTimeout() {
+		return noCursorTimeout;
+	}
+
+	public String getComment() {
+		return comment;
+	}
+
+	/**
+	 * 是否设置了任一执行选项
+	 *
+	 * @return
+	 */
+	public boolean hasCursorOptions() {
+		return batchSize > 0 || maxTimeMillis > 0 || noCursorTimeout || comment != null;
+	}
+
+	/**
+	 * 给定的查询是否带有执行选项
+	 *
+	 * @param query 可以为null
+	 * @return
+	 */
+	public static boolean hasCursorOptions(Query query) {
+		return query instanceof WenwoQuery && ((WenwoQuery) query).hasCursorOptions();
+	}
+
+	/**
+	 * 复制查询的条件、返回字段、排序、skip、limit、hint和执行选项,之后对副本的修改不影响原查询
+	 *
+	 * @param query
+	 * @return
+	 */
+	public static WenwoQuery copyOf(Query query) {
+		return copyOf(query, query.getQueryObject());
+	}
+
+	/**
+	 * 同{@link #copyOf(Query)},查询条件替换为给定的条件
+	 *
+	 * @param query
+	 * @param queryObject 副本的查询条件
+	 * @return
+	 */
+	public static WenwoQuery copyOf(Query query, DBObject queryObject) {
+		WenwoQuery copy = new CopiedQuery(queryObject, query.getFieldsObject(), query.getSortObject());
+		copy.skip(query.getSkip());
+		copy.limit(query.getLimit());
+		if (query.getHint() != null) {
+			copy.withHint(query.getHint());
+		}
+		if (query instanceof WenwoQuery) {
+			WenwoQuery options = (WenwoQuery) query;
+			copy.batchSize = options.batchSize;
+			copy.maxTimeMillis = options.maxTimeMillis;
+			copy.noCursorTimeout = options.noCursorTimeout;
+			copy.comment = options.comment;
+		}
+		return copy;
+	}
+
+	/**
+	 * 复制得到的查询:复制时的条件、返回字段和排序在前,之后追加的在后
+	 */
+	private static class CopiedQuery extends WenwoQuery {
+
+		private final DBObject queryObject;
+		private final DBObject fieldsObject;
+		private final DBObject sortObject;
+
+		CopiedQuery(DBObject queryObject, DBObject fieldsObject, DBObject sortObject) {
+			this.queryObject = copy(queryObject);
+			this.fieldsObject = copy(fieldsObject);
+			this.sortObject = copy(sortObject);
+		}
+
+		@Override
+		public DBObject getQueryObject() {
+			return merge(queryObject, super.getQueryObject());
+		}
+
+		@Override
+		public DBObject getFieldsObject() {
+			return merge(fieldsObject, super.getFieldsObject());
+		}
+
+		@Override
+		public DBObject getSortObject() {
+			return merge(sortObject, super.getSortObject());
+		}
+
+		private static DBObject copy(DBObject source) {
+			if (source == null) {
+				return null;
+			}
+			DBObject copy = new BasicDBObject();
+			copy.putAll(source);
+			return copy;
+		}
+
+		private static DBObject merge(DBObject copied, DBObject added) {
+			if (added == null || added.keySet().isEmpty()) {
+				return copy(copied);
+			}
+			DBObject result = new BasicDBObject();
+			if (copied != null) {
+				result.putAll(copied);
+			}
+			result.putAll(added);
+			return result;
+		}
+	}
+}
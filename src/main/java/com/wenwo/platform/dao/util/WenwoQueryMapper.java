@@ -18,6 +18,8 @@ package com.wenwo.platform.dao.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bson.types.ObjectId;
 import org.springframework.core.convert.ConversionException;
@@ -52,10 +54,13 @@ public class WenwoQueryMapper extends QueryMapper{
 	public static final Object QUESTIONS_COLLECTION = "questions";
 	private static final List<String> DEFAULT_ID_NAMES = Arrays.asList("id", "_id");
 	private static final String N_OR_PATTERN = "\\$.*or";
+	private static final int DEFAULT_PATH_CACHE_SIZE = 10000;
 
 	private final ConversionService conversionService;
 	private final MongoConverter converter;
 	private final MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext;
+	private final Map<PathKey, ResolvedPath> pathCache = new ConcurrentHashMap<PathKey, ResolvedPath>();
+	private volatile int pathCacheSize = DEFAULT_PATH_CACHE_SIZE;
 
 	/**
 	 * Creates a new {@link WenwiQueryMapper} with the given {@link MongoConverter}.
@@ -71,6 +76,23 @@ public class WenwoQueryMapper extends QueryMapper{
 		this.mappingContext = converter.getMappingContext();
 	}
 
+	/**
+	 * Sets the maximum number of resolved property paths kept per mapper. The cache is cleared once it is full so that
+	 * dynamic keys cannot grow it without bounds.
+	 * 
+	 * @param pathCacheSize
+	 */
+	public void setPathCacheSize(int pathCacheSize) {
+		this.pathCacheSize = pathCacheSize;
+	}
+
+	/**
+	 * Clears the resolved property paths.
+	 */
+	public void clearPathCache() {
+		pathCache.clear();
+	}
+
 	/**
 	 * Replaces the property keys used in the given {@link DBObject} with the appropriate keys by using the
 	 * {@link PersistentEntity} metadata.
@@ -140,6 +162,29 @@ public class WenwoQueryMapper extends QueryMapper{
 		return new BasicDBObject(keyword.key, getMappedValue(keyword.value, property, keyword.key));
 	}
 
+	/**
+	 * Returns the field path the given key is mapped to, see {@link #getMappedValue(Object, MongoPersistentProperty, String)}
+	 * for mapping values bound to it.
+	 * 
+	 * @param key
+	 * @param entity can be {@literal null}.
+	 * @return
+	 */
+	public String getMappedKey(String key, MongoPersistentEntity<?> entity) {
+		return determineKey(key, entity);
+	}
+
+	/**
+	 * Returns the property the given key refers to or {@literal null} if it is not a mapped property.
+	 * 
+	 * @param key
+	 * @param entity can be {@literal null}.
+	 * @return
+	 */
+	public MongoPersistentProperty getMappedProperty(String key, MongoPersistentEntity<?> entity) {
+		return getTargetProperty(key, entity);
+	}
+
 	/**
 	 * Returns the mapped value for the given source object assuming it's a value for the given
 	 * {@link MongoPersistentProperty}.
@@ -149,7 +194,7 @@ public class WenwoQueryMapper extends QueryMapper{
 	 * @param newKey the key the value will be bound to eventually
 	 * @return
 	 */
-	private Object getMappedValue(Object source, MongoPersistentProperty property, String newKey) {
+	public Object getMappedValue(Object source, MongoPersistentProperty property, String newKey) {
 
 		if (property == null) {
 			return convertSimpleOrDBObject(source, null);
@@ -215,16 +260,37 @@ public class WenwoQueryMapper extends QueryMapper{
 			return entity.getIdProperty();
 		}
 
-		PersistentPropertyPath<MongoPersistentProperty> path = getPath(key, entity);
-		return path == null ? null : path.getLeafProperty();
+		return entity == null ? null : resolvePath(key, entity).leafProperty;
 	}
 
-	private PersistentPropertyPath<MongoPersistentProperty> getPath(String key, MongoPersistentEntity<?> entity) {
+	/**
+	 * Resolves the given key against the entity, caching both resolvable and unresolvable keys so that neither the
+	 * path parsing nor the {@link PropertyReferenceException} is paid again for the same key.
+	 * 
+	 * @param key
+	 * @param entity must not be {@literal null}.
+	 * @return
+	 */
+	private ResolvedPath resolvePath(String key, MongoPersistentEntity<?> entity) {
 
-		if (entity == null) {
-			return null;
+		PathKey cacheKey = new PathKey(entity.getType(), key);
+		ResolvedPath resolved = pathCache.get(cacheKey);
+
+		if (resolved == null) {
+			PersistentPropertyPath<MongoPersistentProperty> path = getPath(key, entity);
+			resolved = path == null ? ResolvedPath.UNRESOLVABLE : new ResolvedPath(path.getLeafProperty(),
+					path.toDotPath(MongoPersistentProperty.PropertyToFieldNameConverter.INSTANCE));
+			if (pathCache.size() >= pathCacheSize) {
+				pathCache.clear();
+			}
+			pathCache.put(cacheKey, resolved);
 		}
 
+		return resolved;
+	}
+
+	private PersistentPropertyPath<MongoPersistentProperty> getPath(String key, MongoPersistentEntity<?> entity) {
+
 		try {
 			PropertyPath path = PropertyPath.from(key, entity.getTypeInformation());
 			return mappingContext.getPersistentPropertyPath(path);
@@ -250,8 +316,8 @@ public class WenwoQueryMapper extends QueryMapper{
 			return "_id";
 		}
 
-		PersistentPropertyPath<MongoPersistentProperty> path = getPath(key, entity);
-		return path == null ? key : path.toDotPath(MongoPersistentProperty.PropertyToFieldNameConverter.INSTANCE);
+		String dotPath = resolvePath(key, entity).dotPath;
+		return dotPath == null ? key : dotPath;
 	}
 
 	/**
@@ -337,6 +403,54 @@ public class WenwoQueryMapper extends QueryMapper{
 		return converter.convertToMongoType(id);
 	}
 
+	/**
+	 * Cache key of a resolved property path: the entity type and the raw query key.
+	 */
+	private static class PathKey {
+
+		private final Class<?> type;
+		private final String key;
+
+		PathKey(Class<?> type, String key) {
+			this.type = type;
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof PathKey)) {
+				return false;
+			}
+			PathKey that = (PathKey) obj;
+			return type.equals(that.type) && key.equals(that.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + key.hashCode();
+		}
+	}
+
+	/**
+	 * The leaf property and field path a key resolves to, or {@link #UNRESOLVABLE} for keys that are not mapped
+	 * properties.
+	 */
+	private static class ResolvedPath {
+
+		static final ResolvedPath UNRESOLVABLE = new ResolvedPath(null, null);
+
+		private final MongoPersistentProperty leafProperty;
+		private final String dotPath;
+
+		ResolvedPath(MongoPersistentProperty leafProperty, String dotPath) {
+			this.leafProperty = leafProperty;
+			this.dotPath = dotPath;
+		}
+	}
+
 	/**
 	 * Value object to capture a query keyword representation.
 	 * 
@@ -4,22 +4,36 @@ import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.SerializationUtils.serializeToJsonSafely;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.ApplicationListener;
@@ -28,11 +42,13 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.authentication.UserCredentials;
 import org.springframework.data.convert.EntityReader;
 import org.springframework.data.mapping.PersistentEntity;
+import org.springframework.data.mapping.PropertyHandler;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.mapping.model.BeanWrapper;
 import org.springframework.data.mapping.model.MappingException;
@@ -68,10 +84,13 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.jca.cci.core.ConnectionCallback;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.ResourceUtils;
 import org.springframework.util.StringUtils;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.Bytes;
 import com.mongodb.CommandResult;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
@@ -86,6 +105,21 @@ import com.mongodb.WriteConcern;
 import com.mongodb.WriteResult;
 import com.mongodb.util.JSON;
 import com.mongodb.util.JSONParseException;
+import com.wenwo.platform.dao.event.AfterSaveBatchEvent;
+import com.wenwo.platform.dao.event.BatchMappingEvent;
+import com.wenwo.platform.dao.event.BeforeConvertBatchEvent;
+import com.wenwo.platform.dao.event.BeforeSaveBatchEvent;
+import com.wenwo.platform.dao.event.MappingEventDispatcher;
+import com.wenwo.platform.dao.metrics.DaoMetrics;
+import com.wenwo.platform.dao.metrics.SlowQueryLog;
+import com.wenwo.platform.dao.util.BsonSizes;
+import com.wenwo.platform.dao.util.ChunkedInsertResult;
+import com.wenwo.platform.dao.util.CloseableIterator;
+import com.wenwo.platform.dao.util.DataSourceIndexCreator;
+import com.wenwo.platform.dao.util.EntitySnapshots;
+import com.wenwo.platform.dao.util.Projections;
+import com.wenwo.platform.dao.util.QueryTimeLimitExceededException;
+import com.wenwo.platform.dao.util.WenwoQuery;
 import com.wenwo.platform.dao.util.WenwoQueryMapper;
 
 /**
@@ -97,6 +131,11 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MongoTemplate.class);
 	private static final String ID_FIELD = "_id";
 	private static final WriteResultChecking DEFAULT_WRITE_RESULT_CHECKING = WriteResultChecking.NONE;
+	private static final int DEFAULT_INSERT_CHUNK_SIZE = 1000;
+	private static final int DEFAULT_INSERT_CHUNK_BYTES = 8 * 1024 * 1024;
+	private static final int COMMAND_NOT_FOUND = 59;
+	private static final int DEFAULT_PARALLEL_READ_THRESHOLD = 1000;
+	private static final int DEFAULT_PARALLEL_READ_BATCH_SIZE = 256;
 	private static final Collection<String> ITERABLE_CLASSES;
 
 	static {
@@ -119,9 +158,26 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	private WriteConcernResolver writeConcernResolver = DefaultWriteConcernResolver.INSTANCE;
 	private WriteResultChecking writeResultChecking = WriteResultChecking.NONE;
 	private ReadPreference readPreference;
+	private ConcurrentMap<String, WenwoMongoTemplate> readPreferenceViews = new ConcurrentHashMap<String, WenwoMongoTemplate>();
+	private boolean view;
+	private WenwoMongoTemplate root;
 	private ApplicationEventPublisher eventPublisher;
+	private MappingEventDispatcher eventDispatcher;
+	private int batchEventSize;
 	private ResourceLoader resourceLoader;
-	private MongoPersistentEntityIndexCreator indexCreator;
+	private DataSourceIndexCreator indexCreator;
+	private DataSourceIndexCreator lazyIndexCreator;
+	private final Map<Class<?>, Field> idFields;
+	private final EntitySnapshots entitySnapshots;
+	private Map<String, MongoDbFactory> dataSources = Collections.emptyMap();
+	private ConcurrentMap<String, WenwoMongoTemplate> dataSourceTemplates = new ConcurrentHashMap<String, WenwoMongoTemplate>();
+	private int insertChunkSize = DEFAULT_INSERT_CHUNK_SIZE;
+	private int insertChunkBytes = DEFAULT_INSERT_CHUNK_BYTES;
+	private volatile boolean insertCommandSupported = true;
+	private volatile SlowQueryLog slowQueryLog;
+	private volatile ExecutorService readConversionExecutor;
+	private int parallelReadThreshold = DEFAULT_PARALLEL_READ_THRESHOLD;
+	private int parallelReadBatchSize = DEFAULT_PARALLEL_READ_BATCH_SIZE;
 	
 	/**
 	 * Constructor used for a basic template configuration
@@ -161,27 +217,79 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	 * @param mongoConverter
 	 */
 	public WenwoMongoTemplate(MongoDbFactory mongoDbFactory, MongoConverter mongoConverter) {
-		super(mongoDbFactory, mongoConverter);
+		super(mongoDbFactory, getSuperclassConverter(mongoDbFactory));
 		Assert.notNull(mongoDbFactory);
 
 		this.mongoDbFactory = mongoDbFactory;
 		this.mongoConverter = mongoConverter == null ? getDefaultMongoConverter(mongoDbFactory) : mongoConverter;
 		this.mapper = new WenwoQueryMapper(this.mongoConverter);
+		this.idFields = new ConcurrentHashMap<Class<?>, Field>();
+		this.entitySnapshots = new EntitySnapshots();
 
 		// We always have a mapping context in the converter, whether it's a simple one or not
 		mappingContext = this.mongoConverter.getMappingContext();
 		// We create indexes based on mapping events
 		if (null != mappingContext && mappingContext instanceof MongoMappingContext) {
-			indexCreator = new MongoPersistentEntityIndexCreator((MongoMappingContext) mappingContext, mongoDbFactory);
+			indexCreator = new DataSourceIndexCreator((MongoMappingContext) mappingContext, mongoDbFactory);
 			eventPublisher = new MongoMappingEventPublisher(indexCreator);
+			eventDispatcher = new MappingEventDispatcher(eventPublisher);
 			if (mappingContext instanceof ApplicationEventPublisherAware) {
 				((ApplicationEventPublisherAware) mappingContext).setApplicationEventPublisher(eventPublisher);
 			}
 		}
 	}
+
+	/**
+	 * Constructor for a template on another database that shares the converter, mapping metadata, query mapper and
+	 * caches of the given template and copies its current configuration. Indexes are created in the new database for
+	 * the entities actually used through the new template.
+	 * 
+	 * @param metadataSource must not be {@literal null}.
+	 * @param mongoDbFactory must not be {@literal null}.
+	 * @see #forDataSource(String)
+	 */
+	protected WenwoMongoTemplate(WenwoMongoTemplate metadataSource, MongoDbFactory mongoDbFactory) {
+		super(mongoDbFactory, getSuperclassConverter(mongoDbFactory));
+		Assert.notNull(mongoDbFactory);
+
+		this.mongoDbFactory = mongoDbFactory;
+		this.mongoConverter = metadataSource.mongoConverter;
+		this.mapper = metadataSource.mapper;
+		this.idFields = metadataSource.idFields;
+		this.entitySnapshots = metadataSource.entitySnapshots;
+		this.mappingContext = metadataSource.mappingContext;
+		if (mappingContext instanceof MongoMappingContext) {
+			this.lazyIndexCreator = new DataSourceIndexCreator(new MongoMappingContext(), mongoDbFactory);
+		}
+
+		this.writeConcern = metadataSource.writeConcern;
+		this.writeConcernResolver = metadataSource.writeConcernResolver;
+		this.writeResultChecking = metadataSource.writeResultChecking;
+		this.readPreference = metadataSource.readPreference;
+		this.eventPublisher = metadataSource.eventPublisher;
+		this.eventDispatcher = metadataSource.eventDispatcher;
+		this.batchEventSize = metadataSource.batchEventSize;
+		this.resourceLoader = metadataSource.resourceLoader;
+		this.insertChunkSize = metadataSource.insertChunkSize;
+		this.insertChunkBytes = metadataSource.insertChunkBytes;
+		this.parallelReadThreshold = metadataSource.parallelReadThreshold;
+		this.parallelReadBatchSize = metadataSource.parallelReadBatchSize;
+		this.dataSources = metadataSource.dataSources;
+		this.dataSourceTemplates = metadataSource.dataSourceTemplates;
+		this.root = metadataSource.getRoot();
+	}
+
+	/**
+	 * All operations of {@link MongoTemplate} are overridden, so the superclass only gets a converter without metadata
+	 * instead of building a second mapping context and index creator of its own.
+	 */
+	private static MongoConverter getSuperclassConverter(MongoDbFactory mongoDbFactory) {
+		return new MappingMongoConverter(mongoDbFactory, new MongoMappingContext());
+	}
 	
 	/**
 	 * 根据ID对entity进行无损失的更新. 而使用save方法更新时会丢失entity中没有的但是数据库已有的字段. 
+	 * 开启{@link #setChangeTracking(boolean)}时只更新读取后变化的字段.
 	 * @param objectToSave
 	 */
 	public void update(Object objectToSave) {
@@ -208,7 +316,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	public <T> void saveSubEntityById(Object id, String collectionName, String subDocumentName, T entity) {
 		BasicDBObject dbDoc = new BasicDBObject();
 
-		maybeEmitEvent(new BeforeConvertEvent<T>(entity));
+		emitBeforeConvert(entity);
 		getConverter().write(entity, dbDoc);
 		dbDoc.remove("_class");
 		DBObject q = new BasicDBObject();
@@ -221,12 +329,12 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
         
         BasicDBObject update = new BasicDBObject(subDocumentName, dbDoc);
 
-		maybeEmitEvent(new BeforeSaveEvent<T>(entity, dbDoc));
+		emitBeforeSave(entity, dbDoc);
 		updateDBObject(collectionName, q, update, false, false);
 		
 
 		populateIdIfNecessary(entity, id);
-		maybeEmitEvent(new AfterSaveEvent<T>(entity, dbDoc));
+		emitAfterSave(entity, dbDoc);
 	}
 	class SubDocumentCallbackHandler implements DocumentCallbackHandler {
         private DBObject subObj;
@@ -264,16 +372,16 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
             Class<T> subClazz, final String subDocumentName) {
         Query query = Query.query(Criteria.where(ID_FIELD).is(mapper.convertId(id)));
         query.fields().include(subDocumentName);
-        EntityReader<? super T, DBObject> readerToUse = super.getConverter();
+        EntityReader<? super T, DBObject> readerToUse = getConverter();
         SubDocumentCallbackHandler handler = new SubDocumentCallbackHandler(
-                super.getConverter(), subDocumentName);
+                getConverter(), subDocumentName);
         executeQuery(query, collectionName, handler);
         return readerToUse.read(subClazz, handler.getSubObj());
     }
 	protected <T> int doUpdate(String collectionName, T objectToSave, MongoWriter<T> writer) {
 		BasicDBObject dbDoc = new BasicDBObject();
 
-		maybeEmitEvent(new BeforeConvertEvent<T>(objectToSave));
+		emitBeforeConvert(objectToSave);
 		writer.write(objectToSave, dbDoc);
 		
 		Object id = dbDoc.get( ID_FIELD );
@@ -282,15 +390,84 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
         
         dbDoc.remove(ID_FIELD);
 
-		maybeEmitEvent(new BeforeSaveEvent<T>(objectToSave, dbDoc));
-		Integer num = updateDBObject(collectionName, q, dbDoc, false, false);
-		
+		emitBeforeSave(objectToSave, dbDoc);
+		DBObject snapshot = entitySnapshots.get(objectToSave);
+		Integer num;
+		if (snapshot == null) {
+			num = updateDBObject(collectionName, q, dbDoc, false, false);
+		} else {
+			final DBObject changes = getChanges(objectToSave.getClass(), snapshot, dbDoc);
+			if (changes.keySet().isEmpty()) {
+				// 读取或上次写入后没有变化,不需要更新;文档已存在,与更新成功一样返回1并发出AfterSave事件
+				num = 1;
+			} else {
+				num = updateDBObjectChanges(collectionName, q, changes);
+			}
+		}
+		entitySnapshots.put(objectToSave, dbDoc);
 
 		populateIdIfNecessary(objectToSave, id);
-		maybeEmitEvent(new AfterSaveEvent<T>(objectToSave, dbDoc));
+		emitAfterSave(objectToSave, dbDoc);
 		return num == null ? 0 : num;
 	}
 	
+	/**
+	 * 对比快照与当前文档:新增或值变化的字段$set,快照中有而当前文档中没有的持久化属性(即被置为null的属性)$unset.
+	 * 不在实体中的字段不会被$unset
+	 */
+	private DBObject getChanges(Class<?> type, DBObject snapshot, DBObject dbDoc) {
+		BasicDBObject set = new BasicDBObject();
+		for (String key : dbDoc.keySet()) {
+			Object value = dbDoc.get(key);
+			if (!snapshot.containsField(key) || !ObjectUtils.nullSafeEquals(value, snapshot.get(key))) {
+				set.put(key, value);
+			}
+		}
+		BasicDBObject unset = new BasicDBObject();
+		Set<String> fieldNames = null;
+		for (String key : snapshot.keySet()) {
+			if (ID_FIELD.equals(key) || dbDoc.containsField(key)) {
+				continue;
+			}
+			if (fieldNames == null) {
+				fieldNames = getPersistentFieldNames(type);
+			}
+			if (fieldNames.contains(key)) {
+				unset.put(key, 1);
+			}
+		}
+		BasicDBObject changes = new BasicDBObject();
+		if (!set.isEmpty()) {
+			changes.put("$set", set);
+		}
+		if (!unset.isEmpty()) {
+			changes.put("$unset", unset);
+		}
+		return changes;
+	}
+
+	private Set<String> getPersistentFieldNames(Class<?> type) {
+		final Set<String> fieldNames = new HashSet<String>();
+		MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(type);
+		if (entity != null) {
+			entity.doWithProperties(new PropertyHandler<MongoPersistentProperty>() {
+				public void doWithPersistentProperty(MongoPersistentProperty property) {
+					fieldNames.add(property.getFieldName());
+				}
+			});
+		}
+		return fieldNames;
+	}
+
+	private Integer updateDBObjectChanges(final String collectionName, final DBObject query, final DBObject changes) {
+		return execute(collectionName, new CollectionCallback<Integer>() {
+			public Integer doInCollection(DBCollection collection) throws MongoException, DataAccessException {
+				WriteResult wr = collection.update(query, changes, false, false);
+				return wr.getN();
+			}
+		});
+	}
+
 	protected Integer updateDBObject(final String collectionName, final DBObject query, final DBObject dbDoc, final boolean upsert, final boolean multi) {
 		return execute(collectionName, new CollectionCallback<Integer>() {
 			public Integer doInCollection(DBCollection collection) throws MongoException, DataAccessException {
@@ -303,7 +480,12 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	
 	@Override
 	public WenwoMongoTemplate clone() throws CloneNotSupportedException {
-		return (WenwoMongoTemplate)super.clone();
+		WenwoMongoTemplate clone = (WenwoMongoTemplate)super.clone();
+		clone.readPreferenceViews = new ConcurrentHashMap<String, WenwoMongoTemplate>();
+		clone.view = false;
+		clone.root = null;
+		clone.dataSourceTemplates = new ConcurrentHashMap<String, WenwoMongoTemplate>();
+		return clone;
 	}
 	
 
@@ -342,15 +524,123 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	}
 
 	/**
-	 * Used by @{link {@link #prepareCollection(DBCollection)} to set the {@link ReadPreference} before any operations are
-	 * performed.
+	 * Configures the {@link ReadPreference} used for find and count operations. Views returned by
+	 * {@link #withReadPreference(ReadPreference)} cannot be reconfigured.
 	 * 
 	 * @param readPreference
 	 */
 	public void setReadPreference(ReadPreference readPreference) {
+		if (view) {
+			throw new UnsupportedOperationException("Cannot change the ReadPreference of a read preference view");
+		}
 		this.readPreference = readPreference;
 	}
 
+	/**
+	 * Returns the {@link ReadPreference} used for find and count operations.
+	 * 
+	 * @return the {@link ReadPreference} or {@literal null} to use the one of the database.
+	 */
+	public ReadPreference getReadPreference() {
+		return readPreference;
+	}
+
+	/**
+	 * Returns a view of this template that reads with the given {@link ReadPreference}, including its replica set tag
+	 * sets. Views are created once per read preference from the configuration this template has at that time and cached,
+	 * so this is cheap to call per operation. The {@link ReadPreference} of a view cannot be changed and views never
+	 * modify the template they were created from; writes through a view behave like writes through this template.
+	 * 
+	 * @param readPreference must not be {@literal null}.
+	 * @return
+	 */
+	public WenwoMongoTemplate withReadPreference(ReadPreference readPreference) {
+
+		Assert.notNull(readPreference);
+
+		String key = readPreference.toDBObject().toString();
+		WenwoMongoTemplate view = readPreferenceViews.get(key);
+		if (view != null) {
+			return view;
+		}
+
+		try {
+			view = (WenwoMongoTemplate) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+		view.readPreference = readPreference;
+		view.view = true;
+		view.root = getRoot();
+
+		WenwoMongoTemplate existing = readPreferenceViews.putIfAbsent(key, view);
+		return existing == null ? view : existing;
+	}
+
+	/**
+	 * Configures additional named databases that can be used through {@link #forDataSource(String)}. Once data sources
+	 * are configured, indexes are no longer created in this template's database for every entity added to the shared
+	 * mapping context, but only for the entities used through this template.
+	 * 
+	 * @param dataSources the {@link MongoDbFactory}s by data source name.
+	 */
+	public void setDataSources(Map<String, MongoDbFactory> dataSources) {
+		this.dataSources = new HashMap<String, MongoDbFactory>(dataSources);
+		this.dataSourceTemplates.clear();
+		if (indexCreator != null) {
+			indexCreator.setEager(dataSources.isEmpty());
+			lazyIndexCreator = dataSources.isEmpty() ? null : indexCreator;
+		}
+	}
+
+	/**
+	 * Returns the template for the given data source configured with {@link #setDataSources(Map)}. All data source
+	 * templates share the converter, mapping metadata, query mapper and caches of this template, so adding a database
+	 * does not add another copy of them. The template is created once from the root template with the configuration it
+	 * has at that time. Called on a read preference view, the view of the data source template with the same read
+	 * preference is returned.
+	 * 
+	 * @param name must not be {@literal null}.
+	 * @return
+	 */
+	public WenwoMongoTemplate forDataSource(String name) {
+
+		WenwoMongoTemplate template = dataSourceTemplates.get(name);
+		if (template == null) {
+			MongoDbFactory factory = dataSources.get(name);
+			if (factory == null) {
+				throw new IllegalArgumentException("Unknown data source " + name + ", configured are "
+						+ dataSources.keySet());
+			}
+
+			// built from the root so the cached template never inherits the read preference of a view
+			template = getRoot().newDataSourceTemplate(factory);
+			WenwoMongoTemplate existing = dataSourceTemplates.putIfAbsent(name, template);
+			if (existing != null) {
+				template = existing;
+			}
+		}
+		return view ? template.withReadPreference(readPreference) : template;
+	}
+
+	/**
+	 * Returns the template this template was derived from as a read preference view or data source template, or this
+	 * template itself.
+	 */
+	private WenwoMongoTemplate getRoot() {
+		return root == null ? this : root;
+	}
+
+	/**
+	 * Creates the template for a data source. Subclasses return an instance of their own type.
+	 * 
+	 * @param mongoDbFactory
+	 * @return
+	 */
+	protected WenwoMongoTemplate newDataSourceTemplate(MongoDbFactory mongoDbFactory) {
+		return new WenwoMongoTemplate(this, mongoDbFactory);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.springframework.context.ApplicationContextAware#setApplicationContext(org.springframework.context.ApplicationContext)
@@ -360,6 +650,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		prepareIndexCreator(applicationContext);
 
 		eventPublisher = applicationContext;
+		eventDispatcher = new MappingEventDispatcher(eventPublisher);
 		if (mappingContext instanceof ApplicationEventPublisherAware) {
 			((ApplicationEventPublisherAware) mappingContext).setApplicationEventPublisher(eventPublisher);
 		}
@@ -458,7 +749,8 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 					serializeToJsonSafely(queryObject), sortObject, fieldsObject, collectionName));
 		}
 
-		this.executeQueryInternal(new FindCallback(queryObject, fieldsObject), new QueryCursorPreparer(query), dch, collectionName);
+		this.executeQueryInternal(new FindCallback(queryObject, fieldsObject, readPreference), new QueryCursorPreparer(
+				query), dch, collectionName);
 	}
 
 
@@ -486,7 +778,8 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 					serializeToJsonSafely(queryObject), sortObject, fieldsObject, collectionName));
 		}
 
-		this.executeQueryInternal(new FindCallback(queryObject, fieldsObject), preparer, dch, collectionName);
+		this.executeQueryInternal(new FindCallback(queryObject, fieldsObject, readPreference), preparer, dch,
+				collectionName);
 	}
 
 	public <T> T execute(DbCallback<T> action) {
@@ -517,6 +810,93 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		}
 	}
 
+	/**
+	 * Like {@link #execute(String, CollectionCallback)} but records the latency of the call under the given operation
+	 * name in {@link DaoMetrics}.
+	 */
+	private <T> T executeTimed(String collectionName, String operation, CollectionCallback<T> callback) {
+		long start = DaoMetrics.start();
+		boolean success = false;
+		try {
+			T result = execute(collectionName, callback);
+			success = true;
+			return result;
+		} finally {
+			DaoMetrics.record(collectionName, operation, start, success);
+		}
+	}
+
+	/**
+	 * Configures the log that records find, findOne, findAndModify, count, update and remove operations slower than its
+	 * threshold. For reads the measured time covers the server round trips and the cursor but not the conversion into
+	 * entities. Setting {@literal null} (the default) disables slow operation detection. The log is shared with all read
+	 * preference views and data source templates of the root template, whenever they were created and whichever of them
+	 * it is set on.
+	 * 
+	 * @param slowQueryLog
+	 */
+	public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+		getRoot().slowQueryLog = slowQueryLog;
+	}
+
+	public SlowQueryLog getSlowQueryLog() {
+		return getRoot().slowQueryLog;
+	}
+
+	private long slowQueryStart() {
+		return getSlowQueryLog() == null ? 0L : System.nanoTime();
+	}
+
+	/**
+	 * Records the operation started at {@code start} in the {@link SlowQueryLog} if it took longer than the configured
+	 * threshold.
+	 * 
+	 * @param options the query providing sort, skip and limit, can be {@literal null}.
+	 */
+	private void logIfSlow(String collectionName, String operation, long start, DBObject mappedQuery, DBObject fields,
+			Query options) {
+		logIfSlow(collectionName, operation, start, 0L, mappedQuery, fields, options == null ? null
+				: options.getSortObject(), options == null ? 0 : options.getSkip(), options == null ? 0 : options.getLimit());
+	}
+
+	/**
+	 * Records a find started at {@code start} in the {@link SlowQueryLog} if the time spent on the server and reading
+	 * the cursor, that is without the given conversion time, was longer than the configured threshold.
+	 */
+	private void logFindIfSlow(String collectionName, String operation, long start, long convertNanos,
+			CollectionCallback<?> collectionCallback, CursorPreparer preparer) {
+		if (start == 0L || !(collectionCallback instanceof LoggableQuery)) {
+			return;
+		}
+		LoggableQuery query = (LoggableQuery) collectionCallback;
+		DBObject mappedQuery = query.getQuery() == null ? new BasicDBObject() : query.getQuery();
+		if (preparer instanceof QueryCursorPreparer && ((QueryCursorPreparer) preparer).query != null) {
+			Query options = ((QueryCursorPreparer) preparer).query;
+			logIfSlow(collectionName, operation, start, convertNanos, mappedQuery, query.getFields(),
+					options.getSortObject(), options.getSkip(), options.getLimit());
+		} else {
+			logIfSlow(collectionName, operation, start, convertNanos, mappedQuery, query.getFields(), query.getSort(),
+					0, query.isSingle() ? 1 : 0);
+		}
+	}
+
+	private void logIfSlow(String collectionName, String operation, long start, long excludedNanos,
+			DBObject mappedQuery, DBObject fields, DBObject sort, int skip, int limit) {
+		SlowQueryLog log = getSlowQueryLog();
+		if (log == null || start == 0L) {
+			return;
+		}
+		long nanos = System.nanoTime() - start - excludedNanos;
+		if (!log.isSlow(nanos)) {
+			return;
+		}
+		try {
+			log.record(getDb().getCollection(collectionName), operation, nanos, mappedQuery, fields, sort, skip, limit);
+		} catch (RuntimeException e) {
+			LOGGER.warn("Could not record slow operation on " + collectionName, e);
+		}
+	}
+
 	public <T> T executeInSession(final DbCallback<T> action) {
 		return execute(new DbCallback<T>() {
 			public T doInDB(DB db) throws MongoException, DataAccessException {
@@ -597,7 +977,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	}
 
 	public <T> T findOne(Query query, Class<T> entityClass, String collectionName) {
-		if (query.getSortObject() == null) {
+		if (query.getSortObject() == null && !WenwoQuery.hasCursorOptions(query)) {
 			return doFindOne(collectionName, query.getQueryObject(), query.getFieldsObject(), entityClass);
 		} else {
 			query.limit(1);
@@ -622,6 +1002,165 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 				new QueryCursorPreparer(query));
 	}
 
+	/**
+	 * Finds documents with a query object that has already been mapped, so the query mapping is skipped. Fields, skip,
+	 * limit, sort and hint are taken from the given options.
+	 * 
+	 * @param mappedQuery
+	 * @param options can be {@literal null}.
+	 * @param entityClass
+	 * @param collectionName
+	 * @return
+	 */
+	public <T> List<T> findMapped(DBObject mappedQuery, Query options, Class<T> entityClass, String collectionName) {
+		return executeFindMultiInternal(new FindCallback(mappedQuery, options == null ? null : options.getFieldsObject(),
+				readPreference), new QueryCursorPreparer(options), new ReadDbObjectCallback<T>(mongoConverter, entityClass),
+				collectionName);
+	}
+
+	/**
+	 * Finds the documents matching the query without converting them; the query is mapped against the given entity
+	 * class. Convert them with {@link #readEntity(DBObject, Class)}.
+	 * 
+	 * @param query
+	 * @param entityClass
+	 * @return
+	 */
+	public List<DBObject> findDocuments(Query query, Class<?> entityClass) {
+		return doFind(determineCollectionName(entityClass), query.getQueryObject(), query.getFieldsObject(), entityClass,
+				new QueryCursorPreparer(query), new DbObjectCallback<DBObject>() {
+					public DBObject doWith(DBObject object) {
+						return object;
+					}
+				});
+	}
+
+	/**
+	 * Finds documents of the given entity class and reads them as the projection type. Criteria, and fields selected by
+	 * the query itself, are mapped against the entity class. Without selected fields, only the stored fields of the
+	 * entity properties matching the projection's properties by name are returned and renamed to the projection's field
+	 * names where these differ, see {@link Projections#fieldNames(MongoConverter, Class, Class)}.
+	 * 
+	 * @param query
+	 * @param entityClass
+	 * @param projectionType
+	 * @param collectionName
+	 * @return
+	 */
+	public <D> List<D> findProjected(Query query, Class<?> entityClass, Class<D> projectionType, String collectionName) {
+
+		MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(entityClass);
+		DBObject fields = query.getFieldsObject();
+		final Map<String, String> renames;
+
+		if (fields != null) {
+			DBObject mappedFields = new BasicDBObject();
+			for (String key : fields.keySet()) {
+				mappedFields.put(getQueryMapper().getMappedKey(key, entity), fields.get(key));
+			}
+			fields = mappedFields;
+			renames = Collections.emptyMap();
+		} else {
+			renames = Projections.fieldNames(mongoConverter, entityClass, projectionType);
+			if (!renames.isEmpty()) {
+				fields = new BasicDBObject();
+				for (String key : renames.keySet()) {
+					fields.put(key, 1);
+				}
+			}
+		}
+
+		final ReadDbObjectCallback<D> reader = new ReadDbObjectCallback<D>(mongoConverter, projectionType);
+		return doFind(collectionName, query.getQueryObject(), fields, entityClass, new QueryCursorPreparer(query),
+				new DbObjectCallback<D>() {
+					public D doWith(DBObject object) {
+						for (Map.Entry<String, String> rename : renames.entrySet()) {
+							if (!rename.getKey().equals(rename.getValue()) && object.containsField(rename.getKey())) {
+								object.put(rename.getValue(), object.removeField(rename.getKey()));
+							}
+						}
+						return reader.doWith(object);
+					}
+				});
+	}
+
+	/**
+	 * Converts a document returned by {@link #findDocuments(Query, Class)} into a new entity instance, publishing the load
+	 * events and tracking it for change tracking like any entity read by this template. The same document can be read
+	 * any number of times but must not be modified.
+	 * 
+	 * @param document can be {@literal null}.
+	 * @param entityClass
+	 * @return
+	 */
+	public <T> T readEntity(DBObject document, Class<T> entityClass) {
+		return document == null ? null : new ReadDbObjectCallback<T>(mongoConverter, entityClass).doWith(document);
+	}
+
+	/**
+	 * Finds a single document with a query object that has already been mapped.
+	 * 
+	 * @param mappedQuery
+	 * @param fields can be {@literal null}.
+	 * @param entityClass
+	 * @param collectionName
+	 * @return
+	 */
+	public <T> T findOneMapped(DBObject mappedQuery, DBObject fields, Class<T> entityClass, String collectionName) {
+		return executeFindOneInternal(new FindOneCallback(mappedQuery, fields, readPreference), new ReadDbObjectCallback<T>(
+				mongoConverter, entityClass), collectionName);
+	}
+
+	/**
+	 * Counts documents with a query object that has already been mapped.
+	 * 
+	 * @param mappedQuery
+	 * @param collectionName
+	 * @return
+	 */
+	public long countMapped(final DBObject mappedQuery, String collectionName) {
+		long start = slowQueryStart();
+		long count = executeTimed(collectionName, "count", new CollectionCallback<Long>() {
+			public Long doInCollection(DBCollection collection) throws MongoException, DataAccessException {
+				return doCount(collection, mappedQuery);
+			}
+		});
+		logIfSlow(collectionName, "count", start, mappedQuery, null, null);
+		return count;
+	}
+
+	private long doCount(DBCollection collection, DBObject query) {
+		return readPreference == null ? collection.count(query) : collection.count(query, readPreference);
+	}
+
+	private long doCount(DBCollection collection, DBObject query, long limit) {
+		return readPreference == null ? collection.getCount(query, null, limit, 0) : collection.getCount(query, null,
+				limit, 0, readPreference);
+	}
+
+	/**
+	 * Returns the mapper used to translate query keys and values into their stored form.
+	 * 
+	 * @return
+	 */
+	public WenwoQueryMapper getQueryMapper() {
+		return (WenwoQueryMapper) mapper;
+	}
+
+	/**
+	 * Returns the criteria of the given query in the form sent to the server. Criteria written differently but mapping
+	 * to the same stored form, like a {@link String} and an {@link ObjectId} id, result in equal objects.
+	 * 
+	 * @param query may be {@literal null} to match all documents
+	 * @param entityClass may be {@literal null} to map without entity information
+	 * @return
+	 */
+	public DBObject getMappedQuery(Query query, Class<?> entityClass) {
+		DBObject queryObject = query == null ? new BasicDBObject() : query.getQueryObject();
+		return getQueryMapper().getMappedObject(queryObject,
+				entityClass == null ? null : mappingContext.getPersistentEntity(entityClass));
+	}
+
 	public <T> T findById(Object id, Class<T> entityClass) {
 		return findById(id, entityClass, determineCollectionName(entityClass));
 	}
@@ -708,17 +1247,92 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		return count(query, null, collectionName);
 	}
 
+	/**
+	 * Counts the documents matching the given query, but stops counting at {@code limit}. Useful where only "more than
+	 * N" matters, e.g. for "99+" badges, as the server does not have to visit every match.
+	 * 
+	 * @param query may be {@literal null} to count all documents.
+	 * @param entityClass must not be {@literal null}.
+	 * @param limit the maximum count to return, must be positive.
+	 * @return the number of matching documents, at most {@code limit}.
+	 */
+	public long countUpTo(Query query, Class<?> entityClass, long limit) {
+		Assert.notNull(entityClass);
+		Assert.isTrue(limit > 0, "limit must be positive");
+		return count(query, entityClass, determineCollectionName(entityClass), limit);
+	}
+
+	/**
+	 * Counts the documents matching the given query, but stops counting at {@code limit}.
+	 * 
+	 * @param query may be {@literal null} to count all documents.
+	 * @param collectionName must not be {@literal null} or empty.
+	 * @param limit the maximum count to return, must be positive.
+	 * @return the number of matching documents, at most {@code limit}.
+	 * @see #countUpTo(Query, Class, long)
+	 */
+	public long countUpTo(Query query, String collectionName, long limit) {
+		Assert.isTrue(limit > 0, "limit must be positive");
+		return count(query, null, collectionName, limit);
+	}
+
+	/**
+	 * Returns the number of documents in the collection of the given entity as recorded in the collection metadata
+	 * ({@code collStats}) instead of running a count. The number can be off after an unclean shutdown and includes
+	 * orphaned documents on sharded clusters, so it suits dashboards and admin pages rather than exact totals.
+	 * 
+	 * @param entityClass must not be {@literal null}.
+	 * @return the estimated number of documents, 0 if the collection does not exist.
+	 */
+	public long estimatedCount(Class<?> entityClass) {
+		Assert.notNull(entityClass);
+		return estimatedCount(determineCollectionName(entityClass));
+	}
+
+	/**
+	 * Returns the number of documents in the given collection as recorded in the collection metadata.
+	 * 
+	 * @param collectionName must not be {@literal null} or empty.
+	 * @return the estimated number of documents, 0 if the collection does not exist.
+	 * @see #estimatedCount(Class)
+	 */
+	public long estimatedCount(String collectionName) {
+		Assert.hasText(collectionName);
+		return executeTimed(collectionName, "estimatedCount", new CollectionCallback<Long>() {
+			public Long doInCollection(DBCollection collection) throws MongoException, DataAccessException {
+				CommandResult stats = collection.getDB().command(new BasicDBObject("collStats", collection.getName()), 0,
+						readPreference == null ? ReadPreference.primary() : readPreference);
+				if (!stats.ok()) {
+					if (String.valueOf(stats.getErrorMessage()).contains("not found")) {
+						return 0L;
+					}
+					stats.throwOnError();
+				}
+				Object count = stats.get("count");
+				return count instanceof Number ? ((Number) count).longValue() : 0L;
+			}
+		});
+	}
+
 	private long count(Query query, Class<?> entityClass, String collectionName) {
+		return count(query, entityClass, collectionName, 0);
+	}
+
+	private long count(Query query, Class<?> entityClass, String collectionName, final long limit) {
 
 		Assert.hasText(collectionName);
+		Assert.isTrue(limit >= 0, "limit must not be negative");
 		final DBObject dbObject = query == null ? null : mapper.getMappedObject(query.getQueryObject(),
 				entityClass == null ? null : mappingContext.getPersistentEntity(entityClass));
 
-		return execute(collectionName, new CollectionCallback<Long>() {
+		long start = slowQueryStart();
+		long count = executeTimed(collectionName, "count", new CollectionCallback<Long>() {
 			public Long doInCollection(DBCollection collection) throws MongoException, DataAccessException {
-				return collection.count(dbObject);
+				return limit > 0 ? doCount(collection, dbObject, limit) : doCount(collection, dbObject);
 			}
 		});
+		logIfSlow(collectionName, "count", start, dbObject, null, null);
+		return count;
 	}
 
 	/*
@@ -754,9 +1368,8 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	 * @param collection
 	 */
 	protected void prepareCollection(DBCollection collection) {
-		if (this.readPreference != null) {
-			collection.setReadPreference(readPreference);
-		}
+		// the ReadPreference is passed with each read instead of being set on the collection, which is shared by all
+		// templates and views on the same database
 	}
 
 	/**
@@ -778,14 +1391,15 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 
 		BasicDBObject dbDoc = new BasicDBObject();
 
-		maybeEmitEvent(new BeforeConvertEvent<T>(objectToSave));
+		emitBeforeConvert(objectToSave);
 		writer.write(objectToSave, dbDoc);
 
-		maybeEmitEvent(new BeforeSaveEvent<T>(objectToSave, dbDoc));
+		emitBeforeSave(objectToSave, dbDoc);
 		Object id = insertDBObject(collectionName, dbDoc, objectToSave.getClass());
+		entitySnapshots.put(objectToSave, dbDoc);
 
 		populateIdIfNecessary(objectToSave, id);
-		maybeEmitEvent(new AfterSaveEvent<T>(objectToSave, dbDoc));
+		emitAfterSave(objectToSave, dbDoc);
 	}
 
 	private void initializeVersionProperty(Object entity) {
@@ -807,60 +1421,537 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		doInsertBatch(collectionName, batchToSave, this.mongoConverter);
 	}
 
-	public void insertAll(Collection<? extends Object> objectsToSave) {
-		doInsertAll(objectsToSave, this.mongoConverter);
+	public void insertAll(Collection<? extends Object> objectsToSave) {
+		doInsertAll(objectsToSave, this.mongoConverter);
+	}
+
+	protected <T> void doInsertAll(Collection<? extends T> listToSave, MongoWriter<T> writer) {
+		Map<String, List<T>> objs = new HashMap<String, List<T>>();
+
+		for (T o : listToSave) {
+
+			MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(o.getClass());
+			if (entity == null) {
+				throw new InvalidDataAccessApiUsageException("No Persitent Entity information found for the class "
+						+ o.getClass().getName());
+			}
+			String collection = entity.getCollection();
+
+			List<T> objList = objs.get(collection);
+			if (null == objList) {
+				objList = new ArrayList<T>();
+				objs.put(collection, objList);
+			}
+			objList.add(o);
+
+		}
+
+		for (Map.Entry<String, List<T>> entry : objs.entrySet()) {
+			doInsertBatch(entry.getKey(), entry.getValue(), this.mongoConverter);
+		}
+	}
+
+	protected <T> void doInsertBatch(String collectionName, Collection<? extends T> batchToSave, MongoWriter<T> writer) {
+
+		Assert.notNull(writer);
+
+		Iterator<? extends T> iterator = batchToSave.iterator();
+		while (iterator.hasNext()) {
+			List<T> chunk = nextInsertChunk(iterator);
+			insertConvertedChunk(collectionName, chunk, convertInsertChunk(collectionName, chunk, writer), null);
+		}
+	}
+
+	/**
+	 * Inserts the given objects in chunks bounded by {@link #setInsertChunkSize(int)} documents and
+	 * {@link #setInsertChunkBytes(int)} encoded bytes. Unlike {@link #insertAll(Collection)} a failing chunk does not
+	 * abort the remaining ones; the objects inserted before the failing document are counted as inserted and the
+	 * remaining objects of the chunk are reported in the returned result. Servers before 2.6 can only report the whole
+	 * chunk as failed.
+	 * <p>
+	 * If a conversion executor is given, up to {@code parallelism} chunks are converted on it ahead of the chunk
+	 * currently being inserted. Conversion events are then published from the executor threads.
+	 * 
+	 * @param objectsToSave
+	 * @param conversionExecutor may be {@literal null} to convert on the calling thread
+	 * @param parallelism number of chunks converted ahead of the insert
+	 * @return
+	 */
+	public ChunkedInsertResult insertAllChunked(Collection<? extends Object> objectsToSave,
+			ExecutorService conversionExecutor, int parallelism) {
+
+		Map<String, List<Object>> objs = new LinkedHashMap<String, List<Object>>();
+		for (Object o : objectsToSave) {
+			MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(o.getClass());
+			if (entity == null) {
+				throw new InvalidDataAccessApiUsageException("No Persitent Entity information found for the class "
+						+ o.getClass().getName());
+			}
+			List<Object> objList = objs.get(entity.getCollection());
+			if (objList == null) {
+				objList = new ArrayList<Object>();
+				objs.put(entity.getCollection(), objList);
+			}
+			objList.add(o);
+		}
+
+		ChunkedInsertResult result = new ChunkedInsertResult();
+		for (Map.Entry<String, List<Object>> entry : objs.entrySet()) {
+			doInsertChunked(entry.getKey(), entry.getValue(), conversionExecutor, parallelism, result);
+		}
+		return result;
+	}
+
+	public ChunkedInsertResult insertChunked(Collection<? extends Object> batchToSave, String collectionName,
+			ExecutorService conversionExecutor, int parallelism) {
+		ChunkedInsertResult result = new ChunkedInsertResult();
+		doInsertChunked(collectionName, batchToSave, conversionExecutor, parallelism, result);
+		return result;
+	}
+
+	/**
+	 * Sets the maximum number of documents converted and sent per insert chunk.
+	 * 
+	 * @param insertChunkSize
+	 */
+	public void setInsertChunkSize(int insertChunkSize) {
+		Assert.isTrue(insertChunkSize > 0, "insertChunkSize must be positive");
+		this.insertChunkSize = insertChunkSize;
+	}
+
+	/**
+	 * Sets the maximum encoded size of the documents sent in one insert message; {@code 0} disables the size check.
+	 * 
+	 * @param insertChunkBytes
+	 */
+	public void setInsertChunkBytes(int insertChunkBytes) {
+		this.insertChunkBytes = insertChunkBytes;
+	}
+
+	/**
+	 * Enables parallel conversion of large find results. Once a result has reached
+	 * {@link #setParallelReadThreshold(int)} documents, the remaining documents are handed to the given executor in
+	 * batches of {@link #setParallelReadBatchSize(int)} while the cursor is still being read, and the converted
+	 * entities are reassembled in cursor order. {@code AfterLoadEvent}s and {@code AfterConvertEvent}s of those
+	 * documents are then published from the executor threads. {@literal null} (the default) converts on the calling
+	 * thread only. Like the slow query log, the executor is shared with all views and data source templates of the root
+	 * template.
+	 * 
+	 * @param readConversionExecutor
+	 */
+	public void setReadConversionExecutor(ExecutorService readConversionExecutor) {
+		getRoot().readConversionExecutor = readConversionExecutor;
+	}
+
+	/**
+	 * Sets the number of documents converted on the calling thread before the rest of a result is converted in
+	 * parallel.
+	 * 
+	 * @param parallelReadThreshold
+	 */
+	public void setParallelReadThreshold(int parallelReadThreshold) {
+		this.parallelReadThreshold = parallelReadThreshold;
+	}
+
+	/**
+	 * Sets the number of documents converted by one task in parallel conversion.
+	 * 
+	 * @param parallelReadBatchSize
+	 */
+	public void setParallelReadBatchSize(int parallelReadBatchSize) {
+		Assert.isTrue(parallelReadBatchSize > 0, "parallelReadBatchSize must be positive");
+		this.parallelReadBatchSize = parallelReadBatchSize;
+	}
+
+	/**
+	 * Enables change tracking for {@link #update(Object)}: the document of every entity read or written through this
+	 * template, its read preference views and its data source templates is kept (weakly referenced by the entity
+	 * instance), and updating a tracked entity only {@code $set}s the fields that changed and {@code $unset}s
+	 * properties that became {@literal null}. An update without changes is not sent but still counts as one updated
+	 * document and publishes the save events like a sent one. Entities not tracked are updated with all their fields as
+	 * before. Disabled by default; disabling drops all snapshots.
+	 * 
+	 * @param changeTracking
+	 */
+	public void setChangeTracking(boolean changeTracking) {
+		entitySnapshots.setEnabled(changeTracking);
+	}
+
+	public boolean isChangeTracking() {
+		return entitySnapshots.isEnabled();
+	}
+
+	private void doInsertChunked(final String collectionName, Collection<? extends Object> batchToSave,
+			ExecutorService conversionExecutor, int parallelism, ChunkedInsertResult result) {
+
+		LinkedList<Future<ConvertedChunk>> pending = new LinkedList<Future<ConvertedChunk>>();
+		Iterator<? extends Object> iterator = batchToSave.iterator();
+
+		while (iterator.hasNext() || !pending.isEmpty()) {
+			while (iterator.hasNext() && pending.size() <= Math.max(parallelism, 0)) {
+				final List<Object> chunk = nextInsertChunk(iterator);
+				FutureTask<ConvertedChunk> conversion = new FutureTask<ConvertedChunk>(new Callable<ConvertedChunk>() {
+					public ConvertedChunk call() {
+						try {
+							return new ConvertedChunk(chunk, convertInsertChunk(collectionName, chunk, mongoConverter), null);
+						} catch (RuntimeException e) {
+							return new ConvertedChunk(chunk, null, e);
+						}
+					}
+				});
+				if (conversionExecutor == null) {
+					conversion.run();
+				} else {
+					conversionExecutor.execute(conversion);
+				}
+				pending.add(conversion);
+			}
+
+			ConvertedChunk converted;
+			try {
+				converted = pending.removeFirst().get();
+			} catch (InterruptedException e) {
+				for (Future<ConvertedChunk> future : pending) {
+					future.cancel(false);
+				}
+				Thread.currentThread().interrupt();
+				throw new DataAccessResourceFailureException("Interrupted while converting documents to insert", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+
+			if (converted.failure != null) {
+				result.addFailure(converted.objects, converted.failure);
+			} else {
+				insertConvertedChunk(collectionName, converted.objects, converted.documents, result);
+			}
+		}
+	}
+
+	private <T> List<T> nextInsertChunk(Iterator<? extends T> iterator) {
+		List<T> chunk = new ArrayList<T>();
+		while (iterator.hasNext() && chunk.size() < insertChunkSize) {
+			chunk.add(iterator.next());
+		}
+		return chunk;
+	}
+
+	private <T> List<DBObject> convertInsertChunk(String collectionName, List<T> chunk, MongoWriter<T> writer) {
+
+		boolean batchEvents = batchEventSize > 0;
+		if (batchEvents) {
+			emitBatchEvents(BeforeConvertBatchEvent.class, collectionName, chunk, null);
+		}
+
+		List<DBObject> dbObjectList = new ArrayList<DBObject>(chunk.size());
+		for (T o : chunk) {
+
+			initializeVersionProperty(o);
+			BasicDBObject dbDoc = new BasicDBObject();
+
+			if (!batchEvents) {
+				emitBeforeConvert(o);
+			}
+			writer.write(o, dbDoc);
+
+			if (!batchEvents) {
+				emitBeforeSave(o, dbDoc);
+			}
+			dbObjectList.add(dbDoc);
+		}
+
+		if (batchEvents) {
+			emitBatchEvents(BeforeSaveBatchEvent.class, collectionName, chunk, dbObjectList);
+		}
+		return dbObjectList;
+	}
+
+	/**
+	 * Publishes one batch event per {@link #setBatchEventSize(int)} entities.
+	 * 
+	 * @param documents the converted documents matching the entities, {@literal null} before conversion.
+	 */
+	@SuppressWarnings("rawtypes")
+	private <T> void emitBatchEvents(Class<? extends BatchMappingEvent> eventType, String collectionName,
+			List<T> entities, List<DBObject> documents) {
+
+		if (entities.isEmpty() || !hasListeners(eventType, entities.get(0).getClass())) {
+			return;
+		}
+		for (int from = 0; from < entities.size(); from += batchEventSize) {
+			int to = Math.min(from + batchEventSize, entities.size());
+			List<T> batch = Collections.unmodifiableList(entities.subList(from, to));
+			List<DBObject> batchDocuments = documents == null ? null : Collections.unmodifiableList(documents.subList(
+					from, to));
+			ApplicationEvent event;
+			if (eventType == BeforeConvertBatchEvent.class) {
+				event = new BeforeConvertBatchEvent<T>(batch, collectionName);
+			} else if (eventType == BeforeSaveBatchEvent.class) {
+				event = new BeforeSaveBatchEvent<T>(batch, batchDocuments, collectionName);
+			} else {
+				event = new AfterSaveBatchEvent<T>(batch, batchDocuments, collectionName);
+			}
+			eventPublisher.publishEvent(event);
+		}
+	}
+
+	/**
+	 * Sends a converted chunk, split further so that no message exceeds the configured encoded size. Sizes are
+	 * estimated from the document contents without encoding them. Failures are rethrown if no result is given.
+	 */
+	private <T> void insertConvertedChunk(String collectionName, List<T> objects, List<DBObject> documents,
+			ChunkedInsertResult result) {
+
+		int from = 0;
+		long bytes = 0;
+		for (int i = 0; i < documents.size(); i++) {
+			int size = insertChunkBytes > 0 ? BsonSizes.document(documents.get(i)) : 0;
+			if (i > from && bytes + size > insertChunkBytes) {
+				insertSlice(collectionName, objects, documents, from, i, result);
+				from = i;
+				bytes = 0;
+			}
+			bytes += size;
+		}
+		if (from < documents.size()) {
+			insertSlice(collectionName, objects, documents, from, documents.size(), result);
+		}
+	}
+
+	/**
+	 * Inserts a slice of converted documents. With a result the slice is sent as an ordered insert so that the
+	 * documents inserted before a failing one are reported as inserted and only the rest as failed.
+	 */
+	private <T> void insertSlice(String collectionName, List<T> objects, List<DBObject> documents, int from, int to,
+			ChunkedInsertResult result) {
+
+		List<DBObject> slice = documents.subList(from, to);
+		int inserted = slice.size();
+		RuntimeException failure = null;
+		if (result == null) {
+			insertDBObjectList(collectionName, slice);
+		} else {
+			try {
+				inserted = insertDBObjectListOrdered(collectionName, slice);
+			} catch (PartialInsertException e) {
+				inserted = e.inserted;
+				failure = e.cause;
+			} catch (RuntimeException e) {
+				inserted = 0;
+				failure = e;
+			}
+		}
+
+		boolean batchEvents = batchEventSize > 0;
+		for (int i = 0; i < inserted; i++) {
+			T obj = objects.get(from + i);
+			Object id = slice.get(i).get(ID_FIELD);
+			populateIdIfNecessary(obj, id instanceof ObjectId ? id : null);
+			entitySnapshots.put(obj, slice.get(i));
+			if (!batchEvents) {
+				emitAfterSave(obj, slice.get(i));
+			}
+		}
+		if (batchEvents && inserted > 0) {
+			emitBatchEvents(AfterSaveBatchEvent.class, collectionName, objects.subList(from, from + inserted),
+					slice.subList(0, inserted));
+		}
+		if (result != null) {
+			result.addInserted(inserted);
+			if (failure != null) {
+				result.addFailure(new ArrayList<T>(objects.subList(from + inserted, to)), failure);
+			}
+		}
+	}
+
+	/**
+	 * Inserts the documents with an ordered insert write command, which reports how many documents were inserted
+	 * before the first failing one. Servers without write commands (before 2.6) fall back to a plain batch insert,
+	 * where a failure can only be reported for the whole list.
+	 * 
+	 * @return the number of inserted documents
+	 * @throws PartialInsertException if a document could not be inserted
+	 */
+	private int insertDBObjectListOrdered(final String collectionName, final List<DBObject> documents) {
+
+		if (!insertCommandSupported) {
+			insertDBObjectList(collectionName, documents);
+			return documents.size();
+		}
+
+		for (DBObject document : documents) {
+			if (document.get(ID_FIELD) == null) {
+				document.put(ID_FIELD, new ObjectId());
+			}
+		}
+		final BasicDBObject command = new BasicDBObject("insert", collectionName);
+		command.put("documents", documents);
+		command.put("ordered", true);
+		WriteConcern writeConcernToUse = prepareWriteConcern(new MongoAction(writeConcern,
+				MongoActionOperation.INSERT_LIST, collectionName, null, null, null));
+		if (writeConcernToUse != null) {
+			BasicDBObject concern = writeConcernToUse.getCommand();
+			concern.removeField("getlasterror");
+			command.put("writeConcern", concern);
+		}
+
+		CommandResult commandResult = executeTimed(collectionName, "insertList", new CollectionCallback<CommandResult>() {
+			public CommandResult doInCollection(DBCollection collection) throws MongoException, DataAccessException {
+				return collection.getDB().command(command);
+			}
+		});
+		if (!commandResult.ok()) {
+			Object code = commandResult.get("code");
+			String message = commandResult.getErrorMessage();
+			if ((code instanceof Number && ((Number) code).intValue() == COMMAND_NOT_FOUND)
+					|| (message != null && message.startsWith("no such cmd"))) {
+				insertCommandSupported = false;
+				return insertDBObjectListOrdered(collectionName, documents);
+			}
+			throw potentiallyConvertRuntimeException(commandResult.getException());
+		}
+
+		int inserted = commandResult.getInt("n", documents.size());
+		Object writeErrors = commandResult.get("writeErrors");
+		if (writeErrors instanceof List && !((List<?>) writeErrors).isEmpty()) {
+			DBObject writeError = (DBObject) ((List<?>) writeErrors).get(0);
+			throw new PartialInsertException(((Number) writeError.get("index")).intValue(),
+					potentiallyConvertRuntimeException(writeErrorException(writeError)));
+		}
+		Object writeConcernError = commandResult.get("writeConcernError");
+		if (writeConcernError instanceof DBObject) {
+			throw new PartialInsertException(inserted,
+					potentiallyConvertRuntimeException(writeErrorException((DBObject) writeConcernError)));
+		}
+		return inserted;
+	}
+
+	/**
+	 * Creates the exception for a write error reported by a write command. Duplicate key errors are created as
+	 * {@link MongoException.DuplicateKey} since the exception translator throws instead of returning the translation
+	 * for a plain {@link MongoException} carrying a duplicate key code.
+	 */
+	private static MongoException writeErrorException(DBObject writeError) {
+		Object code = writeError.get("code");
+		int errorCode = code instanceof Number ? ((Number) code).intValue() : -1;
+		String message = String.valueOf(writeError.get("errmsg"));
+		return errorCode == 11000 || errorCode == 11001 ? new MongoException.DuplicateKey(errorCode, message)
+				: new MongoException(errorCode, message);
 	}
 
-	protected <T> void doInsertAll(Collection<? extends T> listToSave, MongoWriter<T> writer) {
-		Map<String, List<T>> objs = new HashMap<String, List<T>>();
+	/**
+	 * Signals a failed ordered insert after the given number of documents had been inserted.
+	 */
+	@SuppressWarnings("serial")
+	private static class PartialInsertException extends RuntimeException {
+		private final int inserted;
+		private final RuntimeException cause;
 
-		for (T o : listToSave) {
+		PartialInsertException(int inserted, RuntimeException cause) {
+			super(cause);
+			this.inserted = inserted;
+			this.cause = cause;
+		}
+	}
 
-			MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(o.getClass());
-			if (entity == null) {
-				throw new InvalidDataAccessApiUsageException("No Persitent Entity information found for the class "
-						+ o.getClass().getName());
+	/**
+	 * Converts batches of fetched documents on an executor and collects the results in submission order.
+	 */
+	private static class ParallelConversion<T> {
+		private final ExecutorService executor;
+		private final int batchSize;
+		private final DbObjectCallback<T> objectCallback;
+		private final AtomicLong convertNanos;
+		private final List<Future<List<T>>> batches = new ArrayList<Future<List<T>>>();
+		private List<DBObject> buffer;
+
+		ParallelConversion(ExecutorService executor, int batchSize, DbObjectCallback<T> objectCallback, boolean timed) {
+			this.executor = executor;
+			this.batchSize = batchSize;
+			this.objectCallback = objectCallback;
+			this.convertNanos = timed ? new AtomicLong() : null;
+			this.buffer = new ArrayList<DBObject>(batchSize);
+		}
+
+		void add(DBObject object) {
+			buffer.add(object);
+			if (buffer.size() >= batchSize) {
+				submit();
 			}
-			String collection = entity.getCollection();
+		}
 
-			List<T> objList = objs.get(collection);
-			if (null == objList) {
-				objList = new ArrayList<T>();
-				objs.put(collection, objList);
+		/**
+		 * Waits for all batches and appends their entities to the given result in cursor order.
+		 */
+		void finish(List<T> result) {
+			if (!buffer.isEmpty()) {
+				submit();
+			}
+			for (int i = 0; i < batches.size(); i++) {
+				try {
+					result.addAll(batches.get(i).get());
+				} catch (InterruptedException e) {
+					cancel();
+					Thread.currentThread().interrupt();
+					throw new DataAccessResourceFailureException("Interrupted while converting documents", e);
+				} catch (ExecutionException e) {
+					cancel();
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new DataAccessResourceFailureException(cause.getMessage(), cause);
+				}
 			}
-			objList.add(o);
-
 		}
 
-		for (Map.Entry<String, List<T>> entry : objs.entrySet()) {
-			doInsertBatch(entry.getKey(), entry.getValue(), this.mongoConverter);
+		void cancel() {
+			for (Future<List<T>> batch : batches) {
+				batch.cancel(false);
+			}
 		}
-	}
-
-	protected <T> void doInsertBatch(String collectionName, Collection<? extends T> batchToSave, MongoWriter<T> writer) {
-
-		Assert.notNull(writer);
 
-		List<DBObject> dbObjectList = new ArrayList<DBObject>();
-		for (T o : batchToSave) {
+		long getConvertNanos() {
+			return convertNanos == null ? 0L : convertNanos.get();
+		}
 
-			initializeVersionProperty(o);
-			BasicDBObject dbDoc = new BasicDBObject();
+		private void submit() {
+			final List<DBObject> objects = buffer;
+			buffer = new ArrayList<DBObject>(batchSize);
+			FutureTask<List<T>> task = new FutureTask<List<T>>(new Callable<List<T>>() {
+				public List<T> call() {
+					long start = convertNanos == null ? 0L : System.nanoTime();
+					List<T> converted = new ArrayList<T>(objects.size());
+					for (DBObject object : objects) {
+						converted.add(objectCallback.doWith(object));
+					}
+					if (convertNanos != null) {
+						convertNanos.addAndGet(System.nanoTime() - start);
+					}
+					return converted;
+				}
+			});
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+			batches.add(task);
+		}
+	}
 
-			maybeEmitEvent(new BeforeConvertEvent<T>(o));
-			writer.write(o, dbDoc);
+	private static class ConvertedChunk {
+		private final List<Object> objects;
+		private final List<DBObject> documents;
+		private final RuntimeException failure;
 
-			maybeEmitEvent(new BeforeSaveEvent<T>(o, dbDoc));
-			dbObjectList.add(dbDoc);
-		}
-		List<ObjectId> ids = insertDBObjectList(collectionName, dbObjectList);
-		int i = 0;
-		for (T obj : batchToSave) {
-			if (i < ids.size()) {
-				populateIdIfNecessary(obj, ids.get(i));
-				maybeEmitEvent(new AfterSaveEvent<T>(obj, dbObjectList.get(i)));
-			}
-			i++;
+		ConvertedChunk(List<Object> objects, List<DBObject> documents, RuntimeException failure) {
+			this.objects = objects;
+			this.documents = documents;
+			this.failure = failure;
 		}
 	}
 
@@ -912,14 +2003,14 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 
 			BasicDBObject dbObject = new BasicDBObject();
 
-			maybeEmitEvent(new BeforeConvertEvent<T>(objectToSave));
+			emitBeforeConvert(objectToSave);
 			this.mongoConverter.write(objectToSave, dbObject);
 
-			maybeEmitEvent(new BeforeSaveEvent<T>(objectToSave, dbObject));
+			emitBeforeSave(objectToSave, dbObject);
 			Update update = Update.fromDBObject(dbObject, ID_FIELD);
 
 			doUpdate(collectionName, query, update, objectToSave.getClass(), false, false);
-			maybeEmitEvent(new AfterSaveEvent<T>(objectToSave, dbObject));
+			emitAfterSave(objectToSave, dbObject);
 		}
 	}
 
@@ -930,7 +2021,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 
 		DBObject dbDoc = new BasicDBObject();
 
-		maybeEmitEvent(new BeforeConvertEvent<T>(objectToSave));
+		emitBeforeConvert(objectToSave);
 
 		if (!(objectToSave instanceof String)) {
 			writer.write(objectToSave, dbDoc);
@@ -942,18 +2033,19 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 			}
 		}
 
-		maybeEmitEvent(new BeforeSaveEvent<T>(objectToSave, dbDoc));
+		emitBeforeSave(objectToSave, dbDoc);
 		Object id = saveDBObject(collectionName, dbDoc, objectToSave.getClass());
+		entitySnapshots.put(objectToSave, dbDoc);
 
 		populateIdIfNecessary(objectToSave, id);
-		maybeEmitEvent(new AfterSaveEvent<T>(objectToSave, dbDoc));
+		emitAfterSave(objectToSave, dbDoc);
 	}
 
 	protected Object insertDBObject(final String collectionName, final DBObject dbDoc, final Class<?> entityClass) {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Inserting DBObject containing fields: " + dbDoc.keySet() + " in collection: " + collectionName);
 		}
-		return execute(collectionName, new CollectionCallback<Object>() {
+		return executeTimed(collectionName, "insert", new CollectionCallback<Object>() {
 			public Object doInCollection(DBCollection collection) throws MongoException, DataAccessException {
 				MongoAction mongoAction = new MongoAction(writeConcern, MongoActionOperation.INSERT, collectionName,
 						entityClass, dbDoc, null);
@@ -974,7 +2066,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Inserting list of DBObjects containing " + dbDocList.size() + " items");
 		}
-		execute(collectionName, new CollectionCallback<Void>() {
+		executeTimed(collectionName, "insertList", new CollectionCallback<Void>() {
 			public Void doInCollection(DBCollection collection) throws MongoException, DataAccessException {
 				MongoAction mongoAction = new MongoAction(writeConcern, MongoActionOperation.INSERT_LIST, collectionName, null,
 						null, null);
@@ -1003,7 +2095,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug("Saving DBObject containing fields: " + dbDoc.keySet());
 		}
-		return execute(collectionName, new CollectionCallback<Object>() {
+		return executeTimed(collectionName, "save", new CollectionCallback<Object>() {
 			public Object doInCollection(DBCollection collection) throws MongoException, DataAccessException {
 				MongoAction mongoAction = new MongoAction(writeConcern, MongoActionOperation.SAVE, collectionName, entityClass,
 						dbDoc, null);
@@ -1043,7 +2135,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	protected WriteResult doUpdate(final String collectionName, final Query query, final Update update,
 			final Class<?> entityClass, final boolean upsert, final boolean multi) {
 
-		return execute(collectionName, new CollectionCallback<WriteResult>() {
+		return executeTimed(collectionName, upsert ? "upsert" : "update", new CollectionCallback<WriteResult>() {
 			public WriteResult doInCollection(DBCollection collection) throws MongoException, DataAccessException {
 
 				MongoPersistentEntity<?> entity = entityClass == null ? null : getPersistentEntity(entityClass);
@@ -1061,8 +2153,10 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 				MongoAction mongoAction = new MongoAction(writeConcern, MongoActionOperation.UPDATE, collectionName,
 						entityClass, updateObj, queryObj);
 				WriteConcern writeConcernToUse = prepareWriteConcern(mongoAction);
+				long start = slowQueryStart();
 				WriteResult writeResult = writeConcernToUse == null ? collection.update(queryObj, updateObj, upsert, multi)
 						: collection.update(queryObj, updateObj, upsert, multi, writeConcernToUse);
+				logIfSlow(collectionName, upsert ? "upsert" : "update", start, queryObj, null, null);
 
 				if (entity != null && entity.hasVersionProperty() && !multi) {
 					if (writeResult.getN() == 0) {
@@ -1122,6 +2216,64 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		return new Query(where(idProp.getFieldName()).is(idProperty));
 	}
 
+	/**
+	 * 读取实体的ID值,实体没有ID属性时返回{@literal null}. ID字段按实体类缓存,不会每次都反射查找.
+	 *
+	 * @param object
+	 * @return
+	 */
+	public Object getIdValue(Object object) {
+
+		if (object == null) {
+			return null;
+		}
+
+		Class<?> type = object.getClass();
+		Field idField = idFields.get(type);
+
+		if (idField == null) {
+			MongoPersistentProperty idProp = getIdPropertyFor(type);
+			if (idProp == null) {
+				return null;
+			}
+			idField = idProp.getField();
+			ReflectionUtils.makeAccessible(idField);
+			idFields.put(type, idField);
+		}
+
+		return ReflectionUtils.getField(idField, object);
+	}
+
+	/**
+	 * 按给定的ID顺序排列实体,用于$in查询后恢复调用方的顺序. ID按toString()比较,可同时兼容ObjectId和String.
+	 *
+	 * @param ids 期望的顺序
+	 * @param entities 查询结果
+	 * @param missingIds 不为{@literal null}时收集没有查到的ID
+	 * @return
+	 */
+	public <T, K> List<T> sortByIds(Collection<K> ids, List<T> entities, Collection<? super K> missingIds) {
+
+		Map<String, T> entitiesById = new HashMap<String, T>(entities.size() * 4 / 3 + 1);
+		for (T entity : entities) {
+			Object id = getIdValue(entity);
+			if (id != null) {
+				entitiesById.put(id.toString(), entity);
+			}
+		}
+
+		List<T> sorted = new ArrayList<T>(ids.size());
+		for (K id : ids) {
+			T entity = id == null ? null : entitiesById.get(id.toString());
+			if (entity != null) {
+				sorted.add(entity);
+			} else if (missingIds != null) {
+				missingIds.add(id);
+			}
+		}
+		return sorted;
+	}
+
 	private void assertUpdateableIdIfNotSet(Object entity) {
 
 		MongoPersistentEntity<?> persistentEntity = mappingContext.getPersistentEntity(entity.getClass());
@@ -1155,7 +2307,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		final DBObject queryObject = query.getQueryObject();
 		final MongoPersistentEntity<?> entity = getPersistentEntity(entityClass);
 
-		execute(collectionName, new CollectionCallback<Void>() {
+		executeTimed(collectionName, "remove", new CollectionCallback<Void>() {
 			public Void doInCollection(DBCollection collection) throws MongoException, DataAccessException {
 
 				DBObject dboq = mapper.getMappedObject(queryObject, entity);
@@ -1168,8 +2320,10 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 					LOGGER.debug("Remove using query: {} in collection: {}.", new Object[] { dboq, collection.getName() });
 				}
 
+				long start = slowQueryStart();
 				WriteResult wr = writeConcernToUse == null ? collection.remove(dboq) : collection.remove(dboq,
 						writeConcernToUse);
+				logIfSlow(collectionName, "remove", start, dboq, null, null);
 				handleAnyWriteResultErrors(wr, dboq, MongoActionOperation.REMOVE);
 				return null;
 			}
@@ -1181,13 +2335,47 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	}
 
 	public <T> List<T> findAll(Class<T> entityClass) {
-		return executeFindMultiInternal(new FindCallback(null), null, new ReadDbObjectCallback<T>(mongoConverter,
-				entityClass), determineCollectionName(entityClass));
+		return executeFindMultiInternal(new FindCallback(null, null, readPreference), null,
+				new ReadDbObjectCallback<T>(mongoConverter, entityClass), determineCollectionName(entityClass));
 	}
 
 	public <T> List<T> findAll(Class<T> entityClass, String collectionName) {
-		return executeFindMultiInternal(new FindCallback(null), null, new ReadDbObjectCallback<T>(mongoConverter,
-				entityClass), collectionName);
+		return executeFindMultiInternal(new FindCallback(null, null, readPreference), null,
+				new ReadDbObjectCallback<T>(mongoConverter, entityClass), collectionName);
+	}
+
+	/**
+	 * 流式查询,结果在迭代时逐条转换,不会一次性加载到内存. 调用方需在使用完毕后关闭返回的迭代器.
+	 *
+	 * @param query 查询条件,为{@literal null}时返回集合中的全部文档
+	 * @param entityClass
+	 * @return
+	 */
+	public <T> CloseableIterator<T> stream(Query query, Class<T> entityClass) {
+		return stream(query, entityClass, determineCollectionName(entityClass));
+	}
+
+	public <T> CloseableIterator<T> stream(Query query, Class<T> entityClass, String collectionName) {
+
+		if (query == null) {
+			return executeStreamInternal(new FindCallback(null, null, readPreference), null,
+					new ReadDbObjectCallback<T>(mongoConverter, entityClass), collectionName);
+		}
+
+		MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(entityClass);
+		DBObject mappedQuery = mapper.getMappedObject(query.getQueryObject(), entity);
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(String.format("stream using query: %s fields: %s for class: %s in collection: %s",
+					serializeToJsonSafely(mappedQuery), query.getFieldsObject(), entityClass, collectionName));
+		}
+
+		return executeStreamInternal(new FindCallback(mappedQuery, query.getFieldsObject(), readPreference),
+				new QueryCursorPreparer(query), new ReadDbObjectCallback<T>(mongoConverter, entityClass), collectionName);
+	}
+
+	public <T> CloseableIterator<T> streamAll(Class<T> entityClass) {
+		return stream(null, entityClass, determineCollectionName(entityClass));
 	}
 
 	public <T> MapReduceResults<T> mapReduce(String inputCollectionName, String mapFunction, String reduceFunction,
@@ -1385,11 +2573,62 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	}
 
 	protected <T> void maybeEmitEvent(MongoMappingEvent<T> event) {
-		if (null != eventPublisher) {
+		Class<?> entityType = event instanceof AfterLoadEvent ? ((AfterLoadEvent<?>) event).getType() : event.getSource()
+				.getClass();
+		if (hasListeners(event.getClass(), entityType)) {
 			eventPublisher.publishEvent(event);
 		}
 	}
 
+	/**
+	 * Returns whether any listener would receive an event of the given type for the given entity type, so that events
+	 * nobody listens to are not even created.
+	 */
+	private boolean hasListeners(Class<? extends ApplicationEvent> eventType, Class<?> entityType) {
+		MappingEventDispatcher dispatcher = eventDispatcher;
+		return dispatcher != null && dispatcher.hasListeners(eventType, entityType);
+	}
+
+	private <T> void emitBeforeConvert(T object) {
+		if (hasListeners(BeforeConvertEvent.class, object.getClass())) {
+			eventPublisher.publishEvent(new BeforeConvertEvent<T>(object));
+		}
+	}
+
+	private <T> void emitBeforeSave(T object, DBObject dbo) {
+		if (hasListeners(BeforeSaveEvent.class, object.getClass())) {
+			eventPublisher.publishEvent(new BeforeSaveEvent<T>(object, dbo));
+		}
+	}
+
+	private <T> void emitAfterSave(T object, DBObject dbo) {
+		if (hasListeners(AfterSaveEvent.class, object.getClass())) {
+			eventPublisher.publishEvent(new AfterSaveEvent<T>(object, dbo));
+		}
+	}
+
+	/**
+	 * Re-inspects the application context for mapping event listeners. Needed only if listeners are added after the
+	 * first event was emitted.
+	 */
+	public void refreshEventListeners() {
+		MappingEventDispatcher dispatcher = eventDispatcher;
+		if (dispatcher != null) {
+			dispatcher.refresh();
+		}
+	}
+
+	/**
+	 * Makes batch inserts publish one {@link BeforeConvertBatchEvent}, {@link BeforeSaveBatchEvent} and
+	 * {@link AfterSaveBatchEvent} per batch of up to the given number of documents instead of the per-document mapping
+	 * events. {@code 0} (the default) keeps the per-document events.
+	 * 
+	 * @param batchEventSize
+	 */
+	public void setBatchEventSize(int batchEventSize) {
+		this.batchEventSize = batchEventSize;
+	}
+
 	/**
 	 * Create the specified collection using the provided options
 	 * 
@@ -1426,8 +2665,8 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(entityClass);
 		DBObject mappedQuery = mapper.getMappedObject(query, entity);
 
-		return executeFindOneInternal(new FindOneCallback(mappedQuery, fields), new ReadDbObjectCallback<T>(readerToUse,
-				entityClass), collectionName);
+		return executeFindOneInternal(new FindOneCallback(mappedQuery, fields, readPreference),
+				new ReadDbObjectCallback<T>(readerToUse, entityClass), collectionName);
 	}
 
 	/**
@@ -1460,8 +2699,8 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 					serializeToJsonSafely(query), fields, entityClass, collectionName));
 		}
 
-		return executeFindMultiInternal(new FindCallback(mapper.getMappedObject(query, entity), fields), preparer,
-				objectCallback, collectionName);
+		return executeFindMultiInternal(new FindCallback(mapper.getMappedObject(query, entity), fields, readPreference),
+				preparer, objectCallback, collectionName);
 	}
 
 	/**
@@ -1481,8 +2720,8 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		}
 		EntityReader<? super T, DBObject> readerToUse = this.mongoConverter;
 		MongoPersistentEntity<?> entity = mappingContext.getPersistentEntity(entityClass);
-		return executeFindMultiInternal(new FindCallback(mapper.getMappedObject(query, entity), fields), null,
-				new ReadDbObjectCallback<T>(readerToUse, entityClass), collectionName);
+		return executeFindMultiInternal(new FindCallback(mapper.getMappedObject(query, entity), fields, readPreference),
+				null, new ReadDbObjectCallback<T>(readerToUse, entityClass), collectionName);
 	}
 
 	protected DBObject convertToDbObject(CollectionOptions collectionOptions) {
@@ -1614,15 +2853,46 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	private <T> T executeFindOneInternal(CollectionCallback<DBObject> collectionCallback,
 			DbObjectCallback<T> objectCallback, String collectionName) {
 
+		long start = DaoMetrics.start();
+		long slowStart = slowQueryStart();
+		long convertNanos = 0;
+		boolean success = false;
 		try {
-			T result = objectCallback.doWith(collectionCallback.doInCollection(getAndPrepareCollection(getDb(),
-					collectionName)));
+			DBObject document = collectionCallback.doInCollection(getAndPrepareCollection(getDb(), collectionName));
+			T result;
+			if (start == 0L && slowStart == 0L) {
+				result = objectCallback.doWith(document);
+			} else {
+				long convertStart = System.nanoTime();
+				result = objectCallback.doWith(document);
+				convertNanos = System.nanoTime() - convertStart;
+			}
+			success = true;
 			return result;
 		} catch (RuntimeException e) {
 			throw potentiallyConvertRuntimeException(e);
+		} finally {
+			String operation = operationOf(collectionCallback);
+			DaoMetrics.record(collectionName, operation, start, success);
+			if (success) {
+				if (start != 0L) {
+					DaoMetrics.recordNanos(collectionName, "convert", convertNanos);
+				}
+				logFindIfSlow(collectionName, operation, slowStart, convertNanos, collectionCallback, null);
+			}
 		}
 	}
 
+	private static String operationOf(CollectionCallback<DBObject> collectionCallback) {
+		if (collectionCallback instanceof FindAndModifyCallback) {
+			return "findAndModify";
+		}
+		if (collectionCallback instanceof FindAndRemoveCallback) {
+			return "findAndRemove";
+		}
+		return "findOne";
+	}
+
 	/**
 	 * Internal method using callback to do queries against the datastore that requires reading a collection of objects.
 	 * It will take the following steps
@@ -1644,6 +2914,13 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	private <T> List<T> executeFindMultiInternal(CollectionCallback<DBCursor> collectionCallback,
 			CursorPreparer preparer, DbObjectCallback<T> objectCallback, String collectionName) {
 
+		long start = DaoMetrics.start();
+		long slowStart = slowQueryStart();
+		boolean timed = start != 0L || slowStart != 0L;
+		long convertNanos = 0;
+		boolean success = false;
+		ExecutorService conversionExecutor = getRoot().readConversionExecutor;
+		ParallelConversion<T> parallel = null;
 		try {
 
 			DBCursor cursor = null;
@@ -1660,19 +2937,84 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 
 				while (cursor.hasNext()) {
 					DBObject object = cursor.next();
-					result.add(objectCallback.doWith(object));
+					if (parallel != null) {
+						parallel.add(object);
+					} else if (!timed) {
+						result.add(objectCallback.doWith(object));
+					} else {
+						long convertStart = System.nanoTime();
+						result.add(objectCallback.doWith(object));
+						convertNanos += System.nanoTime() - convertStart;
+					}
+					if (parallel == null && conversionExecutor != null && result.size() >= parallelReadThreshold) {
+						parallel = new ParallelConversion<T>(conversionExecutor, parallelReadBatchSize, objectCallback,
+								timed);
+					}
+				}
+
+				if (parallel != null) {
+					parallel.finish(result);
+					convertNanos += parallel.getConvertNanos();
 				}
 
+				success = true;
 				return result;
 
 			} finally {
 
+				if (parallel != null && !success) {
+					parallel.cancel();
+				}
+
 				if (cursor != null) {
 					cursor.close();
 				}
 			}
 		} catch (RuntimeException e) {
 			throw potentiallyConvertRuntimeException(e);
+		} finally {
+			DaoMetrics.record(collectionName, "find", start, success);
+			if (success) {
+				if (start != 0L) {
+					DaoMetrics.recordNanos(collectionName, "convert", convertNanos);
+				}
+				logFindIfSlow(collectionName, "find", slowStart, convertNanos, collectionCallback, preparer);
+			}
+		}
+	}
+
+	/**
+	 * Internal method opening a {@link DBCursor} like {@link #executeFindMultiInternal} but handing it to a
+	 * {@link CloseableIterator} instead of draining it into a {@link List}. The cursor is closed once it is exhausted,
+	 * when {@link CloseableIterator#close()} is called or when opening or preparing it fails.
+	 *
+	 * @param collectionCallback the callback to retrieve the {@link DBCursor} with
+	 * @param preparer the {@link CursorPreparer} to potentially modify the {@link DBCursor} before ireating over it
+	 * @param objectCallback the {@link DbObjectCallback} to transform {@link DBObject}s into the actual domain type
+	 * @param collectionName the collection to be queried
+	 * @return
+	 */
+	private <T> CloseableIterator<T> executeStreamInternal(CollectionCallback<DBCursor> collectionCallback,
+			CursorPreparer preparer, DbObjectCallback<T> objectCallback, String collectionName) {
+
+		DBCursor cursor = null;
+
+		try {
+
+			cursor = collectionCallback.doInCollection(getAndPrepareCollection(getDb(), collectionName));
+
+			if (preparer != null) {
+				cursor = preparer.prepare(cursor);
+			}
+
+			return new CursorBackedIterator<T>(cursor, objectCallback);
+
+		} catch (RuntimeException e) {
+
+			if (cursor != null) {
+				cursor.close();
+			}
+			throw potentiallyConvertRuntimeException(e);
 		}
 	}
 
@@ -1735,6 +3077,9 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 			throw new InvalidDataAccessApiUsageException("No Persitent Entity information found for the class "
 					+ entityClass.getName());
 		}
+		if (lazyIndexCreator != null) {
+			lazyIndexCreator.ensureIndexes(entity);
+		}
 		return entity.getCollection();
 	}
 
@@ -1789,6 +3134,10 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	 * @return
 	 */
 	private RuntimeException potentiallyConvertRuntimeException(RuntimeException ex) {
+		if (ex instanceof MongoException
+				&& ((MongoException) ex).getCode() == QueryTimeLimitExceededException.ERROR_CODE) {
+			return new QueryTimeLimitExceededException(ex.getMessage(), ex);
+		}
 		RuntimeException resolved = this.exceptionTranslator.translateExceptionIfPossible(ex);
 		return resolved == null ? ex : resolved;
 	}
@@ -1829,14 +3178,16 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	 * @author Oliver Gierke
 	 * @author Thomas Risberg
 	 */
-	private static class FindOneCallback implements CollectionCallback<DBObject> {
+	private static class FindOneCallback implements CollectionCallback<DBObject>, LoggableQuery {
 
 		private final DBObject query;
 		private final DBObject fields;
+		private final ReadPreference readPreference;
 
-		public FindOneCallback(DBObject query, DBObject fields) {
+		public FindOneCallback(DBObject query, DBObject fields, ReadPreference readPreference) {
 			this.query = query;
 			this.fields = fields;
+			this.readPreference = readPreference;
 		}
 
 		public DBObject doInCollection(DBCollection collection) throws MongoException, DataAccessException {
@@ -1844,15 +3195,32 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 				if (LOGGER.isDebugEnabled()) {
 					LOGGER.debug("findOne using query: " + query + " in db.collection: " + collection.getFullName());
 				}
-				return collection.findOne(query);
+				return readPreference == null ? collection.findOne(query) : collection.findOne(query, null, readPreference);
 			} else {
 				if (LOGGER.isDebugEnabled()) {
 					LOGGER.debug("findOne using query: " + query + " fields: " + fields + " in db.collection: "
 							+ collection.getFullName());
 				}
-				return collection.findOne(query, fields);
+				return readPreference == null ? collection.findOne(query, fields) : collection.findOne(query, fields,
+						readPreference);
 			}
 		}
+
+		public DBObject getQuery() {
+			return query;
+		}
+
+		public DBObject getFields() {
+			return fields;
+		}
+
+		public DBObject getSort() {
+			return null;
+		}
+
+		public boolean isSingle() {
+			return true;
+		}
 	}
 
 	/**
@@ -1862,26 +3230,37 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	 * @author Oliver Gierke
 	 * @author Thomas Risberg
 	 */
-	private static class FindCallback implements CollectionCallback<DBCursor> {
+	private static class FindCallback implements CollectionCallback<DBCursor>, LoggableQuery {
 
 		private final DBObject query;
 		private final DBObject fields;
+		private final ReadPreference readPreference;
 
-		public FindCallback(DBObject query) {
-			this(query, null);
-		}
-
-		public FindCallback(DBObject query, DBObject fields) {
+		public FindCallback(DBObject query, DBObject fields, ReadPreference readPreference) {
 			this.query = query;
 			this.fields = fields;
+			this.readPreference = readPreference;
 		}
 
 		public DBCursor doInCollection(DBCollection collection) throws MongoException, DataAccessException {
-			if (fields == null) {
-				return collection.find(query);
-			} else {
-				return collection.find(query, fields);
-			}
+			DBCursor cursor = fields == null ? collection.find(query) : collection.find(query, fields);
+			return readPreference == null ? cursor : cursor.setReadPreference(readPreference);
+		}
+
+		public DBObject getQuery() {
+			return query;
+		}
+
+		public DBObject getFields() {
+			return fields;
+		}
+
+		public DBObject getSort() {
+			return null;
+		}
+
+		public boolean isSingle() {
+			return false;
 		}
 	}
 
@@ -1891,7 +3270,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 	 * 
 	 * @author Thomas Risberg
 	 */
-	private static class FindAndRemoveCallback implements CollectionCallback<DBObject> {
+	private static class FindAndRemoveCallback implements CollectionCallback<DBObject>, LoggableQuery {
 
 		private final DBObject query;
 		private final DBObject fields;
@@ -1906,9 +3285,25 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		public DBObject doInCollection(DBCollection collection) throws MongoException, DataAccessException {
 			return collection.findAndModify(query, fields, sort, true, null, false, false);
 		}
+
+		public DBObject getQuery() {
+			return query;
+		}
+
+		public DBObject getFields() {
+			return fields;
+		}
+
+		public DBObject getSort() {
+			return sort;
+		}
+
+		public boolean isSingle() {
+			return true;
+		}
 	}
 
-	private static class FindAndModifyCallback implements CollectionCallback<DBObject> {
+	private static class FindAndModifyCallback implements CollectionCallback<DBObject>, LoggableQuery {
 
 		private final DBObject query;
 		private final DBObject fields;
@@ -1929,6 +3324,39 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 			return collection.findAndModify(query, fields, sort, options.isRemove(), update, options.isReturnNew(),
 					options.isUpsert());
 		}
+
+		public DBObject getQuery() {
+			return query;
+		}
+
+		public DBObject getFields() {
+			return fields;
+		}
+
+		public DBObject getSort() {
+			return sort;
+		}
+
+		public boolean isSingle() {
+			return true;
+		}
+	}
+
+	/**
+	 * A find callback whose query can be recorded in the {@link SlowQueryLog}.
+	 */
+	private interface LoggableQuery {
+
+		DBObject getQuery();
+
+		DBObject getFields();
+
+		DBObject getSort();
+
+		/**
+		 * Whether the callback reads a single document.
+		 */
+		boolean isSingle();
 	}
 
 	/**
@@ -1953,25 +3381,91 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 		private final EntityReader<? super T, DBObject> reader;
 		private final Class<T> type;
 
+		private final boolean emitAfterLoad;
+		private final boolean emitAfterConvert;
+
 		public ReadDbObjectCallback(EntityReader<? super T, DBObject> reader, Class<T> type) {
 			Assert.notNull(reader);
 			Assert.notNull(type);
 			this.reader = reader;
 			this.type = type;
+			this.emitAfterLoad = hasListeners(AfterLoadEvent.class, type);
+			this.emitAfterConvert = hasListeners(AfterConvertEvent.class, type);
 		}
 
 		public T doWith(DBObject object) {
-			if (null != object) {
-				maybeEmitEvent(new AfterLoadEvent<T>(object, type));
+			if (emitAfterLoad && null != object) {
+				eventPublisher.publishEvent(new AfterLoadEvent<T>(object, type));
 			}
 			T source = reader.read(type, object);
-			if (null != source) {
-				maybeEmitEvent(new AfterConvertEvent<T>(object, source));
+			entitySnapshots.put(source, object);
+			if (emitAfterConvert && null != source) {
+				eventPublisher.publishEvent(new AfterConvertEvent<T>(object, source));
 			}
 			return source;
 		}
 	}
 
+	/**
+	 * {@link CloseableIterator} over an open {@link DBCursor} converting each {@link DBObject} with the given
+	 * {@link DbObjectCallback} only when it is requested.
+	 */
+	private class CursorBackedIterator<T> implements CloseableIterator<T> {
+
+		private final DBCursor cursor;
+		private final DbObjectCallback<T> objectCallback;
+		private boolean closed;
+
+		public CursorBackedIterator(DBCursor cursor, DbObjectCallback<T> objectCallback) {
+			this.cursor = cursor;
+			this.objectCallback = objectCallback;
+		}
+
+		public boolean hasNext() {
+
+			if (closed) {
+				return false;
+			}
+
+			try {
+				if (cursor.hasNext()) {
+					return true;
+				}
+			} catch (RuntimeException e) {
+				close();
+				throw potentiallyConvertRuntimeException(e);
+			}
+
+			close();
+			return false;
+		}
+
+		public T next() {
+
+			if (closed) {
+				throw new NoSuchElementException("Cursor already closed");
+			}
+
+			try {
+				return objectCallback.doWith(cursor.next());
+			} catch (RuntimeException e) {
+				close();
+				throw potentiallyConvertRuntimeException(e);
+			}
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Cannot remove from a cursor");
+		}
+
+		public void close() {
+			if (!closed) {
+				closed = true;
+				cursor.close();
+			}
+		}
+	}
+
 	private enum DefaultWriteConcernResolver implements WriteConcernResolver {
 
 		INSTANCE;
@@ -2000,7 +3494,7 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 			}
 
 			if (query.getSkip() <= 0 && query.getLimit() <= 0 && query.getSortObject() == null
-					&& !StringUtils.hasText(query.getHint())) {
+					&& !StringUtils.hasText(query.getHint()) && !WenwoQuery.hasCursorOptions(query)) {
 				return cursor;
 			}
 
@@ -2019,12 +3513,34 @@ public class WenwoMongoTemplate extends MongoTemplate implements Cloneable {
 				if (StringUtils.hasText(query.getHint())) {
 					cursorToUse = cursorToUse.hint(query.getHint());
 				}
+				if (query instanceof WenwoQuery) {
+					cursorToUse = prepareOptions(cursorToUse, (WenwoQuery) query);
+				}
 			} catch (RuntimeException e) {
 				throw potentiallyConvertRuntimeException(e);
 			}
 
 			return cursorToUse;
 		}
+
+		private DBCursor prepareOptions(DBCursor cursor, WenwoQuery options) {
+
+			DBCursor cursorToUse = cursor;
+
+			if (options.getBatchSize() > 0) {
+				cursorToUse = cursorToUse.batchSize(options.getBatchSize());
+			}
+			if (options.getMaxTimeMillis() > 0) {
+				cursorToUse = cursorToUse.addSpecial("$maxTimeMS", options.getMaxTimeMillis());
+			}
+			if (options.isNoCursorTimeout()) {
+				cursorToUse = cursorToUse.addOption(Bytes.QUERYOPTION_NOTIMEOUT);
+			}
+			if (options.getComment() != null) {
+				cursorToUse = cursorToUse.addSpecial("$comment", options.getComment());
+			}
+			return cursorToUse;
+		}
 	}
 
 	/**
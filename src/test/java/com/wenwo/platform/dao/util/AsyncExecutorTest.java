@@ -0,0 +1,146 @@
+package com.wenwo.platform.dao.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncExecutorTest {
+
+	private ExecutorService pool;
+
+	@Before
+	public void setUp() {
+		pool = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void blocksSubmitWhenPermitsAreTaken() throws Exception {
+		AsyncExecutor executor = new AsyncExecutor(pool, 2);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Object> first = executor.submit(new BlockingTask(release));
+		Future<Object> second = executor.submit(new BlockingTask(release));
+		assertEquals(0, executor.getAvailablePermits());
+
+		final AsyncExecutor submitter = executor;
+		final CountDownLatch submitted = new CountDownLatch(1);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				submitter.submit(new BlockingTask(new CountDownLatch(0)));
+				submitted.countDown();
+			}
+		});
+		thread.start();
+		assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+
+		release.countDown();
+		assertTrue(submitted.await(5, TimeUnit.SECONDS));
+		first.get(5, TimeUnit.SECONDS);
+		second.get(5, TimeUnit.SECONDS);
+		thread.join(5000);
+		awaitPermits(executor, 2);
+	}
+
+	@Test
+	public void returnsPermitWhenCancelledBeforeStart() throws Exception {
+		ExecutorService single = Executors.newSingleThreadExecutor();
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			// 占住唯一的线程,之后提交的任务在队列中等待
+			single.execute(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(200);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			AsyncExecutor executor = new AsyncExecutor(single, 1);
+			Future<Object> queued = executor.submit(new BlockingTask(release));
+			assertEquals(0, executor.getAvailablePermits());
+
+			assertTrue(queued.cancel(false));
+
+			assertEquals(1, executor.getAvailablePermits());
+			release.countDown();
+		} finally {
+			single.shutdownNow();
+		}
+	}
+
+	@Test
+	public void returnsPermitWhenTaskFails() throws Exception {
+		AsyncExecutor executor = new AsyncExecutor(pool, 1);
+		Future<Object> future = executor.submit(new Callable<Object>() {
+			public Object call() {
+				throw new IllegalStateException("failed");
+			}
+		});
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expected the task failure");
+		} catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof IllegalStateException);
+		}
+		awaitPermits(executor, 1);
+	}
+
+	@Test
+	public void propagatesCallerContext() throws Exception {
+		AsyncExecutor executor = new AsyncExecutor(pool, 1);
+		Callable<Object> context = new Callable<Object>() {
+			public Object call() {
+				return ReadYourWritesTracker.CONTEXT_PROPAGATOR.capture();
+			}
+		};
+
+		ReadYourWritesTracker.bindContext("user-1");
+		try {
+			assertEquals("user-1", executor.submit(context).get(5, TimeUnit.SECONDS));
+		} finally {
+			ReadYourWritesTracker.unbindContext();
+		}
+		assertNull(executor.submit(context).get(5, TimeUnit.SECONDS));
+	}
+
+	private static void awaitPermits(AsyncExecutor executor, int expected) throws InterruptedException {
+		// 许可在任务结束后由执行线程归还,可能略晚于Future完成
+		long deadline = System.currentTimeMillis() + 5000;
+		while (executor.getAvailablePermits() != expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, executor.getAvailablePermits());
+	}
+
+	private static class BlockingTask implements Callable<Object> {
+		private final CountDownLatch release;
+
+		BlockingTask(CountDownLatch release) {
+			this.release = release;
+		}
+
+		public Object call() throws Exception {
+			release.await(5, TimeUnit.SECONDS);
+			return null;
+		}
+	}
+}
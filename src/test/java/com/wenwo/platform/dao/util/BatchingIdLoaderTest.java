@@ -0,0 +1,133 @@
+package com.wenwo.platform.dao.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.BenchmarkFixtures;
+import org.springframework.data.mongodb.core.BenchmarkFixtures.Question;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.WenwoMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.DBObject;
+import com.mongodb.InMemoryMongo;
+
+public class BatchingIdLoaderTest {
+
+	private CountingTemplate template;
+	private List<Question> questions;
+	private ExecutorService pool;
+
+	@Before
+	public void setUp() throws Exception {
+		template = new CountingTemplate(new SimpleMongoDbFactory(new InMemoryMongo(), "test"));
+		questions = BenchmarkFixtures.questions(4, 0);
+		template.insertAll(questions);
+		pool = Executors.newFixedThreadPool(8);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void concurrentLoadsShareOneQuery() throws Exception {
+		BatchingIdLoader<Question> loader = new BatchingIdLoader<Question>(template, Question.class, 200, 100);
+
+		List<Future<Question>> results = loadConcurrently(loader, questions.get(0).getId(), questions.get(1).getId(),
+				questions.get(0).getId());
+
+		assertEquals(1, template.queries.get());
+		Question first = results.get(0).get(5, TimeUnit.SECONDS);
+		Question second = results.get(1).get(5, TimeUnit.SECONDS);
+		Question third = results.get(2).get(5, TimeUnit.SECONDS);
+		assertEquals(questions.get(0).getId(), first.getId());
+		assertEquals(questions.get(1).getId(), second.getId());
+		assertEquals(questions.get(0).getId(), third.getId());
+		// 相同ID的调用方各自得到独立的实例
+		assertNotSame(first, third);
+	}
+
+	@Test
+	public void fullBatchRunsWithoutWaitingForWindow() throws Exception {
+		BatchingIdLoader<Question> loader = new BatchingIdLoader<Question>(template, Question.class, 60000, 2);
+
+		long start = System.currentTimeMillis();
+		List<Future<Question>> results = loadConcurrently(loader, questions.get(0).getId(), questions.get(1).getId());
+		for (Future<Question> result : results) {
+			assertNotNull(result.get(5, TimeUnit.SECONDS));
+		}
+
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(1, template.queries.get());
+	}
+
+	@Test
+	public void missingIdLoadsNull() {
+		BatchingIdLoader<Question> loader = new BatchingIdLoader<Question>(template, Question.class, 1, 100);
+
+		assertNull(loader.load(new ObjectId().toString()));
+		assertNull(loader.load(null));
+	}
+
+	/**
+	 * 同时发起按ID读取并等待全部完成
+	 */
+	private List<Future<Question>> loadConcurrently(final BatchingIdLoader<Question> loader, String... ids)
+			throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch ready = new CountDownLatch(ids.length);
+		List<Future<Question>> results = new ArrayList<Future<Question>>();
+		for (final String id : ids) {
+			results.add(pool.submit(new Callable<Question>() {
+				public Question call() throws Exception {
+					ready.countDown();
+					start.await();
+					return loader.load(id);
+				}
+			}));
+		}
+		ready.await(5, TimeUnit.SECONDS);
+		start.countDown();
+		for (Future<Question> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return results;
+	}
+
+	private static class CountingTemplate extends WenwoMongoTemplate {
+		private final AtomicInteger queries = new AtomicInteger();
+
+		CountingTemplate(SimpleMongoDbFactory factory) {
+			super(factory);
+		}
+
+		@Override
+		public List<DBObject> findDocuments(Query query, Class<?> entityClass) {
+			queries.incrementAndGet();
+			return super.findDocuments(query, entityClass);
+		}
+	}
+}
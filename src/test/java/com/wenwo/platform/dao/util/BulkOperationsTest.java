@@ -0,0 +1,93 @@
+package com.wenwo.platform.dao.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BenchmarkFixtures;
+import org.springframework.data.mongodb.core.BenchmarkFixtures.Question;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.WenwoMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.mongodb.InMemoryMongo;
+
+public class BulkOperationsTest {
+
+	private WenwoMongoTemplate template;
+	private List<Question> questions;
+
+	@Before
+	public void setUp() throws Exception {
+		template = new WenwoMongoTemplate(new SimpleMongoDbFactory(new InMemoryMongo(), "test"));
+		questions = BenchmarkFixtures.questions(3, 0);
+		template.insertAll(questions);
+	}
+
+	@Test
+	public void unorderedReportsFailingStatementAndRunsTheRest() {
+		BulkResult result = bulkOps(BulkOperations.Mode.UNORDERED).updateById(id(0), new Update().set("status", 3))
+				.upsert(duplicateUpsert(), new Update().set("title", "x"))
+				.updateById(id(2), new Update().set("status", 4)).execute();
+
+		assertEquals(1, result.getErrors().size());
+		BulkError error = result.getErrors().get(0);
+		assertEquals(1, error.getIndex());
+		assertEquals(1, error.getCount());
+		assertTrue(error.getCause() instanceof DuplicateKeyException);
+		assertEquals(2, result.getSucceeded());
+		assertEquals(4, status(2));
+	}
+
+	@Test
+	public void orderedStopsAtFailingStatement() {
+		BulkResult result = bulkOps(BulkOperations.Mode.ORDERED).updateById(id(0), new Update().set("status", 3))
+				.upsert(duplicateUpsert(), new Update().set("title", "x"))
+				.updateById(id(2), new Update().set("status", 4)).execute();
+
+		assertEquals(1, result.getErrors().size());
+		assertEquals(1, result.getErrors().get(0).getIndex());
+		assertEquals(1, result.getSucceeded());
+		assertEquals(3, status(0));
+		assertEquals(questions.get(2).getStatus(), status(2));
+	}
+
+	@Test
+	public void errorIndexCountsOperationsOfEarlierBatches() {
+		Question added = BenchmarkFixtures.questions(1, 0).get(0);
+		BulkResult result = bulkOps(BulkOperations.Mode.ORDERED).insert(added)
+				.updateById(id(0), new Update().set("status", 3))
+				.upsert(duplicateUpsert(), new Update().set("title", "x")).execute();
+
+		assertEquals(1, result.getErrors().size());
+		assertEquals(2, result.getErrors().get(0).getIndex());
+		assertEquals(1, result.getInserted());
+		assertEquals(2, result.getSucceeded());
+	}
+
+	private BulkOperations<Question> bulkOps(BulkOperations.Mode mode) {
+		return new BulkOperations<Question>(template, Question.class, mode);
+	}
+
+	/**
+	 * 按已存在的_id和不匹配的条件upsert,插入时_id重复
+	 */
+	private Query duplicateUpsert() {
+		return Query.query(Criteria.where("_id").is(new ObjectId(id(1))).and("status").is(42));
+	}
+
+	private String id(int index) {
+		return questions.get(index).getId();
+	}
+
+	private int status(int index) {
+		return template.findById(id(index), Question.class).getStatus();
+	}
+}
@@ -0,0 +1,91 @@
+package com.wenwo.platform.dao.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CountCacheTest {
+
+	@Test
+	public void reusesCountUntilCollectionIsInvalidated() {
+		CountCache cache = new CountCache(60000);
+		CountingCallable count = new CountingCallable(5);
+
+		assertEquals(5, cache.count("question", "{}", count));
+		assertEquals(5, cache.count("question", "{}", count));
+		assertEquals(1, count.calls.get());
+
+		cache.invalidate("question");
+		assertEquals(5, cache.count("question", "{}", count));
+		assertEquals(2, count.calls.get());
+	}
+
+	@Test
+	public void invalidationOnlyAffectsItsCollection() {
+		CountCache cache = new CountCache(60000);
+		cache.put("question", "{}", 1, cache.getGeneration("question"));
+		cache.put("answer", "{}", 2, cache.getGeneration("answer"));
+
+		cache.invalidate("question");
+
+		assertNull(cache.get("question", "{}"));
+		assertEquals(Long.valueOf(2), cache.get("answer", "{}"));
+	}
+
+	@Test
+	public void countStartedBeforeWriteIsNotCached() {
+		final CountCache cache = new CountCache(60000);
+
+		long counted = cache.count("question", "{}", new Callable<Long>() {
+			public Long call() {
+				// 计数期间集合被写入
+				cache.invalidate("question");
+				return 7L;
+			}
+		});
+
+		assertEquals(7, counted);
+		assertNull(cache.get("question", "{}"));
+	}
+
+	@Test
+	public void putWithStaleGenerationIsIgnored() {
+		CountCache cache = new CountCache(60000);
+		long generation = cache.getGeneration("question");
+		cache.invalidate("question");
+
+		cache.put("question", "{}", 3, generation);
+
+		assertNull(cache.get("question", "{}"));
+	}
+
+	@Test
+	public void disabledWithoutTtl() {
+		CountCache cache = new CountCache(0);
+		CountingCallable count = new CountingCallable(5);
+
+		cache.count("question", "{}", count);
+		cache.count("question", "{}", count);
+
+		assertEquals(2, count.calls.get());
+		assertNull(cache.get("question", "{}"));
+	}
+
+	private static class CountingCallable implements Callable<Long> {
+		private final long value;
+		private final AtomicInteger calls = new AtomicInteger();
+
+		CountingCallable(long value) {
+			this.value = value;
+		}
+
+		public Long call() {
+			calls.incrementAndGet();
+			return value;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.wenwo.platform.dao.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CounterAccumulatorTest {
+
+	private CounterAccumulator accumulator;
+	private RecordingSink sink;
+
+	@Before
+	public void setUp() {
+		// 间隔足够长,只由测试触发写入
+		accumulator = new CounterAccumulator(3600000L, 4);
+		sink = new RecordingSink();
+	}
+
+	@After
+	public void tearDown() {
+		accumulator.shutdown();
+	}
+
+	@Test
+	public void mergesIncrementsPerDocument() {
+		accumulator.increment(sink, "a", "views", 1);
+		accumulator.increment(sink, "a", "views", 2);
+		accumulator.increment(sink, "a", "likes", 1);
+		accumulator.increment(sink, "b", "views", 5);
+		assertEquals(3, accumulator.getPendingCounters());
+		assertEquals(9, accumulator.getPendingDelta());
+
+		accumulator.flush();
+
+		assertEquals(1, sink.flushes.size());
+		Map<Object, Map<String, Long>> deltas = sink.flushes.get(0);
+		assertEquals(2, deltas.size());
+		assertEquals(Long.valueOf(3), deltas.get("a").get("views"));
+		assertEquals(Long.valueOf(1), deltas.get("a").get("likes"));
+		assertEquals(Long.valueOf(5), deltas.get("b").get("views"));
+		assertEquals(0, accumulator.getPendingCounters());
+		assertEquals(0, accumulator.getPendingDelta());
+		assertEquals(2, accumulator.getFlushedDocuments());
+	}
+
+	@Test
+	public void dropsCountersThatCancelOut() {
+		accumulator.increment(sink, "a", "views", 2);
+		accumulator.increment(sink, "a", "views", -2);
+		accumulator.increment(sink, "b", "views", 0);
+
+		accumulator.flush();
+
+		assertTrue(sink.flushes.isEmpty() || sink.flushes.get(0).isEmpty());
+		assertEquals(0, accumulator.getFlushedDocuments());
+	}
+
+	@Test
+	public void countsFailedDocumentsWithoutRetrying() {
+		sink.failure = new IllegalStateException("write failed");
+		accumulator.increment(sink, "a", "views", 1);
+		accumulator.increment(sink, "b", "views", 1);
+
+		accumulator.flush();
+		sink.failure = null;
+		accumulator.flush();
+
+		assertEquals(2, accumulator.getFailedDocuments());
+		assertEquals(0, accumulator.getFlushedDocuments());
+		assertEquals(0, accumulator.getPendingCounters());
+	}
+
+	@Test
+	public void writesDirectlyAfterShutdown() {
+		accumulator.increment(sink, "a", "views", 1);
+		accumulator.shutdown();
+		assertEquals(1, sink.flushes.size());
+
+		accumulator.increment(sink, "a", "views", 4);
+
+		assertEquals(2, sink.flushes.size());
+		assertEquals(Long.valueOf(4), sink.flushes.get(1).get("a").get("views"));
+		assertEquals(0, accumulator.getPendingCounters());
+	}
+
+	private static class RecordingSink implements CounterAccumulator.CounterSink {
+		private final List<Map<Object, Map<String, Long>>> flushes = new ArrayList<Map<Object, Map<String, Long>>>();
+		private RuntimeException failure;
+
+		public synchronized int flush(Map<Object, Map<String, Long>> deltas) {
+			if (failure != null) {
+				throw failure;
+			}
+			flushes.add(new HashMap<Object, Map<String, Long>>(deltas));
+			return 0;
+		}
+	}
+}